@@ -0,0 +1,28 @@
+package com.tplink.shd.tauc.migration.benchmark;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteCheck;
+import com.tplink.shd.tauc.migration.annotation.ExecuteKafka;
+import com.tplink.shd.tauc.migration.annotation.ExecuteSave;
+
+/**
+ * 被拦截的业务方法，方法体只返回一个固定结果，基准测试中的耗时全部来自切面
+ */
+public class BenchmarkTarget {
+
+    static final Object RESULT = "ok";
+
+    @ExecuteSave(tag = "benchmark")
+    public Object save(String deviceId, int slot) {
+        return RESULT;
+    }
+
+    @ExecuteCheck
+    public Object check(String deviceId, int slot) {
+        return RESULT;
+    }
+
+    @ExecuteKafka
+    public Object consume(String topic, String payload) {
+        return RESULT;
+    }
+}
@@ -0,0 +1,87 @@
+package com.tplink.shd.tauc.migration.benchmark;
+
+import com.tplink.shd.tauc.migration.annotation.CallerResolver;
+import org.aspectj.lang.annotation.Aspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 getStackTrace 全量抓栈与 StackWalker 惰性遍历定位调用者的开销。
+ * callerDepth 模拟调用者之下的容器/过滤器栈帧，PROXY_DEPTH 模拟调用者之上 Spring/CGLIB 代理与切面叠加的栈帧。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallerResolutionBenchmark {
+
+    private static final int PROXY_DEPTH = 15;
+
+    @Param({"20", "100"})
+    public int callerDepth;
+
+    @Benchmark
+    public Optional<String> legacyStackTrace() {
+        return Container.descend(callerDepth, false);
+    }
+
+    @Benchmark
+    public Optional<String> stackWalker() {
+        return Container.descend(callerDepth, true);
+    }
+
+    // 调用者之下的栈帧，StackWalker 找到调用者后不再遍历
+    static class Container {
+        static Optional<String> descend(int depth, boolean walker) {
+            if (depth > 0) {
+                return descend(depth - 1, walker);
+            }
+            return Caller.invoke(walker);
+        }
+    }
+
+    // 两种实现都应定位到这里
+    static class Caller {
+        static Optional<String> invoke(boolean walker) {
+            return ProxyChain.descend(PROXY_DEPTH, walker);
+        }
+    }
+
+    // 标注为切面的类，其栈帧会被两种实现同时跳过
+    @Aspect
+    static class ProxyChain {
+        static Optional<String> descend(int depth, boolean walker) {
+            if (depth > 0) {
+                return descend(depth - 1, walker);
+            }
+            return walker ? Optional.ofNullable(CallerResolver.resolve()) : legacyCallerMethodInfo();
+        }
+
+        // 改造前 ExecuteSaveAspect.getCallerMethodInfo 的实现
+        static Optional<String> legacyCallerMethodInfo() {
+            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
+            for (int i = 1; i < stackTrace.length; i++) {
+                StackTraceElement element = stackTrace[i];
+                if (!element.getClassName().equals(ProxyChain.class.getName()) &&
+                        !element.getClassName().contains("CGLIB") &&
+                        !element.getMethodName().equals("around")) {
+                    return Optional.of(element.getClassName() + ":" + element.getMethodName());
+                }
+            }
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tplink.shd.tauc.migration.benchmark;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteCheckAspect;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecuteCheckAspect.around 的吞吐量与分配率，配合 -prof gc 运行。
+ * disabled: 开关关闭；master: 记录输入并编码写入 InOut；slaveMatch: slave 命中 master 的 InOut 并解码输出。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteCheckAspectBenchmark {
+
+    @Param({"disabled", "master", "slaveMatch"})
+    public String scenario;
+
+    private ExecuteCheckAspect aspect;
+    private StubJoinPoint joinPoint;
+    private MigrationContext.Scope scope;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        joinPoint = StubJoinPoint.of(new BenchmarkTarget(), "check", "device-0001", 42);
+        scope = MigrationContext.open("8f14e45f-ceea-467a-9af0-2c2b7e5c1d34", MigrationFixtures.UUID_KEY);
+
+        ExecuteMigration properties = MigrationFixtures.properties("master");
+        properties.setKafka(!"disabled".equals(scenario));
+        aspect = MigrationFixtures.checkAspect(properties, new InMemoryCacheService(true));
+        if ("slaveMatch".equals(scenario)) {
+            aspect.around(joinPoint); // 先以 master 身份写入 input 与 InOut
+            properties.setKafkaRole("slave");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scope.close();
+    }
+
+    @Benchmark
+    public Object around() throws Throwable {
+        return aspect.around(joinPoint);
+    }
+}
@@ -0,0 +1,37 @@
+package com.tplink.shd.tauc.migration.benchmark;
+
+import com.tplink.smb.component.cache.api.CacheService;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试用的进程内 CacheService，忽略过期时间。
+ * retainWrites 为 false 时丢弃所有写入，用于测量每次都是首次写入的路径。
+ */
+public class InMemoryCacheService implements CacheService {
+
+    private final ConcurrentHashMap<String, Object> entries = new ConcurrentHashMap<>();
+    private final boolean retainWrites;
+
+    public InMemoryCacheService(boolean retainWrites) {
+        this.retainWrites = retainWrites;
+    }
+
+    @Override
+    public void set(String cacheName, String key, Object value, long timeout, TimeUnit unit) {
+        if (retainWrites) {
+            entries.put(cacheName + ":" + key, value);
+        }
+    }
+
+    @Override
+    public <T> T get(String cacheName, String key, Class<T> clazz) {
+        Object value = entries.get(cacheName + ":" + key);
+        return clazz.isInstance(value) ? clazz.cast(value) : null;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
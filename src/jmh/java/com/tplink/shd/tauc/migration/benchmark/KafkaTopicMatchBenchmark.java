@@ -0,0 +1,106 @@
+package com.tplink.shd.tauc.migration.benchmark;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.aspect.MigrationKafkaAspect;
+import com.tplink.shd.tauc.migration.kafka.KafkaTopicMatcher;
+import com.tplink.shd.tauc.migration.kafka.KafkaTopicSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * MigrationKafkaAspect 的 topic 匹配开销。
+ * legacy* 为改造前每条消息重新拆分配置再 List.contains 的实现；matcher* 为预编译匹配器，配置中一半为精确 topic，一半为通配模式。
+ * aroundUnmatched 测量未配置 topic 直接放行的整条切面路径。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KafkaTopicMatchBenchmark {
+
+    @Param({"4", "64"})
+    public int topicCount;
+
+    private String topics;
+    private KafkaTopicMatcher matcher;
+    private MigrationKafkaAspect aspect;
+    private StubJoinPoint unmatched;
+    private String exactTopic;
+    private String wildcardTopic;
+    private String missTopic;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < topicCount; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            // 偶数为精确 topic，奇数为通配模式
+            sb.append(i % 2 == 0 ? "tauc.device.event." + i : "tauc.site" + i + ".*.report");
+        }
+        topics = sb.toString();
+        ExecuteMigration properties = MigrationFixtures.properties("master");
+        properties.setKafkaTopics(topics);
+        matcher = properties.kafkaTopicMatcher();
+        aspect = MigrationFixtures.kafkaAspect(properties, new InMemoryCacheService(true));
+
+        exactTopic = "tauc.device.event." + (topicCount - 2);
+        wildcardTopic = "tauc.site" + (topicCount - 1) + ".eu-west.report";
+        missTopic = "tauc.device.status";
+        unmatched = StubJoinPoint.of(new BenchmarkTarget(), "consume", missTopic, "{\"id\":1}");
+    }
+
+    @Benchmark
+    public boolean legacyHit() {
+        return legacyTopicList().contains(exactTopic);
+    }
+
+    @Benchmark
+    public boolean legacyMiss() {
+        return legacyTopicList().contains(missTopic);
+    }
+
+    @Benchmark
+    public KafkaTopicSettings matcherExact() {
+        return matcher.match(exactTopic);
+    }
+
+    @Benchmark
+    public KafkaTopicSettings matcherWildcard() {
+        return matcher.match(wildcardTopic);
+    }
+
+    @Benchmark
+    public KafkaTopicSettings matcherMiss() {
+        return matcher.match(missTopic);
+    }
+
+    @Benchmark
+    public Object aroundUnmatched() throws Throwable {
+        return aspect.around(unmatched);
+    }
+
+    // 改造前 ExecuteMigration.getKafkaTopicList 的实现
+    private List<String> legacyTopicList() {
+        return Stream.of(topics.split(","))
+                .map(String::trim)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,189 @@
+package com.tplink.shd.tauc.migration.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ComparisonLedgerService;
+import com.tplink.shd.tauc.migration.annotation.ExecuteCheckAspect;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.ExecuteSaveAspect;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodRegistry;
+import com.tplink.shd.tauc.migration.annotation.MigrationSampler;
+import com.tplink.shd.tauc.migration.aspect.MigrationKafkaAspect;
+import com.tplink.shd.tauc.migration.codec.BinaryMigrationCodec;
+import com.tplink.shd.tauc.migration.codec.InOutCodec;
+import com.tplink.shd.tauc.migration.diff.OutputDiffPool;
+import com.tplink.shd.tauc.migration.kafka.KafkaShadowBatcher;
+import com.tplink.shd.tauc.migration.replay.MigrationRecordLog;
+import com.tplink.shd.tauc.migration.store.InOutNotifier;
+import com.tplink.shd.tauc.migration.store.LatencyBudgetExecutor;
+import com.tplink.shd.tauc.migration.store.MigrationCircuitBreaker;
+import com.tplink.shd.tauc.migration.store.MigrationRecordStore;
+import com.tplink.shd.tauc.migration.store.OnesideCheckWheel;
+import com.tplink.shd.tauc.migration.store.WriteBehindPipeline;
+import com.tplink.shd.tauc.share.prometheus.PrometheusMetricMigrationCheckHandler;
+import com.tplink.shd.tauc.share.prometheus.PrometheusMetricMigrationSaveHandler;
+import com.tplink.smb.component.cache.api.CacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 不启动 Spring 容器，按字段注入组装各切面。
+ * 未开启 write-behind 与 atomicRecord，所有读写都落在传入的 CacheService 上。
+ */
+final class MigrationFixtures {
+
+    static final String UUID_KEY = "traceId";
+    static final String CACHE_NAME = "migration";
+
+    private MigrationFixtures() {
+    }
+
+    static ExecuteMigration properties(String role) {
+        ExecuteMigration properties = new ExecuteMigration();
+        properties.setSaveSwitch(true);
+        properties.setKafka(true);
+        properties.setKafkaRole(role);
+        properties.setUuid(UUID_KEY);
+        properties.setCacheName(CACHE_NAME);
+        properties.setExpireTime(3600);
+        properties.setWaitTime(0); // slave 不等待，测量的是切面本身的开销
+        return properties;
+    }
+
+    static ExecuteSaveAspect saveAspect(ExecuteMigration properties, CacheService cacheService) {
+        MigrationRecordStore recordStore = recordStore(properties, cacheService);
+        OnesideCheckWheel onesideCheckWheel = new OnesideCheckWheel();
+        ReflectionTestUtils.setField(onesideCheckWheel, "properties", properties);
+        ReflectionTestUtils.setField(onesideCheckWheel, "recordStore", recordStore);
+        ReflectionTestUtils.setField(onesideCheckWheel, "meterRegistry", meterRegistry());
+
+        PrometheusMetricMigrationSaveHandler prometheusHandler = new PrometheusMetricMigrationSaveHandler(meterRegistry(), properties);
+
+        ComparisonLedgerService ledgerService = new ComparisonLedgerService();
+        ReflectionTestUtils.setField(ledgerService, "properties", properties);
+        ReflectionTestUtils.setField(ledgerService, "recordStore", recordStore);
+        ReflectionTestUtils.setField(ledgerService, "onesideCheckWheel", onesideCheckWheel);
+        ReflectionTestUtils.setField(ledgerService, "prometheusHandler", prometheusHandler);
+        ReflectionTestUtils.setField(ledgerService, "meterRegistry", meterRegistry());
+
+        ExecuteSaveAspect aspect = new ExecuteSaveAspect();
+        ReflectionTestUtils.setField(aspect, "properties", properties);
+        ReflectionTestUtils.setField(aspect, "recordStore", recordStore);
+        ReflectionTestUtils.setField(aspect, "onesideCheckWheel", onesideCheckWheel);
+        ReflectionTestUtils.setField(aspect, "methodRegistry", new MigrationMethodRegistry());
+        ReflectionTestUtils.setField(aspect, "sampler", sampler(properties));
+        ReflectionTestUtils.setField(aspect, "prometheusHandler", prometheusHandler);
+        ReflectionTestUtils.setField(aspect, "ledgerService", ledgerService);
+        ReflectionTestUtils.setField(aspect, "circuitBreaker", circuitBreaker(properties));
+        ReflectionTestUtils.setField(aspect, "budgetExecutor", budgetExecutor(properties));
+        return aspect;
+    }
+
+    static ExecuteCheckAspect checkAspect(ExecuteMigration properties, CacheService cacheService) {
+        InOutCodec inOutCodec = new InOutCodec();
+        ReflectionTestUtils.setField(inOutCodec, "properties", properties);
+        ReflectionTestUtils.setField(inOutCodec, "codec", new BinaryMigrationCodec(objectMapper(), properties));
+
+        ExecuteCheckAspect aspect = new ExecuteCheckAspect();
+        ReflectionTestUtils.setField(aspect, "properties", properties);
+        ReflectionTestUtils.setField(aspect, "cacheService", cacheService);
+        ReflectionTestUtils.setField(aspect, "prometheusHandler",
+                new PrometheusMetricMigrationCheckHandler(meterRegistry(), properties));
+        ReflectionTestUtils.setField(aspect, "inOutNotifier", new NoopInOutNotifier());
+        ReflectionTestUtils.setField(aspect, "inOutCodec", inOutCodec);
+        ReflectionTestUtils.setField(aspect, "recordStore", recordStore(properties, cacheService));
+        ReflectionTestUtils.setField(aspect, "methodRegistry", new MigrationMethodRegistry());
+        ReflectionTestUtils.setField(aspect, "sampler", sampler(properties));
+
+        OutputDiffPool outputDiffPool = new OutputDiffPool();
+        ReflectionTestUtils.setField(outputDiffPool, "properties", properties);
+        ReflectionTestUtils.setField(outputDiffPool, "objectMapper", objectMapper());
+        ReflectionTestUtils.setField(outputDiffPool, "meterRegistry", meterRegistry());
+        ReflectionTestUtils.setField(aspect, "outputDiffPool", outputDiffPool);
+        ReflectionTestUtils.setField(aspect, "circuitBreaker", circuitBreaker(properties));
+        ReflectionTestUtils.setField(aspect, "budgetExecutor", budgetExecutor(properties));
+
+        MigrationRecordLog recordLog = new MigrationRecordLog(); // 未开启记录日志
+        ReflectionTestUtils.setField(recordLog, "properties", properties);
+        ReflectionTestUtils.setField(recordLog, "codec", new BinaryMigrationCodec(objectMapper(), properties));
+        ReflectionTestUtils.setField(recordLog, "meterRegistry", meterRegistry());
+        ReflectionTestUtils.setField(aspect, "recordLog", recordLog);
+        return aspect;
+    }
+
+    static MigrationKafkaAspect kafkaAspect(ExecuteMigration properties, CacheService cacheService) {
+        ExecuteSaveAspect saveAspect = saveAspect(properties, cacheService);
+        KafkaShadowBatcher batcher = new KafkaShadowBatcher();
+        ReflectionTestUtils.setField(batcher, "properties", properties);
+        ReflectionTestUtils.setField(batcher, "recordStore", recordStore(properties, cacheService));
+        ReflectionTestUtils.setField(batcher, "executeSaveAspect", saveAspect);
+        ReflectionTestUtils.setField(batcher, "meterRegistry", meterRegistry());
+
+        MigrationKafkaAspect aspect = new MigrationKafkaAspect();
+        ReflectionTestUtils.setField(aspect, "executeMigration", properties);
+        ReflectionTestUtils.setField(aspect, "executeSaveAspect", saveAspect);
+        ReflectionTestUtils.setField(aspect, "batcher", batcher);
+        ReflectionTestUtils.setField(aspect, "methodRegistry", new MigrationMethodRegistry());
+        ReflectionTestUtils.setField(aspect, "sampler", sampler(properties));
+        ReflectionTestUtils.setField(aspect, "prometheusHandler",
+                new PrometheusMetricMigrationSaveHandler(meterRegistry(), properties));
+        ReflectionTestUtils.setField(aspect, "circuitBreaker", circuitBreaker(properties));
+        return aspect;
+    }
+
+    private static MigrationRecordStore recordStore(ExecuteMigration properties, CacheService cacheService) {
+        WriteBehindPipeline writeBehind = new WriteBehindPipeline(); // 未启动，isEnabled 为 false
+        MigrationRecordStore recordStore = new MigrationRecordStore();
+        ReflectionTestUtils.setField(recordStore, "properties", properties);
+        ReflectionTestUtils.setField(recordStore, "cacheService", cacheService);
+        ReflectionTestUtils.setField(recordStore, "writeBehind", writeBehind);
+        ReflectionTestUtils.setField(recordStore, "circuitBreaker", circuitBreaker(properties));
+        ReflectionTestUtils.setField(recordStore, "budgetExecutor", budgetExecutor(properties));
+        return recordStore;
+    }
+
+    // 未开启延迟预算，缓存操作直接在调用线程执行
+    private static LatencyBudgetExecutor budgetExecutor(ExecuteMigration properties) {
+        LatencyBudgetExecutor budgetExecutor = new LatencyBudgetExecutor();
+        ReflectionTestUtils.setField(budgetExecutor, "properties", properties);
+        ReflectionTestUtils.setField(budgetExecutor, "meterRegistry", meterRegistry());
+        return budgetExecutor;
+    }
+
+    // 未开启熔断，allowRequest 始终放行
+    private static MigrationCircuitBreaker circuitBreaker(ExecuteMigration properties) {
+        MigrationCircuitBreaker circuitBreaker = new MigrationCircuitBreaker();
+        ReflectionTestUtils.setField(circuitBreaker, "properties", properties);
+        ReflectionTestUtils.setField(circuitBreaker, "meterRegistry", meterRegistry());
+        return circuitBreaker;
+    }
+
+    private static MigrationSampler sampler(ExecuteMigration properties) {
+        MigrationSampler sampler = new MigrationSampler();
+        ReflectionTestUtils.setField(sampler, "properties", properties);
+        return sampler;
+    }
+
+    private static ObjectProvider<MeterRegistry> meterRegistry() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", new SimpleMeterRegistry());
+        return beanFactory.getBeanProvider(MeterRegistry.class);
+    }
+
+    private static ObjectProvider<ObjectMapper> objectMapper() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("objectMapper", new ObjectMapper());
+        return beanFactory.getBeanProvider(ObjectMapper.class);
+    }
+
+    /**
+     * 不连接 Redis 的信号通知，master 发布信号时什么都不做
+     */
+    static final class NoopInOutNotifier extends InOutNotifier {
+        @Override
+        public void publish(String keyInOut) {
+        }
+    }
+}
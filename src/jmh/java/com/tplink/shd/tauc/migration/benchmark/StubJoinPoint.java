@@ -0,0 +1,198 @@
+package com.tplink.shd.tauc.migration.benchmark;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.aspectj.lang.reflect.SourceLocation;
+import org.aspectj.runtime.internal.AroundClosure;
+
+import java.lang.reflect.Method;
+
+/**
+ * 直接调用目标方法的 ProceedingJoinPoint，代替 Spring AOP 的代理调用链。
+ * 与 Spring AOP 一致，只有 getSignature().getMethod() 与 getArgs() 对切面有意义。
+ */
+public class StubJoinPoint implements ProceedingJoinPoint {
+
+    private final Object target;
+    private final Object[] args;
+    private final MethodSignature signature;
+    private final StaticPart staticPart;
+
+    public StubJoinPoint(Object target, Method method, Object... args) {
+        this.target = target;
+        this.args = args;
+        this.signature = new StubMethodSignature(method);
+        this.staticPart = new StubStaticPart(signature);
+    }
+
+    public static StubJoinPoint of(Object target, String methodName, Object... args) {
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(methodName)) {
+                return new StubJoinPoint(target, method, args);
+            }
+        }
+        throw new IllegalArgumentException("No method named " + methodName + " on " + target.getClass());
+    }
+
+    @Override
+    public Object proceed() throws Throwable {
+        return signature.getMethod().invoke(target, args);
+    }
+
+    @Override
+    public Object proceed(Object[] args) throws Throwable {
+        return signature.getMethod().invoke(target, args);
+    }
+
+    @Override
+    public void set$AroundClosure(AroundClosure arc) {
+    }
+
+    @Override
+    public Object[] getArgs() {
+        return args.clone(); // 与 Spring AOP 一致，每次返回副本
+    }
+
+    @Override
+    public Signature getSignature() {
+        return signature;
+    }
+
+    @Override
+    public StaticPart getStaticPart() {
+        return staticPart;
+    }
+
+    @Override
+    public Object getThis() {
+        return target;
+    }
+
+    @Override
+    public Object getTarget() {
+        return target;
+    }
+
+    @Override
+    public SourceLocation getSourceLocation() {
+        return null;
+    }
+
+    @Override
+    public String getKind() {
+        return JoinPoint.METHOD_EXECUTION;
+    }
+
+    @Override
+    public String toShortString() {
+        return signature.toShortString();
+    }
+
+    @Override
+    public String toLongString() {
+        return signature.toLongString();
+    }
+
+    private static final class StubStaticPart implements StaticPart {
+        private final Signature signature;
+
+        private StubStaticPart(Signature signature) {
+            this.signature = signature;
+        }
+
+        @Override
+        public Signature getSignature() {
+            return signature;
+        }
+
+        @Override
+        public SourceLocation getSourceLocation() {
+            return null;
+        }
+
+        @Override
+        public String getKind() {
+            return JoinPoint.METHOD_EXECUTION;
+        }
+
+        @Override
+        public int getId() {
+            return 0;
+        }
+
+        @Override
+        public String toShortString() {
+            return signature.toShortString();
+        }
+
+        @Override
+        public String toLongString() {
+            return signature.toLongString();
+        }
+    }
+
+    private static final class StubMethodSignature implements MethodSignature {
+        private final Method method;
+
+        private StubMethodSignature(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Class getReturnType() {
+            return method.getReturnType();
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Class[] getParameterTypes() {
+            return method.getParameterTypes();
+        }
+
+        @Override
+        public String[] getParameterNames() {
+            return null;
+        }
+
+        @Override
+        public Class[] getExceptionTypes() {
+            return method.getExceptionTypes();
+        }
+
+        @Override
+        public String toShortString() {
+            return method.getName();
+        }
+
+        @Override
+        public String toLongString() {
+            return method.toString();
+        }
+
+        @Override
+        public String getName() {
+            return method.getName();
+        }
+
+        @Override
+        public int getModifiers() {
+            return method.getModifiers();
+        }
+
+        @Override
+        public Class getDeclaringType() {
+            return method.getDeclaringClass();
+        }
+
+        @Override
+        public String getDeclaringTypeName() {
+            return method.getDeclaringClass().getName();
+        }
+    }
+}
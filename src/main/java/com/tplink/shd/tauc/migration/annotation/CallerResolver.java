@@ -0,0 +1,87 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.aspectj.lang.annotation.Aspect;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 基于 StackWalker 惰性遍历调用栈，定位切面之外的第一个业务调用者。
+ * 跳过代理类、反射与 AOP 框架栈帧以及切面类本身，找到后立即停止遍历；
+ * 调用者的 key 按调用点缓存，重复调用不再拼接字符串。
+ */
+public final class CallerResolver {
+
+    // 不属于业务调用者的包前缀
+    private static final String[] INFRASTRUCTURE_PREFIXES = {
+            "java.lang.reflect.", "java.lang.invoke.", "jdk.internal.reflect.", "sun.reflect.",
+            "org.springframework.aop.", "org.springframework.cglib.", "org.aspectj."
+    };
+
+    // CGLIB 与 ByteBuddy 生成的代理类名中的标记；lambda 类名同样含 $$，属于业务调用者，不能只按 $$ 判断
+    private static final String[] PROXY_MARKERS = {
+            "$$SpringCGLIB$$", "$$EnhancerBySpringCGLIB$$", "$$FastClassBySpringCGLIB$$", "$$EnhancerByCGLIB$$", "$$ByteBuddy$$"
+    };
+
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    // 每个类是否需要跳过，只计算一次
+    private static final ClassValue<Boolean> SKIPPED = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return isSkipped(type);
+        }
+    };
+
+    // 每个类下 方法名 -> 调用者key 的缓存
+    private static final ClassValue<ConcurrentHashMap<String, String>> CALLER_KEYS = new ClassValue<ConcurrentHashMap<String, String>>() {
+        @Override
+        protected ConcurrentHashMap<String, String> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final Function<Stream<StackWalker.StackFrame>, String> FIRST_CALLER = frames -> frames
+            .filter(frame -> !SKIPPED.get(frame.getDeclaringClass()))
+            .findFirst()
+            .map(CallerResolver::callerKey)
+            .orElse(null);
+
+    private CallerResolver() {
+    }
+
+    // 返回 类全名:方法名，找不到时返回 null
+    public static String resolve() {
+        return WALKER.walk(FIRST_CALLER);
+    }
+
+    private static String callerKey(StackWalker.StackFrame frame) {
+        ConcurrentHashMap<String, String> keys = CALLER_KEYS.get(frame.getDeclaringClass());
+        String methodName = frame.getMethodName();
+        String key = keys.get(methodName);
+        if (key == null) {
+            key = keys.computeIfAbsent(methodName, name -> frame.getClassName() + ":" + name);
+        }
+        return key;
+    }
+
+    static boolean isSkipped(Class<?> type) {
+        if (type == CallerResolver.class || type.isAnnotationPresent(Aspect.class) || Proxy.isProxyClass(type)) {
+            return true;
+        }
+        String name = type.getName();
+        for (String marker : PROXY_MARKERS) {
+            if (name.contains(marker)) {
+                return true;
+            }
+        }
+        for (String prefix : INFRASTRUCTURE_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
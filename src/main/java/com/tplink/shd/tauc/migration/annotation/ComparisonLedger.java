@@ -0,0 +1,64 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个请求的 ExecuteSave 账本，保存在 MigrationContext 中。
+ * 上下文可被多个线程共享，方法均加锁
+ */
+final class ComparisonLedger {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private boolean flushed;
+
+    ComparisonLedger(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 追加一条记录；同一 field 已存在时在本地比对，相当于单条模式下的本端重复检查
+     *
+     * @return false 表示账本已满或已写出，调用方应按单条方式比对
+     */
+    synchronized boolean append(String field, String digest, MigrationMeters meters) {
+        if (flushed) {
+            return false;
+        }
+        Entry existing = entries.get(field);
+        if (existing != null) {
+            if (existing.digest.equals(digest)) {
+                meters.match();
+            } else {
+                meters.mismatch();
+            }
+            return true;
+        }
+        if (entries.size() >= maxEntries) {
+            return false;
+        }
+        entries.put(field, new Entry(digest, meters));
+        return true;
+    }
+
+    // 取出全部记录，之后的追加按单条方式比对
+    synchronized List<Map.Entry<String, Entry>> drain() {
+        flushed = true;
+        return new ArrayList<>(entries.entrySet());
+    }
+
+    static final class Entry {
+        final String digest;
+        final MigrationMeters meters;
+
+        private Entry(String digest, MigrationMeters meters) {
+            this.digest = digest;
+            this.meters = meters;
+        }
+    }
+}
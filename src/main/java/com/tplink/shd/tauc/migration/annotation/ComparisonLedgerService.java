@@ -0,0 +1,173 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.migration.store.MigrationRecordStore;
+import com.tplink.shd.tauc.migration.store.OnesideCheckWheel;
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
+import com.tplink.shd.tauc.share.prometheus.PrometheusMetricMigrationSaveHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecuteSave 的请求级账本。
+ * 开启后请求内每次 ExecuteSave 调用只把 (方法, 摘要) 追加到 MigrationContext 中的账本，
+ * InsertUniqueIdAspect 关闭上下文前调用 flush，把整本账写入 Redis hash 并读回对端账本，每个请求一次往返。
+ * 后写入的一端负责统计：两端都有的记录按摘要计 match/mismatch，只有一端有的记录计 oneside；
+ * slave 先写入时安排延迟检查，master 在等待时间后仍未写入则全部计为 oneside。
+ */
+@Slf4j
+@Component
+public class ComparisonLedgerService {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private MigrationRecordStore recordStore;
+
+    @Autowired
+    private OnesideCheckWheel onesideCheckWheel;
+
+    @Autowired
+    private PrometheusMetricMigrationSaveHandler prometheusHandler;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private volatile Timer flushTimer;
+
+    // 账本脚本同时访问三个 key，集群模式下只有带哈希标签的紧凑 key 能落在同一个 slot
+    @PostConstruct
+    public void validate() {
+        if (properties.getLedger().isEnabled() && role() != null && !properties.isCompactKeys() && recordStore.isCluster()) {
+            throw new IllegalStateException("execute-migration.compact-keys must be on when the ledger is enabled against a Redis cluster");
+        }
+    }
+
+    /**
+     * 把一次调用追加到当前请求的账本
+     *
+     * @return false 表示未开启、角色未配置或账本已满，调用方按单条方式比对
+     */
+    public boolean append(MigrationContext context, MigrationMethodDescriptor.KeyTemplates templates, MigrationMeters meters,
+                          String simpleArgsDigest, String argsDigest) {
+        ExecuteMigration.Ledger config = properties.getLedger();
+        if (!config.isEnabled() || role() == null) {
+            return false;
+        }
+        ComparisonLedger ledger = context.computeAttributeIfAbsent(ComparisonLedger.class, k -> new ComparisonLedger(config.getMaxEntries()));
+        return ledger.append(templates.ledgerField(simpleArgsDigest, properties.isCompactKeys()), argsDigest, meters);
+    }
+
+    // 写出当前请求的账本并与对端比对，不抛出异常
+    public void flush(MigrationContext context) {
+        ComparisonLedger ledger = context.getAttribute(ComparisonLedger.class);
+        String role = role();
+        if (ledger == null || role == null) {
+            return;
+        }
+        List<Map.Entry<String, ComparisonLedger.Entry>> entries = ledger.drain();
+        if (entries.isEmpty()) {
+            return;
+        }
+        boolean master = "master".equals(role);
+        String cacheName = properties.getCacheName();
+        String masterKey = ledgerKey(context.getUuid(), "master");
+        String slaveKey = ledgerKey(context.getUuid(), "slave");
+        String ownKey = master ? masterKey : slaveKey;
+        String peerKey = master ? slaveKey : masterKey;
+
+        Map<String, String> digests = new LinkedHashMap<>(entries.size() * 2);
+        for (Map.Entry<String, ComparisonLedger.Entry> entry : entries) {
+            digests.put(entry.getKey(), entry.getValue().digest);
+        }
+        Map<String, String> peer;
+        long start = System.nanoTime();
+        try {
+            peer = recordStore.flushLedger(cacheName, ownKey, markerKey(ownKey), peerKey, digests);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush migration ledger for uuid: {}", context.getUuid(), e);
+            return;
+        }
+        flushTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (peer.isEmpty()) {
+            if (!master) {
+                // master 账本尚未写入，等待时间后仍没有完成标记则整本计为 oneside；标记由 Lua 脚本写入，同样直接读取
+                onesideCheckWheel.schedule(cacheName, markerKey(masterKey), true, properties.getWaitTime(), () -> {
+                    for (Map.Entry<String, ComparisonLedger.Entry> entry : entries) {
+                        entry.getValue().meters.oneside();
+                    }
+                });
+            }
+            return;
+        }
+        compare(entries, peer);
+    }
+
+    private void compare(List<Map.Entry<String, ComparisonLedger.Entry>> entries, Map<String, String> peer) {
+        for (Map.Entry<String, ComparisonLedger.Entry> entry : entries) {
+            String peerDigest = peer.remove(entry.getKey());
+            MigrationMeters meters = entry.getValue().meters;
+            if (peerDigest == null) {
+                log.warn("One-side exception: ledger entry not found on counterpart: {}", entry.getKey());
+                meters.oneside();
+            } else if (peerDigest.equals(entry.getValue().digest)) {
+                log.debug("Match detected for ledger entry: {}", entry.getKey());
+                meters.match();
+            } else {
+                log.warn("Mismatch detected for ledger entry: {}. New value: {}", entry.getKey(), entry.getValue().digest);
+                meters.mismatch();
+            }
+        }
+        // 只在对端出现的记录没有方法描述，计入未知方法
+        for (String field : peer.keySet()) {
+            log.warn("One-side exception: ledger entry only found on counterpart: {}", field);
+            prometheusHandler.migrationOneside();
+        }
+    }
+
+    private Timer flushTimer() {
+        Timer timer = flushTimer;
+        if (timer == null) {
+            timer = Timer.builder("migration.ledger.flush")
+                    .description("Latency of writing one request ledger and reading the counterpart's")
+                    .register(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+            flushTimer = timer;
+        }
+        return timer;
+    }
+
+    private String ledgerKey(String uuid, String role) {
+        if (properties.isCompactKeys()) {
+            return "{" + MigrationMethodDescriptor.hashTag(uuid) + "}l" + role.charAt(0);
+        }
+        return uuid + ":ledger:" + role;
+    }
+
+    private static String markerKey(String ledgerKey) {
+        return ledgerKey + ":done";
+    }
+
+    private String role() {
+        String role = properties.getKafkaRole();
+        if ("master".equalsIgnoreCase(role)) {
+            return "master";
+        }
+        if ("slave".equalsIgnoreCase(role)) {
+            return "slave";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保留调度接口的 ContextExecutorService，周期任务的每次执行使用提交时 fork 出的同一个分支上下文
+ */
+final class ContextScheduledExecutorService extends ContextExecutorService implements ScheduledExecutorService {
+
+    private final ScheduledExecutorService delegate;
+
+    ContextScheduledExecutorService(ScheduledExecutorService delegate) {
+        super(delegate);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return delegate.schedule(MigrationContextExecutors.wrap(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return delegate.schedule(MigrationContextExecutors.wrap(callable), delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return delegate.scheduleAtFixedRate(MigrationContextExecutors.wrap(command), initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return delegate.scheduleWithFixedDelay(MigrationContextExecutors.wrap(command), initialDelay, delay, unit);
+    }
+}
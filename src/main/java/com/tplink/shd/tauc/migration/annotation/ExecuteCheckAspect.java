@@ -1,18 +1,40 @@
 package com.tplink.shd.tauc.migration.annotation;
 
+import com.tplink.shd.tauc.migration.codec.InOut;
+import com.tplink.shd.tauc.migration.codec.InOutCodec;
+import com.tplink.shd.tauc.migration.diff.OutputDiffPool;
+import com.tplink.shd.tauc.migration.digest.ArgsDigester;
+import com.tplink.shd.tauc.migration.replay.MigrationRecordLog;
+import com.tplink.shd.tauc.migration.store.InOutNotifier;
+import com.tplink.shd.tauc.migration.store.LatencyBudget;
+import com.tplink.shd.tauc.migration.store.LatencyBudgetExceededException;
+import com.tplink.shd.tauc.migration.store.LatencyBudgetExecutor;
+import com.tplink.shd.tauc.migration.store.MigrationCircuitBreaker;
+import com.tplink.shd.tauc.migration.store.MigrationRecordStore;
+import com.tplink.shd.tauc.migration.store.NearCacheService;
+import com.tplink.shd.tauc.migration.store.ReactiveMigrationRecordStore;
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
 import com.tplink.shd.tauc.share.prometheus.PrometheusMetricMigrationCheckHandler;
 import com.tplink.smb.component.cache.api.CacheService;
 
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.MDC;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ReactiveAdapter;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Aspect
 @Component
@@ -28,141 +50,528 @@ public class ExecuteCheckAspect {
     @Autowired
     private PrometheusMetricMigrationCheckHandler prometheusHandler; // 注入Prometheus预警处理器
 
+    @Autowired
+    private InOutNotifier inOutNotifier; // InOut写入信号的发布与等待
+
+    @Autowired
+    private InOutCodec inOutCodec; // InOut的二进制编解码
+
+    @Autowired
+    private MigrationRecordStore recordStore; // 记录写入入口，支持write-behind
+
+    @Autowired
+    private ReactiveMigrationRecordStore reactiveRecordStore; // 异步返回类型使用的非阻塞读写
+
+    @Autowired
+    private MigrationMethodRegistry methodRegistry; // 方法描述注册表
+
+    @Autowired
+    private MigrationSampler sampler; // 按请求uuid抽样
+
+    @Autowired
+    private OutputDiffPool outputDiffPool; // slave 输出与 master 输出的后台结构比对
+
+    @Autowired
+    private MigrationCircuitBreaker circuitBreaker; // 迁移缓存熔断器
+
+    @Autowired
+    private LatencyBudgetExecutor budgetExecutor; // 单次调用内缓存操作的延迟预算
+
+    @Autowired
+    private MigrationRecordLog recordLog; // master 的本地记录日志，供离线重放
+
     @Around("@annotation(com.tplink.shd.tauc.migration.annotation.ExecuteCheck)")
     public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
         if (!properties.isKafka()) {
             return joinPoint.proceed(); // 如果配置未开启，继续执行业务逻辑
         }
 
-        // 从MDC中获取配置中定义的uuid索引
-        String uuid = MDC.get(properties.getUuid());
-        if (uuid == null || uuid.isEmpty()) {
-            log.info("UUID is missing from MDC with key '{}'. Proceeding with business logic.", properties.getUuid());
+        // 从请求上下文中获取uuid，上下文由 InsertUniqueIdAspect 打开
+        MigrationContext context = MigrationContext.current();
+        if (context == null || context.getUuid().isEmpty()) {
+            log.info("Migration context is missing, UUID key '{}'. Proceeding with business logic.", properties.getUuid());
             return joinPoint.proceed(); // 如果 UUID 缺失，继续执行业务逻辑
         }
+        String uuid = context.getUuid();
+
+        MigrationMethodDescriptor descriptor = methodRegistry.get(joinPoint.getStaticPart());
+        if (!sampler.isSampled(context, descriptor)) {
+            return joinPoint.proceed(); // 未被抽中的请求不参与比对
+        }
+        boolean master = "master".equalsIgnoreCase(properties.getKafkaRole());
+        if (master && recordLog.isExclusive()) {
+            // 记录模式只写本地日志，不访问Redis，也不受迁移缓存熔断影响
+            return handleRecordingMaster(joinPoint, descriptor, uuid, joinPoint.getArgs());
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return joinPoint.proceed(); // 迁移缓存熔断期间直接执行业务逻辑
+        }
 
         // 生成Redis的键，使用uuid作为键的一部分
-        String keyInput = generateKey(uuid, "input");
-        String keyInOut = generateKey(uuid, "inout");
+        String keyInput = generateKey(uuid, "input", 'i');
+        String keyInOut = generateKey(uuid, "inout", 'o');
 
         Object[] args = joinPoint.getArgs(); // 获取方法入参
         log.debug("ExecuteCheck {}",uuid);
 
-        if ("master".equalsIgnoreCase(properties.getKafkaRole())) {
-            return handleMasterRole(joinPoint, properties.getCacheName(), keyInput, keyInOut, args);
+        // 指标按方法描述预先注册
+        MigrationMeters meters = prometheusHandler.meters(descriptor);
+
+        ReactiveAdapter adapter = descriptor.getReactiveAdapter(); // 异步返回类型时比对与记录组合进返回的异步链路
+        if (master) {
+            // 同时开启记录日志与Redis交换时，两者写入相同的 InOut 帧
+            MigrationRecordLog.Pending record = recordLog.isEnabled() ? recordLog.begin(uuid, descriptor.getMethodKey(), args) : null;
+            return adapter == null
+                    ? handleMasterRole(joinPoint, meters, properties.getCacheName(), keyInput, keyInOut, args, record)
+                    : handleReactiveMaster(joinPoint, adapter, meters, properties.getCacheName(), keyInput, keyInOut, args, record);
         } else if ("slave".equalsIgnoreCase(properties.getKafkaRole())) {
-            return handleSlaveRole(properties.getCacheName(), keyInput, keyInOut, args);
+            return adapter == null
+                    ? handleSlaveRole(joinPoint, descriptor, meters, uuid, properties.getCacheName(), keyInput, keyInOut, args)
+                    : handleReactiveSlave(joinPoint, adapter, descriptor, meters, uuid, properties.getCacheName(), keyInput, keyInOut, args);
         }
 
         return joinPoint.proceed(); // 默认情况下，继续执行业务逻辑
     }
 
-    private Object handleMasterRole(ProceedingJoinPoint joinPoint, String cacheName, String keyInput, String keyInOut, Object[] args) throws Throwable {
+    private Object handleMasterRole(ProceedingJoinPoint joinPoint, MigrationMeters meters, String cacheName, String keyInput, String keyInOut,
+                                    Object[] args, MigrationRecordLog.Pending record) throws Throwable {
         // 获取Redis中的输入值，指定类型为Object[]
         String argsDigest = generateArgsDigest(args); // 生成参数摘要
-        String redisInput = cacheService.get(cacheName, keyInput, String.class);
+        LatencyBudget budget = budgetExecutor.newBudget(); // 执行原方法前后的缓存操作共用一个预算
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(budget)) {
+            String redisInput = getInput(meters, cacheName, keyInput);
 
-        if (redisInput != null && !redisInput.equals(argsDigest)) {
-            log.warn("Mismatch detected for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
-            prometheusHandler.migrationMismatch(); // 调用预警
-        } else {
-            // 保存输入到Redis, 设置过期时间为1小时
-            cacheService.set(cacheName, keyInput, argsDigest, properties.getExpireTime(), TimeUnit.SECONDS);
+            if (redisInput != null && !redisInput.equals(argsDigest)) {
+                log.warn("Mismatch detected for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
+                meters.mismatch(); // 调用预警
+            } else {
+                // 保存输入到Redis, 开启write-behind时异步写入
+                long start = System.nanoTime();
+                recordStore.write(cacheName, keyInput, argsDigest, properties.getExpireTime(), null);
+                meters.recordRedisSet(System.nanoTime() - start);
+            }
+            log.debug("Check for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
+        } catch (LatencyBudgetExceededException e) {
+            log.debug("Latency budget exceeded for input key: {}. Proceeding with business logic.", keyInput);
+            return proceed(joinPoint, meters); // 预算耗尽时直接执行业务逻辑
         }
-        log.debug("Check for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
-        Object output = joinPoint.proceed(); // 执行原方法
+        Object output = proceed(joinPoint, meters); // 执行原方法
 
         // 保存输入和输出到Redis, 设置过期时间为1小时
-        cacheService.set(cacheName, keyInOut, new InOut(argsDigest, output), properties.getExpireTime(), TimeUnit.SECONDS);
+        // 写入完成后通知等待中的slave，开启write-behind时业务响应不再等待该写入
+        byte[] frame = inOutCodec.encode(argsDigest, output);
+        if (record != null) {
+            recordLog.append(record, frame);
+        }
+        long start = System.nanoTime();
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(budget)) {
+            recordStore.write(cacheName, keyInOut, frame, properties.getExpireTime(),
+                    () -> inOutNotifier.publish(keyInOut));
+        } catch (LatencyBudgetExceededException e) {
+            // 写入仍在后台完成，完成后再通知等待中的slave，业务响应不再等待
+            log.debug("Latency budget exceeded while recording in/out key: {}", keyInOut);
+        } finally {
+            meters.recordRedisSet(System.nanoTime() - start);
+        }
 
         return output;
     }
 
-    private Object handleSlaveRole(String cacheName, String keyInput, String keyInOut, Object[] args) throws InterruptedException {
+    private Object handleSlaveRole(ProceedingJoinPoint joinPoint, MigrationMethodDescriptor descriptor, MigrationMeters meters,
+                                   String uuid, String cacheName, String keyInput, String keyInOut, Object[] args) throws Throwable {
+        // 比对过程中的缓存操作共用一个预算，等待master写入的时间不计入
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(budgetExecutor.newBudget())) {
+            return compareSlave(joinPoint, descriptor, meters, uuid, cacheName, keyInput, keyInOut, args);
+        } catch (LatencyBudgetExceededException e) {
+            log.debug("Latency budget exceeded for input key: {}. Proceeding with business logic.", keyInput);
+            return proceed(joinPoint, meters); // 预算耗尽时直接执行业务逻辑
+        }
+    }
+
+    private Object compareSlave(ProceedingJoinPoint joinPoint, MigrationMethodDescriptor descriptor, MigrationMeters meters,
+                                String uuid, String cacheName, String keyInput, String keyInOut, Object[] args) throws Throwable {
         // 获取Redis中的输入值，指定类型为Object[]
         String argsDigest = generateArgsDigest(args); // 生成参数摘要
-        String redisInput = cacheService.get(cacheName, keyInput, String.class);
-        InOut redisInOut = cacheService.get(cacheName, keyInOut, InOut.class);
+        String redisInput = getInput(meters, cacheName, keyInput);
+        InOut redisInOut = loadInOut(meters, cacheName, keyInOut);
 
         if (redisInput != null && redisInOut != null) {
             // 如果存在 input 和 in/out
             if (redisInput.equals(argsDigest)) {
                 log.info("Input matches for key: {}. Returning cached output.", keyInput);
-                return redisInOut.getOutput(); // 直接返回缓存的输出
+                return masterOutput(joinPoint, descriptor, meters, uuid, keyInOut, redisInOut); // 直接返回缓存的输出
             } else {
                 log.warn("Mismatch detected for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
-                prometheusHandler.migrationMismatch(); // 调用预警
+                meters.mismatch(); // 调用预警
                 return null; // 返回 null，不继续执行业务逻辑
             }
         } else if (redisInput != null) {
             // 仅存在 input，没有 in/out
             if (!redisInput.equals(argsDigest)) {
                 log.warn("Mismatch detected for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
-                prometheusHandler.migrationMismatch(); // 调用预警
+                meters.mismatch(); // 调用预警
             }
             log.info("Only input found for key: {}. Waiting for output...", keyInput);
-            Thread.sleep(properties.getWaitTime()); // 等待固定时间
-            redisInOut = cacheService.get(cacheName, keyInOut, InOut.class);
+            redisInOut = awaitInOut(meters, cacheName, keyInOut); // 等待master写入输出
             if (redisInOut == null) {
                 log.error("One side alert: Output not found for input key: {}", keyInput);
+                meters.oneside(); // 调用预警
+                return null;
+            }
+            if (!argsDigest.equals(redisInOut.getInput())) {
+                if (redisInput.equals(argsDigest)) {
+                    // 输入不一致时上面已计入，与异步流程相同不重复计数
+                    log.warn("Mismatch detected for in/out key: {}. Existing value: {}, New value: {}", keyInOut, redisInOut.getInput(), argsDigest);
+                    meters.mismatch(); // 调用预警
+                }
+                return null;
             }
-            return null;
+            return masterOutput(joinPoint, descriptor, meters, uuid, keyInOut, redisInOut);
         } else {
             // input 和 in/out 都不存在
             log.info("No input or in/out found. Saving input and waiting...");
             // 保存输入到Redis, 设置过期时间为1小时
+            long start = System.nanoTime();
             cacheService.set(cacheName, keyInput, argsDigest, 1, TimeUnit.HOURS);
-            Thread.sleep(properties.getWaitTime()); // 等待固定时间
-            redisInOut = cacheService.get(cacheName, keyInOut, InOut.class);
+            meters.recordRedisSet(System.nanoTime() - start);
+            redisInOut = awaitInOut(meters, cacheName, keyInOut); // 等待master写入输出
             if (redisInOut == null) {
-                prometheusHandler.migrationOneside(); // 调用预警
+                meters.oneside(); // 调用预警
+                return null;
+            }
+            if (!argsDigest.equals(redisInOut.getInput())) {
+                log.warn("Mismatch detected for in/out key: {}. Existing value: {}, New value: {}", keyInOut, redisInOut.getInput(), argsDigest);
+                meters.mismatch(); // 调用预警
+                return null;
             }
-            return null;
+            return masterOutput(joinPoint, descriptor, meters, uuid, keyInOut, redisInOut); // 返回master的真实输出
         }
     }
 
-    // 生成Redis键的方法，使用uuid和类型作为区分
-    private String generateKey(String uuid, String type) {
-        return uuid + ":" + type;
+    // 解码master的输出并计为 match；输出无法解码时计为 mismatch，改为执行slave自身逻辑，不向调用方抛出
+    private Object masterOutput(ProceedingJoinPoint joinPoint, MigrationMethodDescriptor descriptor, MigrationMeters meters,
+                                String uuid, String keyInOut, InOut inOut) throws Throwable {
+        Object output;
+        try {
+            output = inOut.getOutput();
+        } catch (RuntimeException e) {
+            log.error("Failed to decode master output for in/out key: {}. Proceeding with business logic.", keyInOut, e);
+            meters.mismatch(); // 调用预警
+            return proceed(joinPoint, meters);
+        }
+        meters.match();
+        verifyOutput(joinPoint, descriptor, meters, uuid, inOut);
+        return output;
     }
 
-    // 生成参数摘要的方法，可以使用自定义摘要算法或简单的字符串拼接
-    private String generateArgsDigest(Object[] args) {
-        // 可以根据实际需求生成摘要，例如用某种哈希算法或简单的字符串拼接
-        return String.join(":", Arrays.stream(args)
-                .map(Object::toString)
-                .toArray(String[]::new));
+    // 异步返回类型的 master：订阅时比对并记录输入，原方法的结果完成后再写入 InOut，多值结果以 List 记录
+    private Object handleReactiveMaster(ProceedingJoinPoint joinPoint, ReactiveAdapter adapter, MigrationMeters meters,
+                                        String cacheName, String keyInput, String keyInOut, Object[] args, MigrationRecordLog.Pending record) {
+        String argsDigest = generateArgsDigest(args); // 生成参数摘要
+        Mono<Void> recordInput = ReactiveSupport.optional(getInputReactive(meters, cacheName, keyInput))
+                .flatMap(redisInput -> {
+                    if (redisInput.isPresent() && !redisInput.get().equals(argsDigest)) {
+                        log.warn("Mismatch detected for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput.get(), argsDigest);
+                        meters.mismatch(); // 调用预警
+                        return Mono.empty();
+                    }
+                    return ReactiveSupport.timed(reactiveRecordStore.write(cacheName, keyInput, argsDigest, properties.getExpireTime(), null),
+                            meters::recordRedisSet);
+                });
+
+        Flux<Object> output = ReactiveSupport.proceed(joinPoint, adapter, meters);
+        Publisher<Object> result;
+        if (adapter.isMultiValue()) {
+            // 元素照常向下游输出，同时收集，完成后写入 InOut 再结束
+            result = recordInput.thenMany(Flux.defer(() -> {
+                RecordedElements elements = new RecordedElements(properties.getMaxRecordedElements());
+                return output.doOnNext(elements)
+                        .concatWith(Mono.defer(() -> writeInOutReactive(meters, cacheName, keyInOut, argsDigest, elements.toList(), record))
+                                .then(Mono.empty()));
+            }));
+        } else {
+            result = recordInput.then(output.next()
+                    .flatMap(value -> writeInOutReactive(meters, cacheName, keyInOut, argsDigest, value, record).thenReturn(value))
+                    .switchIfEmpty(writeInOutReactive(meters, cacheName, keyInOut, argsDigest, null, record).then(Mono.empty())));
+        }
+        return adapter.fromPublisher(result);
     }
 
-    // 用于保存input和output的内部类
-    private static class InOut {
-        private final String input;
-        private final Object output;
+    // 记录模式的 master：执行原方法后把 InOut 帧追加到本地日志，记录失败不影响业务结果
+    private Object handleRecordingMaster(ProceedingJoinPoint joinPoint, MigrationMethodDescriptor descriptor, String uuid, Object[] args) throws Throwable {
+        MigrationMeters meters = prometheusHandler.meters(descriptor);
+        String argsDigest = generateArgsDigest(args); // 生成参数摘要
+        MigrationRecordLog.Pending record = recordLog.begin(uuid, descriptor.getMethodKey(), args);
+        ReactiveAdapter adapter = descriptor.getReactiveAdapter();
+        if (adapter == null) {
+            Object output = proceed(joinPoint, meters); // 执行原方法
+            appendRecord(record, argsDigest, output);
+            return output;
+        }
+        Flux<Object> output = ReactiveSupport.proceed(joinPoint, adapter, meters);
+        if (adapter.isMultiValue()) {
+            // 多值结果以 List 记录，与写入Redis时一致
+            return adapter.fromPublisher(Flux.defer(() -> {
+                RecordedElements elements = new RecordedElements(properties.getMaxRecordedElements());
+                return output.doOnNext(elements).doOnComplete(() -> appendRecord(record, argsDigest, elements.toList()));
+            }));
+        }
+        return adapter.fromPublisher(output.next().doOnSuccess(value -> appendRecord(record, argsDigest, value)));
+    }
 
-        public InOut(String input, Object output) {
-            this.input = input;
-            this.output = output;
+    private void appendRecord(MigrationRecordLog.Pending record, String argsDigest, Object output) {
+        try {
+            recordLog.append(record, inOutCodec.encode(argsDigest, output));
+        } catch (RuntimeException | InternalError e) {
+            log.warn("Failed to append migration record, argsDigest: {}", argsDigest, e);
         }
+    }
 
-        public String getInput() {
-            return input;
+    // 异步返回类型的 slave：与同步流程相同，等待 InOut 时不阻塞线程，命中时返回 master 的输出
+    private Object handleReactiveSlave(ProceedingJoinPoint joinPoint, ReactiveAdapter adapter, MigrationMethodDescriptor descriptor,
+                                       MigrationMeters meters, String uuid, String cacheName, String keyInput, String keyInOut, Object[] args) {
+        String argsDigest = generateArgsDigest(args); // 生成参数摘要
+        Flux<Object> own = ReactiveSupport.proceed(joinPoint, adapter, meters); // slave 自身逻辑，在切面线程上创建，最多订阅一次
+        Mono<Flux<Object>> reply = Mono.zip(ReactiveSupport.optional(getInputReactive(meters, cacheName, keyInput)),
+                        ReactiveSupport.optional(loadInOutReactive(meters, cacheName, keyInOut)))
+                .flatMap(found -> {
+                    String redisInput = found.getT1().orElse(null);
+                    InOut redisInOut = found.getT2().orElse(null);
+                    if (redisInput != null && redisInOut != null) {
+                        // 如果存在 input 和 in/out
+                        if (redisInput.equals(argsDigest)) {
+                            log.info("Input matches for key: {}. Returning cached output.", keyInput);
+                            return Mono.just(masterOutputReactive(own, adapter, descriptor, meters, uuid, keyInOut, redisInOut)); // 直接返回缓存的输出
+                        }
+                        log.warn("Mismatch detected for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
+                        meters.mismatch(); // 调用预警
+                        return Mono.empty();
+                    }
+                    Mono<Void> prepare;
+                    if (redisInput != null) {
+                        // 仅存在 input，没有 in/out
+                        if (!redisInput.equals(argsDigest)) {
+                            log.warn("Mismatch detected for input key: {}. Existing value: {}, New value: {}", keyInput, redisInput, argsDigest);
+                            meters.mismatch(); // 调用预警
+                        }
+                        log.info("Only input found for key: {}. Waiting for output...", keyInput);
+                        prepare = Mono.empty();
+                    } else {
+                        // input 和 in/out 都不存在，保存输入到Redis, 设置过期时间为1小时
+                        log.info("No input or in/out found. Saving input and waiting...");
+                        prepare = ReactiveSupport.timed(reactiveRecordStore.write(cacheName, keyInput, argsDigest, TimeUnit.HOURS.toSeconds(1), null),
+                                meters::recordRedisSet);
+                    }
+                    boolean inputMismatched = redisInput != null && !redisInput.equals(argsDigest);
+                    return prepare.then(ReactiveSupport.optional(awaitInOutReactive(meters, cacheName, keyInOut)))
+                            .flatMap(awaited -> {
+                                if (!awaited.isPresent()) {
+                                    log.error("One side alert: Output not found for input key: {}", keyInput);
+                                    meters.oneside(); // 调用预警
+                                    return Mono.empty();
+                                }
+                                InOut inOut = awaited.get();
+                                if (!argsDigest.equals(inOut.getInput())) {
+                                    if (!inputMismatched) {
+                                        log.warn("Mismatch detected for in/out key: {}. Existing value: {}, New value: {}", keyInOut, inOut.getInput(), argsDigest);
+                                        meters.mismatch(); // 调用预警
+                                    }
+                                    return Mono.empty();
+                                }
+                                return Mono.just(masterOutputReactive(own, adapter, descriptor, meters, uuid, keyInOut, inOut)); // 返回master的真实输出
+                            });
+                });
+        if (adapter.isMultiValue()) {
+            return adapter.fromPublisher(reply.flatMapMany(elements -> elements));
         }
+        return adapter.fromPublisher(reply.flatMap(Flux::next));
+    }
 
-        public Object getOutput() {
-            return output;
+    // 异步流程中 masterOutput 的对应实现：master 以 List 记录多值结果，逐个元素返回；记录被截断时返回 slave 自身的完整结果，并在返回的同时比对
+    private Flux<Object> masterOutputReactive(Flux<Object> own, ReactiveAdapter adapter, MigrationMethodDescriptor descriptor,
+                                              MigrationMeters meters, String uuid, String keyInOut, InOut inOut) {
+        Object output;
+        try {
+            output = inOut.getOutput();
+        } catch (RuntimeException e) {
+            log.error("Failed to decode master output for in/out key: {}. Proceeding with business logic.", keyInOut, e);
+            meters.mismatch(); // 调用预警
+            return own;
+        }
+        meters.match();
+        if (adapter.isMultiValue() && RecordedElements.isTruncated(output)) {
+            return collectForDiff(own, descriptor, uuid, inOut);
         }
+        verifyOutputReactive(own, adapter, descriptor, uuid, inOut);
+        if (output == null) {
+            return Flux.empty();
+        }
+        if (adapter.isMultiValue() && output instanceof Collection) {
+            return Flux.fromIterable((Collection<?>) output).cast(Object.class);
+        }
+        return Flux.just(output);
+    }
 
-        @Override
-        public String toString() {
-            return "InOut{" +
-                    "input='" + input + '\'' +
-                    ", output=" + output +
-                    '}';
+    // 输入一致时执行slave自身逻辑，输出交给后台与master输出比对；调用方拿到的仍是master的输出
+    private void verifyOutput(ProceedingJoinPoint joinPoint, MigrationMethodDescriptor descriptor, MigrationMeters meters,
+                              String uuid, InOut inOut) {
+        OutputDiffPool.Reservation reservation = reserveDiff(descriptor);
+        if (reservation == null) {
+            return; // 比对名额已用完时不再执行slave逻辑
         }
+        Object output;
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(null)) {
+            output = proceed(joinPoint, meters); // 业务逻辑的耗时不计入缓存操作的预算
+        } catch (Throwable e) {
+            log.warn("Slave execution failed during output verification, uuid: {}", uuid, e);
+            reservation.fail();
+            return;
+        }
+        reservation.submit(uuid, inOut, output);
     }
-}
 
+    // verifyOutput 的异步版本，slave 的结果单独订阅，不影响返回给调用方的链路；多值结果按相同上限收集为 List，与 master 的记录一致
+    private void verifyOutputReactive(Flux<Object> output, ReactiveAdapter adapter, MigrationMethodDescriptor descriptor,
+                                      String uuid, InOut inOut) {
+        OutputDiffPool.Reservation reservation = reserveDiff(descriptor);
+        if (reservation == null) {
+            return; // 比对名额已用完时不再执行slave逻辑
+        }
+        Mono<Optional<Object>> collected = adapter.isMultiValue()
+                ? output.collect(() -> new RecordedElements(properties.getMaxRecordedElements()), RecordedElements::accept)
+                        .map(elements -> Optional.of(elements.toList()))
+                : ReactiveSupport.optional(output.next());
+        collected.subscribe(value -> reservation.submit(uuid, inOut, value.orElse(null)),
+                e -> {
+                    log.warn("Slave execution failed during output verification, uuid: {}", uuid, e);
+                    reservation.fail();
+                });
+    }
 
+    // 返回 slave 自身多值结果的同时按上限收集，完成后与 master 被截断的记录比对
+    private Flux<Object> collectForDiff(Flux<Object> output, MigrationMethodDescriptor descriptor, String uuid, InOut inOut) {
+        return Flux.defer(() -> {
+            OutputDiffPool.Reservation reservation = reserveDiff(descriptor);
+            if (reservation == null) {
+                return output;
+            }
+            RecordedElements elements = new RecordedElements(properties.getMaxRecordedElements());
+            return output.doOnNext(elements)
+                    .doOnComplete(() -> reservation.submit(uuid, inOut, elements.toList()))
+                    .doOnError(e -> reservation.fail())
+                    .doOnCancel(reservation::release);
+        });
+    }
 
+    // 输出比对开启时预留名额，未开启或名额已用完时返回 null
+    private OutputDiffPool.Reservation reserveDiff(MigrationMethodDescriptor descriptor) {
+        return outputDiffPool.isEnabled() ? outputDiffPool.reserve(descriptor) : null;
+    }
 
+    // 等待master写入InOut，收到信号立即返回，最长等待waitTime
+    private InOut awaitInOut(MigrationMeters meters, String cacheName, String keyInOut) throws InterruptedException {
+        // 先登记再读取，master在两次操作之间写入时信号不会丢失
+        CompletableFuture<Void> signal = inOutNotifier.register(keyInOut);
+        try {
+            InOut redisInOut = loadInOut(meters, cacheName, keyInOut);
+            if (redisInOut != null) {
+                return redisInOut;
+            }
+            long start = System.nanoTime();
+            inOutNotifier.await(signal, properties.getWaitTime());
+            meters.recordSlaveWait(System.nanoTime() - start);
+        } finally {
+            inOutNotifier.unregister(keyInOut, signal);
+        }
+        if (cacheService instanceof NearCacheService) {
+            // 等待前的未命中可能已进入近端负缓存，master写入后需绕过
+            ((NearCacheService) cacheService).invalidate(cacheName, keyInOut);
+        }
+        // 收到信号或超时后读取一次，超时的情况下兜底确认输出是否已写入
+        return loadInOut(meters, cacheName, keyInOut);
+    }
 
+    // 生成Redis键的方法，使用uuid和类型作为区分；紧凑格式下使用单字符类型，uuid作为哈希标签
+    private String generateKey(String uuid, String type, char compactType) {
+        if (properties.isCompactKeys()) {
+            return "{" + MigrationMethodDescriptor.hashTag(uuid) + "}" + compactType;
+        }
+        return uuid + ":" + type;
+    }
+
+    // 生成参数摘要的方法，参数以 : 连接，复用线程内缓冲区
+    private String generateArgsDigest(Object[] args) {
+        return ArgsDigester.detailed(args);
+    }
+
+    // 等待master写入InOut的非阻塞版本，超时后仍未写入时为空
+    private Mono<InOut> awaitInOutReactive(MigrationMeters meters, String cacheName, String keyInOut) {
+        return Mono.defer(() -> {
+            // 先登记再读取，master在两次操作之间写入时信号不会丢失
+            CompletableFuture<Void> signal = inOutNotifier.register(keyInOut);
+            // 每个等待者登记各自的信号，取消订阅时一并取消，不影响同一个 key 的其他等待者
+            Mono<Void> await = Mono.fromFuture(signal)
+                    .timeout(Duration.ofMillis(properties.getWaitTime()))
+                    .onErrorResume(TimeoutException.class, e -> Mono.empty());
+            return loadInOutReactive(meters, cacheName, keyInOut)
+                    .switchIfEmpty(ReactiveSupport.timed(await, meters::recordSlaveWait)
+                            .then(Mono.defer(() -> {
+                                if (cacheService instanceof NearCacheService) {
+                                    // 等待前的未命中可能已进入近端负缓存，master写入后需绕过
+                                    ((NearCacheService) cacheService).invalidate(cacheName, keyInOut);
+                                }
+                                // 收到信号或超时后读取一次，超时的情况下兜底确认输出是否已写入
+                                return loadInOutReactive(meters, cacheName, keyInOut);
+                            })))
+                    .doFinally(s -> inOutNotifier.unregister(keyInOut, signal));
+        });
+    }
+
+    private Mono<String> getInputReactive(MigrationMeters meters, String cacheName, String keyInput) {
+        return ReactiveSupport.timed(reactiveRecordStore.getValue(cacheName, keyInput, String.class), meters::recordRedisGet);
+    }
+
+    private Mono<InOut> loadInOutReactive(MigrationMeters meters, String cacheName, String keyInOut) {
+        return ReactiveSupport.timed(reactiveRecordStore.getValue(cacheName, keyInOut, byte[].class), meters::recordRedisGet)
+                .map(inOutCodec::decode);
+    }
+
+    // 编码并写入InOut，写入完成后通知等待中的slave；开启记录日志时同一帧同时追加到本地日志
+    private Mono<Void> writeInOutReactive(MigrationMeters meters, String cacheName, String keyInOut, String argsDigest, Object output,
+                                          MigrationRecordLog.Pending record) {
+        return Mono.defer(() -> {
+            byte[] frame = inOutCodec.encode(argsDigest, output);
+            if (record != null) {
+                recordLog.append(record, frame);
+            }
+            return ReactiveSupport.timed(reactiveRecordStore.write(cacheName, keyInOut, frame,
+                    properties.getExpireTime(), () -> inOutNotifier.publish(keyInOut)), meters::recordRedisSet);
+        });
+    }
+
+    // 执行原方法并记录耗时
+    private Object proceed(ProceedingJoinPoint joinPoint, MigrationMeters meters) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            meters.recordProceed(System.nanoTime() - start);
+        }
+    }
+
+    // 读取输入摘要
+    private String getInput(MigrationMeters meters, String cacheName, String keyInput) {
+        long start = System.nanoTime();
+        String redisInput = cacheService.get(cacheName, keyInput, String.class);
+        meters.recordRedisGet(System.nanoTime() - start);
+        return redisInput;
+    }
+
+    // 读取并解码InOut，输出在摘要比对通过后才会解码
+    private InOut loadInOut(MigrationMeters meters, String cacheName, String keyInOut) {
+        long start = System.nanoTime();
+        byte[] frame = cacheService.get(cacheName, keyInOut, byte[].class);
+        meters.recordRedisGet(System.nanoTime() - start);
+        return frame == null ? null : inOutCodec.decode(frame);
+    }
+}
@@ -1,15 +1,25 @@
 package com.tplink.shd.tauc.migration.annotation;
 
+import com.tplink.shd.tauc.migration.digest.DigestAlgorithm;
+import com.tplink.shd.tauc.migration.store.WriteBehindPipeline;
+import com.tplink.shd.tauc.migration.kafka.KafkaTopicMatcher;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
 
 @Data
 @Component
@@ -19,6 +29,10 @@ import java.util.stream.Stream;
 @ConfigurationProperties(prefix = "execute-migration")
 public class ExecuteMigration {
     private boolean saveSwitch; // 控制保存逻辑的开关
+    private boolean kafka; // 控制ExecuteCheck比对逻辑的开关
+    private DigestAlgorithm digestAlgorithm = DigestAlgorithm.MURMUR3_128; // 简单参数摘要算法，master与slave需保持一致
+    private boolean compactKeys; // 开启后使用 {uuid} 哈希标签、数字方法id与base64url摘要的紧凑key，master与slave需保持一致
+    private boolean atomicRecord; // 使用Lua脚本在一次往返内完成比对与记录，master与slave需保持一致，Redis集群下须同时开启compactKeys
     private String kafkaRole; // Kafka角色，可能用来区分master和slave
     private boolean xxl;
     private String xxlRole;
@@ -26,12 +40,154 @@ public class ExecuteMigration {
     private long expireTime; // 缓存过期时间
     private String cacheName; // 缓存名称
     private String uuid; // UUID索引键
-    private String kafkaTopics; // 用逗号分隔的Kafka topic列表
+    private volatile String kafkaTopics; // 用逗号分隔的Kafka topic列表，末尾的 * 匹配任意后缀，中间的 * 匹配一个不含 . 的片段
+    private volatile Map<String, KafkaTopic> kafkaTopicSettings = new LinkedHashMap<>(); // 按 topic 或模式的单独配置，其中的 key 同样参与匹配
+    private int codecCompressThreshold = 1024; // InOut输出编码后超过该字节数时压缩，0表示不压缩
+    private Set<String> codecJsonPackages = new LinkedHashSet<>(List.of("com.tplink.", "java.math.", "java.time.")); // 解码时允许按类名加载的 JSON 类型的包前缀，未注册序列化器的业务类型需在其中
+    private int maxRecordedElements = 10000; // 多值异步结果最多记录的元素数，超出的元素照常返回但不记录，master与slave需保持一致
+    private String inOutChannel = "migration:inout"; // master写入InOut后发布信号的Redis频道
+    private WriteBehind writeBehind = new WriteBehind(); // master端记录异步批量写入
+    private NearCache nearCache = new NearCache(); // CacheService前的进程内近端缓存
+    private Sampling sampling = new Sampling(); // 按请求uuid抽样参与比对，master与slave需保持一致
+    private OnesideCheck onesideCheck = new OnesideCheck(); // ExecuteSave slave 延迟的 oneside 检查
+    private KafkaBatch kafkaBatch = new KafkaBatch(); // 开启 batch 的 topic 的批量比对
+    private ContextPropagation contextPropagation = new ContextPropagation(); // 请求上下文跨线程传递
+    private Ledger ledger = new Ledger(); // ExecuteSave 请求级账本
+    private OutputDiff outputDiff = new OutputDiff(); // ExecuteCheck slave 的输出结构比对
+    private CircuitBreaker circuitBreaker = new CircuitBreaker(); // 迁移缓存变慢或出错时切面直接放行
+    private LatencyBudget latencyBudget = new LatencyBudget(); // 单次切面调用内缓存操作的延迟预算与对冲读取
+    private RecordLog recordLog = new RecordLog(); // ExecuteCheck master 的本地记录日志，供离线重放比对
 
-    // 获取Kafka topic列表，并将其转换为List
-    public List<String> getKafkaTopicList() {
-        return Stream.of(kafkaTopics.split(","))
-                .map(String::trim)
-                .collect(Collectors.toList());
+    @Data
+    public static class WriteBehind {
+        private boolean enabled; // 开启后master端记录先入队，由后台线程批量写入
+        private int capacity = 10000; // 队列容量
+        private int batchSize = 200; // 每批最多写入条数
+        private WriteBehindPipeline.OverflowPolicy overflowPolicy = WriteBehindPipeline.OverflowPolicy.DROP; // 队列满时的策略
+        private long blockTimeoutMillis = 1000; // BLOCK 策略下业务线程最长等待时间，超时后丢弃并计数
+        private long shutdownTimeoutMillis = 5000; // 关闭时等待队列写完的最长时间
+    }
+
+    @Data
+    public static class NearCache {
+        private Set<String> cacheNames = new HashSet<>(); // 开启近端缓存的cacheName，为空时不包装CacheService
+        private int maximumSize = 10000; // 每个cacheName最多缓存的条目数
+        private long positiveTtlMillis = 1000; // 命中结果的缓存时间
+        private long negativeTtlMillis = 100; // 未命中结果的缓存时间，应远小于waitTime
+    }
+
+    @Data
+    public static class Sampling {
+        private double rate = 1.0; // 全局抽样比例，1 表示全部参与比对，0 表示全部跳过
+        private Map<String, Double> tagRates = new HashMap<>(); // 按 ExecuteSave.tag 或 类名:方法名 覆盖的抽样比例
+    }
+
+    @Data
+    public static class OnesideCheck {
+        private long tickMillis = 100; // 时间轮每格的时长，检查的实际延迟最多晚一格
+        private int wheelSize = 512; // 时间轮格数，向上取整为 2 的幂
+        private int maxPending = 100000; // 最多同时等待的检查数，超出时丢弃并计数
+        private int batchSize = 500; // 每次批量读取的最多 key 数
+    }
+
+    @Data
+    public static class Ledger {
+        private boolean enabled; // 开启后请求内的 ExecuteSave 记录先进入账本，请求结束时一次写入并与对端比对
+        private int maxEntries = 256; // 单个请求账本的最多记录数，超出的调用按单条方式比对
+    }
+
+    @Data
+    public static class LatencyBudget {
+        private boolean enabled; // 开启后同步切面调用内的迁移缓存操作共享一个延迟预算，耗尽时直接执行业务逻辑
+        private long budgetMillis = 50; // 单次切面调用内全部缓存操作的总预算，不含业务逻辑与等待master的时间
+        private int maxConcurrentOperations = 64; // 同时执行的缓存操作上限，超出时按预算耗尽处理
+        private String hedgeCacheService; // 对冲读取使用的副本 CacheService bean 名称，为空时不对冲
+        private double hedgePercentile = 0.95; // 主读取超过该分位数的延迟仍未返回时向副本发起对冲读取
+        private long initialHedgeDelayMillis = 10; // 样本不足时的对冲延迟
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled; // 开启后按迁移缓存的错误率与延迟分位数熔断，熔断期间切面直接执行业务逻辑
+        private int windowSeconds = 10; // 统计窗口，按秒分桶滑动
+        private int minimumCalls = 50; // 窗口内调用数不足时不熔断
+        private double failureRateThreshold = 0.5; // 错误率达到该值时熔断
+        private double latencyPercentile = 0.99; // 延迟分位数
+        private long latencyThresholdMillis = 100; // 窗口内该分位数的延迟超过该值时熔断
+        private long openMillis = 10000; // 熔断后多久进入半开状态
+        private int halfOpenProbes = 10; // 半开状态放行的调用数，连续该数量的缓存操作成功且不慢时恢复，出现错误或慢调用时重新熔断
+    }
+
+    @Data
+    public static class RecordLog {
+        private boolean enabled; // 开启后 ExecuteCheck master 把每次调用追加到本地内存映射日志，离线交给 slave 构建重放比对
+        private boolean redisExchange; // 记录的同时是否仍通过Redis与slave交换，默认只写本地日志，不访问Redis
+        private String directory = "migration-record"; // 分段文件所在目录
+        private int segmentSizeMb = 64; // 单个分段文件的大小，创建时按该大小映射
+        private int maxSegments = 32; // 最多保留的分段数，超出时删除最旧的分段，0 表示不删除
+        private boolean recordArgs = true; // 同时记录编码后的方法参数，重放时据此在 slave 构建上重新调用
+        private int replayThreads; // 离线重放的工作线程数，0 表示使用CPU核数
+        private int maxReportedMismatches = 1000; // 重放报告中最多列出的不一致明细数
+    }
+
+    @Data
+    public static class OutputDiff {
+        private boolean enabled; // 开启后slave在输入一致时执行自身逻辑，并在后台与master的输出逐字段比对
+        private int threads = 2; // 后台比对线程数
+        private int queueCapacity = 1000; // 等待比对的最大数量，队列满时跳过本次比对并计数
+        private int maxDifferences = 20; // 每次比对最多报告的差异数
+        private Set<String> ignorePaths = new LinkedHashSet<>(); // 忽略的字段路径，如 /updateTime、/items/*/id，* 匹配一层字段或数组下标
+        private Map<String, Set<String>> methodIgnorePaths = new HashMap<>(); // 按 类名:方法名 追加的忽略路径
+    }
+
+    @Data
+    public static class ContextPropagation {
+        private Set<String> executorBeanNames = new LinkedHashSet<>(); // 需要传递请求上下文的线程池 bean 名称
+    }
+
+    @Data
+    public static class KafkaBatch {
+        private int maxBatchSize = 256; // 每批最多比对的消息数，达到后立即提交
+        private long windowMillis = 20; // 每批从第一条消息起最长等待时间
+        private int maxPending = 10000; // 每个 topic 最多缓冲的消息数，超出时丢弃并计数
+    }
+
+    @Data
+    public static class KafkaTopic {
+        private Double samplingRate; // 该 topic 的抽样比例，为空时使用全局比例
+        private String role; // 只在该角色上做比对，为空时 master 与 slave 都做比对
+        private boolean batch; // 开启后消息摘要先缓冲，按批一次pipeline比对，消费线程不等待比对结果
+    }
+
+    // 编译后的topic匹配器及编译时的配置，配置变更时整体替换
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile CompiledTopics compiledTopics;
+
+    // 获取topic匹配器，首次使用或配置变更后重新编译；按编译时的配置判断是否过期，编译期间发生的变更不会丢失
+    // 不使用 get 前缀，避免作为配置属性被绑定或导出
+    public KafkaTopicMatcher kafkaTopicMatcher() {
+        String topics = kafkaTopics;
+        Map<String, KafkaTopic> settings = kafkaTopicSettings;
+        CompiledTopics compiled = compiledTopics;
+        if (compiled == null || compiled.topics != topics || compiled.settings != settings) {
+            compiled = new CompiledTopics(topics, settings, KafkaTopicMatcher.compile(topics, settings));
+            compiledTopics = compiled;
+        }
+        return compiled.matcher;
+    }
+
+    private static final class CompiledTopics {
+        private final String topics;
+        private final Map<String, KafkaTopic> settings;
+        private final KafkaTopicMatcher matcher;
+
+        private CompiledTopics(String topics, Map<String, KafkaTopic> settings, KafkaTopicMatcher matcher) {
+            this.topics = topics;
+            this.settings = settings;
+            this.matcher = matcher;
+        }
     }
 }
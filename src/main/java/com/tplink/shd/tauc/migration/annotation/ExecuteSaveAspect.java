@@ -1,20 +1,30 @@
 package com.tplink.shd.tauc.migration.annotation;
 
+import com.tplink.shd.tauc.migration.digest.ArgsDigest;
+import com.tplink.shd.tauc.migration.digest.ArgsDigester;
+import com.tplink.shd.tauc.migration.digest.DigestEncoding;
+import com.tplink.shd.tauc.migration.store.CompareResult;
+import com.tplink.shd.tauc.migration.store.CompareVerdict;
+import com.tplink.shd.tauc.migration.store.LatencyBudget;
+import com.tplink.shd.tauc.migration.store.LatencyBudgetExceededException;
+import com.tplink.shd.tauc.migration.store.LatencyBudgetExecutor;
+import com.tplink.shd.tauc.migration.store.MigrationCircuitBreaker;
+import com.tplink.shd.tauc.migration.store.MigrationRecordStore;
+import com.tplink.shd.tauc.migration.store.OnesideCheckWheel;
+import com.tplink.shd.tauc.migration.store.ReactiveMigrationRecordStore;
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
 import com.tplink.shd.tauc.share.prometheus.PrometheusMetricMigrationSaveHandler;
-import com.tplink.smb.component.cache.api.CacheService;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ReactiveAdapter;
 import org.springframework.stereotype.Component;
-import org.slf4j.MDC;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.lang.reflect.Method;
-import java.util.Arrays;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 @Aspect
 @Component
@@ -25,11 +35,32 @@ public class ExecuteSaveAspect {
     private ExecuteMigration properties; // 使用公共的配置类
 
     @Autowired
-    private CacheService cacheService;
+    private MigrationRecordStore recordStore; // 比对与记录的统一入口
+
+    @Autowired
+    private MigrationMethodRegistry methodRegistry; // 方法描述注册表
+
+    @Autowired
+    private MigrationSampler sampler; // 按请求uuid抽样
+
+    @Autowired
+    private ReactiveMigrationRecordStore reactiveRecordStore; // 异步返回类型使用的非阻塞比对与记录
+
+    @Autowired
+    private OnesideCheckWheel onesideCheckWheel; // slave 延迟的 oneside 检查
 
     @Autowired
     private PrometheusMetricMigrationSaveHandler prometheusHandler; // 注入Prometheus预警处理器
 
+    @Autowired
+    private ComparisonLedgerService ledgerService; // 请求级账本
+
+    @Autowired
+    private MigrationCircuitBreaker circuitBreaker; // 迁移缓存熔断器
+
+    @Autowired
+    private LatencyBudgetExecutor budgetExecutor; // 单次调用内缓存操作的延迟预算
+
     @Around("@annotation(ExecuteSave)")
     public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
         // 如果isSaveSwitch未开启，继续执行业务逻辑
@@ -37,121 +68,195 @@ public class ExecuteSaveAspect {
             return joinPoint.proceed();
         }
 
-        // 从MDC中获取配置中定义的uuid索引
-        String uuid = MDC.get(properties.getUuid());
-        if (uuid == null || uuid.isEmpty()) {
-            log.error("UUID is missing from MDC with key '{}'. Proceeding with business logic.", properties.getUuid());
+        // 从请求上下文中获取uuid，上下文由 InsertUniqueIdAspect 打开
+        MigrationContext context = MigrationContext.current();
+        if (context == null || context.getUuid().isEmpty()) {
+            log.error("Migration context is missing, UUID key '{}'. Proceeding with business logic.", properties.getUuid());
             return joinPoint.proceed(); // 如果 UUID 缺失，继续执行业务逻辑
         }
+        String uuid = context.getUuid();
+
+        // 获取方法描述，tag 与 key 模板均已预先计算
+        MigrationMethodDescriptor descriptor = methodRegistry.get(joinPoint.getStaticPart());
+        if (!sampler.isSampled(context, descriptor)) {
+            return joinPoint.proceed(); // 未被抽中的请求不参与比对
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return joinPoint.proceed(); // 迁移缓存熔断期间直接执行业务逻辑
+        }
 
         Object[] args = joinPoint.getArgs(); // 获取方法入参
-        String argsDigest = generateArgsDigest(args); // 生成详细参数摘要
-        String simpleArgsDigest = generateSimpleArgsDigest(args); // 生成简单参数摘要
-
-        // 获取当前方法和上一层调用者的方法信息
-        String currentMethodInfo = getCurrentMethodInfo(joinPoint);
-        String callerMethodInfo = getCallerMethodInfo().orElse("UnknownCaller");
-
-        // 获取@ExecuteSave注解的tag字段
-        MethodSignature methodSignature = (MethodSignature) joinPoint.getSignature();
-        Method method = methodSignature.getMethod();
-        ExecuteSave executeSaveAnnotation = method.getAnnotation(ExecuteSave.class);
-        String tag = executeSaveAnnotation.tag();
-
-        // 判断tag是否有值
-        String keyPart;
-        if (tag != null && !tag.isEmpty()) {
-            keyPart = tag; // 使用自定义的tag
+        ArgsDigest digest = generateDigest(args); // 一次遍历生成详细摘要和简单摘要
+        String argsDigest = digest.getDetailed();
+        String simpleArgsDigest = digest.getSimple();
+
+        MigrationMethodDescriptor.KeyTemplates templates;
+        if (!descriptor.isCallerScoped()) {
+            templates = descriptor.getTagTemplates(); // 使用自定义的tag
         } else {
-            // 当tag为空时，使用当前方法信息和调用者方法信息作为key的一部分
-            keyPart = currentMethodInfo + ":" + callerMethodInfo;
+            // 当tag为空时，使用当前方法信息和调用者方法信息作为key的一部分，仅此时才需要遍历调用栈
+            templates = descriptor.callerTemplates(getCallerMethodInfo().orElse("UnknownCaller"));
         }
 
         // 生成Redis键，加入简单参数摘要
-        String masterInputKey = generateKey(uuid, "master", keyPart, simpleArgsDigest);
-        String slaveInputKey = generateKey(uuid, "slave", keyPart, simpleArgsDigest);
+        boolean compact = properties.isCompactKeys();
+        String masterInputKey = compact ? templates.compactMasterKey(uuid, simpleArgsDigest) : templates.masterKey(uuid, simpleArgsDigest);
+        String slaveInputKey = compact ? templates.compactSlaveKey(uuid, simpleArgsDigest) : templates.slaveKey(uuid, simpleArgsDigest);
 
         log.debug("masterInputKey{}",masterInputKey);
         // 使用配置中的缓存名称
         String cacheName = properties.getCacheName();
 
-        // 根据角色区分逻辑
-        if ("master".equalsIgnoreCase(properties.getKafkaRole())) {
-            return handleMasterRole(joinPoint, cacheName, masterInputKey, slaveInputKey, argsDigest);
-        } else if ("slave".equalsIgnoreCase(properties.getKafkaRole())) {
-            return handleSlaveRole(cacheName, masterInputKey, slaveInputKey, argsDigest);
+        // 指标按方法描述预先注册
+        MigrationMeters meters = prometheusHandler.meters(descriptor);
+
+        // 账本模式：只追加到请求账本，请求结束时整体写入并与对端比对
+        if (ledgerService.append(context, templates, meters, simpleArgsDigest, argsDigest)) {
+            return proceedDetached(joinPoint, descriptor, meters, "master".equalsIgnoreCase(properties.getKafkaRole()));
         }
 
-        return joinPoint.proceed(); // 默认情况下，继续执行业务逻辑
+        return handle(joinPoint, descriptor, meters, cacheName, masterInputKey, slaveInputKey, argsDigest);
     }
 
-    public Object handleMasterRole(ProceedingJoinPoint joinPoint, String cacheName, String masterInputKey, String slaveInputKey, String argsDigest) throws Throwable {
-        // 检查 Redis 中是否有相同的 slave 输入参数
-        String redisSlaveInput = cacheService.get(cacheName, slaveInputKey, String.class);
-        if (redisSlaveInput != null && redisSlaveInput.equals(argsDigest)) {
-            // 如果 slave 输入一致，调用匹配成功预警
-            log.info("Match detected for slave input key: {}", slaveInputKey);
-            prometheusHandler.match(); // 调用匹配预警
-            return joinPoint.proceed(); // 继续执行业务逻辑
-        } else if (redisSlaveInput != null) {
-            // 如果 slave 输入不一致，调用不匹配预警
-            log.warn("Mismatch detected for slave input key: {}. Existing value: {}, New value: {}", slaveInputKey, redisSlaveInput, argsDigest);
-            prometheusHandler.migrationMismatch(); // 调用不匹配预警
-            return joinPoint.proceed(); // 继续执行业务逻辑
-        }
-
-        // 检查 Redis 中是否有相同的 master 输入参数
-        String redisMasterInput = cacheService.get(cacheName, masterInputKey, String.class);
-        if (redisMasterInput != null && redisMasterInput.equals(argsDigest)) {
-            // 如果 master 输入一致，调用匹配成功预警
-            log.info("Match detected for master input key: {}", masterInputKey);
-            prometheusHandler.match(); // 调用匹配预警
-            return null; // 返回 null，不继续执行业务逻辑
-        } else if (redisMasterInput != null) {
-            // 如果 master 输入不一致，调用不匹配预警
-            log.warn("Mismatch detected for master input key: {}. Existing value: {}, New value: {}", masterInputKey, redisMasterInput, argsDigest);
-            prometheusHandler.migrationMismatch(); // 调用不匹配预警
-            return null; // 返回null，不继续执行业务逻辑
+    // 根据角色与返回类型分派，MigrationKafkaAspect 复用该入口
+    public Object handle(ProceedingJoinPoint joinPoint, MigrationMethodDescriptor descriptor, MigrationMeters meters,
+                         String cacheName, String masterInputKey, String slaveInputKey, String argsDigest) throws Throwable {
+        boolean master = "master".equalsIgnoreCase(properties.getKafkaRole());
+        if (!master && !"slave".equalsIgnoreCase(properties.getKafkaRole())) {
+            return joinPoint.proceed(); // 默认情况下，继续执行业务逻辑
+        }
+        if (descriptor.isReactive()) {
+            // 异步返回类型，比对与记录组合进返回的异步链路，不阻塞调用线程
+            return handleReactive(joinPoint, descriptor.getReactiveAdapter(), master, meters, cacheName, masterInputKey, slaveInputKey, argsDigest);
+        }
+        if (master) {
+            return handleMasterRole(joinPoint, meters, cacheName, masterInputKey, slaveInputKey, argsDigest);
+        }
+        return handleSlaveRole(joinPoint, meters, cacheName, masterInputKey, slaveInputKey, argsDigest);
+    }
+
+    public Object handleMasterRole(ProceedingJoinPoint joinPoint, MigrationMeters meters, String cacheName, String masterInputKey, String slaveInputKey, String argsDigest) throws Throwable {
+        // 依次检查 slave 输入、master 输入，均不存在时记录 master 输入，一次往返完成
+        long start = System.nanoTime();
+        CompareResult verdict;
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(budgetExecutor.newBudget())) {
+            verdict = recordStore.compareAndRecord(cacheName, slaveInputKey, masterInputKey, argsDigest, true);
+        } catch (LatencyBudgetExceededException e) {
+            log.debug("Latency budget exceeded for master input key: {}. Proceeding with business logic.", masterInputKey);
+            return proceed(joinPoint, meters); // 预算耗尽时直接执行业务逻辑
+        } finally {
+            meters.recordRedisCompare(System.nanoTime() - start);
         }
+        if (onMasterVerdict(verdict, meters, masterInputKey, slaveInputKey, argsDigest)) {
+            return proceed(joinPoint, meters); // 继续执行业务逻辑
+        }
+        return null; // 返回 null，不继续执行业务逻辑
+    }
 
-        // master 参数在 Redis 中不存在，保存并执行原方法
-        cacheService.set(cacheName, masterInputKey, argsDigest, properties.getExpireTime(), TimeUnit.SECONDS); // 保存 master 输入到 Redis
-        return joinPoint.proceed(); // 执行原方法
+    public Object handleSlaveRole(ProceedingJoinPoint joinPoint, MigrationMeters meters, String cacheName,
+                                  String masterInputKey, String slaveInputKey, String argsDigest) throws Throwable {
+        // 检查 master 输入，不存在时保存 slave 输入，一次往返完成
+        long start = System.nanoTime();
+        CompareResult verdict;
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(budgetExecutor.newBudget())) {
+            verdict = recordStore.compareAndRecord(cacheName, masterInputKey, slaveInputKey, argsDigest, false);
+        } catch (LatencyBudgetExceededException e) {
+            log.debug("Latency budget exceeded for slave input key: {}. Proceeding with business logic.", slaveInputKey);
+            return proceed(joinPoint, meters); // 预算耗尽时直接执行业务逻辑
+        } finally {
+            meters.recordRedisCompare(System.nanoTime() - start);
+        }
+        onSlaveVerdict(verdict, meters, cacheName, masterInputKey, argsDigest);
+        return null; // 不继续执行业务逻辑
     }
 
-    public Object handleSlaveRole(String cacheName, String masterInputKey, String slaveInputKey, String argsDigest) {
-        // 检查 Redis 中是否有相同的 master 输入参数
-        String redisMasterInput = cacheService.get(cacheName, masterInputKey, String.class);
-        if (redisMasterInput != null && redisMasterInput.equals(argsDigest)) {
-            // 如果 master 输入一致，调用匹配成功预警
-            log.info("Match detected for master input key: {}", masterInputKey);
-            prometheusHandler.match(); // 调用匹配预警
-            return null; // 返回 null，不继续执行业务逻辑
-        } else if (redisMasterInput != null) {
-            // 如果 master 输入不一致，调用不匹配预警
-            log.warn("Mismatch detected for master input key: {}. Existing value: {}, New value: {}", masterInputKey, redisMasterInput, argsDigest);
-            prometheusHandler.migrationMismatch(); // 调用不匹配预警
-            return null; // 返回null，不继续执行业务逻辑
+    // 异步返回类型：订阅时才进行比对，master 在比对后接上原方法返回的异步结果，slave 返回空结果
+    private Object handleReactive(ProceedingJoinPoint joinPoint, ReactiveAdapter adapter, boolean master, MigrationMeters meters,
+                                  String cacheName, String masterInputKey, String slaveInputKey, String argsDigest) {
+        Mono<CompareResult> verdict = master
+                ? reactiveRecordStore.compareAndRecord(cacheName, slaveInputKey, masterInputKey, argsDigest, true)
+                : reactiveRecordStore.compareAndRecord(cacheName, masterInputKey, slaveInputKey, argsDigest, false);
+        Flux<Object> output = ReactiveSupport.proceed(joinPoint, adapter, meters); // 在切面线程上创建，比对完成后的线程上执行时恢复上下文
+        Flux<Object> result = ReactiveSupport.timed(verdict, meters::recordRedisCompare)
+                .flatMapMany(v -> {
+                    if (master) {
+                        return onMasterVerdict(v, meters, masterInputKey, slaveInputKey, argsDigest)
+                                ? output
+                                : Flux.empty();
+                    }
+                    onSlaveVerdict(v, meters, cacheName, masterInputKey, argsDigest);
+                    return Flux.empty();
+                });
+        return adapter.fromPublisher(result);
+    }
+
+    /**
+     * 比对已交给 KafkaShadowBatcher 或请求账本时的返回：master 直接执行原方法，slave 返回空结果。
+     * 延后比对的结果晚于原方法返回，master 无法再根据重复输入跳过原方法
+     */
+    public Object proceedDetached(ProceedingJoinPoint joinPoint, MigrationMethodDescriptor descriptor, MigrationMeters meters, boolean master) throws Throwable {
+        ReactiveAdapter adapter = descriptor.getReactiveAdapter();
+        if (master) {
+            return adapter != null
+                    ? adapter.fromPublisher(ReactiveSupport.proceed(joinPoint, adapter, meters))
+                    : proceed(joinPoint, meters);
         }
+        return adapter != null ? adapter.fromPublisher(Flux.empty()) : null;
+    }
 
-        // master 参数在 Redis 中不存在，保存 slave 输入到 Redis
-        cacheService.set(cacheName, slaveInputKey, argsDigest, properties.getExpireTime(), TimeUnit.SECONDS); // 保存 slave 输入到 Redis
+    // 记录批量比对中单条消息的结果，语义与单条比对一致
+    public void recordVerdict(boolean master, CompareResult verdict, MigrationMeters meters, String cacheName,
+                              String masterInputKey, String slaveInputKey, String argsDigest) {
+        if (master) {
+            onMasterVerdict(verdict, meters, masterInputKey, slaveInputKey, argsDigest);
+        } else {
+            onSlaveVerdict(verdict, meters, cacheName, masterInputKey, argsDigest);
+        }
+    }
 
-        // master 参数在 Redis 中不存在，等待指定时间后再次检查
-        try {
-            Thread.sleep(properties.getWaitTime()); // 等待配置的等待时间
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // 恢复中断状态
-            log.error("Interrupted while waiting for master input key: {}", masterInputKey);
-        }
-        // 再次检查 Redis 中是否有相同的 master 输入参数
-        redisMasterInput = cacheService.get(cacheName, masterInputKey, String.class);
-        if (redisMasterInput == null) {
-            // 等待后依然找不到 master 输入，触发 oneside 异常预警
-            log.warn("One-side exception: master input key not found after waiting: {}", masterInputKey);
-            prometheusHandler.migrationMismatch(); // 调用oneside异常预警
+    // 记录 master 比对结果，返回是否需要执行原方法
+    private boolean onMasterVerdict(CompareResult verdict, MigrationMeters meters, String masterInputKey, String slaveInputKey, String argsDigest) {
+        switch (verdict.getVerdict()) {
+            case PEER_MATCH:
+                // 如果 slave 输入一致，调用匹配成功预警
+                log.info("Match detected for slave input key: {}", slaveInputKey);
+                meters.match(); // 调用匹配预警
+                return true;
+            case PEER_MISMATCH:
+                // 如果 slave 输入不一致，调用不匹配预警
+                log.warn("Mismatch detected for slave input key: {}. Existing value: {}, New value: {}", slaveInputKey, verdict.getExisting(), argsDigest);
+                meters.mismatch(); // 调用不匹配预警
+                return true;
+            case SELF_MATCH:
+                // 如果 master 输入一致，调用匹配成功预警
+                log.info("Match detected for master input key: {}", masterInputKey);
+                meters.match(); // 调用匹配预警
+                return false;
+            case SELF_MISMATCH:
+                // 如果 master 输入不一致，调用不匹配预警
+                log.warn("Mismatch detected for master input key: {}. Existing value: {}, New value: {}", masterInputKey, verdict.getExisting(), argsDigest);
+                meters.mismatch(); // 调用不匹配预警
+                return false;
+            default:
+                // master 参数在 Redis 中不存在，已保存，执行原方法
+                return true;
+        }
+    }
+
+    // 记录 slave 比对结果，master 输入尚不存在时安排延迟的 oneside 检查
+    private void onSlaveVerdict(CompareResult verdict, MigrationMeters meters, String cacheName, String masterInputKey, String argsDigest) {
+        if (verdict.getVerdict() == CompareVerdict.PEER_MATCH) {
+            // 如果 master 输入一致，调用匹配成功预警
+            log.info("Match detected for master input key: {}", masterInputKey);
+            meters.match(); // 调用匹配预警
+        } else if (verdict.getVerdict() == CompareVerdict.PEER_MISMATCH) {
+            // 如果 master 输入不一致，调用不匹配预警
+            log.warn("Mismatch detected for master input key: {}. Existing value: {}, New value: {}", masterInputKey, verdict.getExisting(), argsDigest);
+            meters.mismatch(); // 调用不匹配预警
+        } else {
+            // master 参数在 Redis 中不存在，不再阻塞等待，由时间轮在等待时间后批量检查，仍不存在时触发 oneside 异常预警
+            onesideCheckWheel.schedule(cacheName, masterInputKey, properties.getWaitTime(), meters::oneside);
         }
-        return null; // 不继续执行业务逻辑
     }
 
     // 生成Redis键的方法，使用uuid、类型、类名和方法名或tag、简单摘要作为区分
@@ -159,42 +264,34 @@ public class ExecuteSaveAspect {
         return uuid + ":" + type + ":" + keyPart + ":" + simpleArgsDigest;
     }
 
-    // 生成详细参数摘要的方法，可以使用自定义摘要算法或简单的字符串拼接
+    // 一次遍历参数，同时生成详细参数摘要和简单参数摘要
+    public ArgsDigest generateDigest(Object[] args) {
+        DigestEncoding encoding = properties.isCompactKeys() ? DigestEncoding.BASE64URL : DigestEncoding.HEX;
+        return ArgsDigester.digest(args, properties.getDigestAlgorithm(), encoding);
+    }
+
+    // 生成详细参数摘要的方法
     public String generateArgsDigest(Object[] args) {
-        // 可以根据实际需求生成详细摘要，例如用某种哈希算法或简单的字符串拼接
-        return String.join(":", Arrays.stream(args)
-                .map(Object::toString)
-                .toArray(String[]::new));
+        return ArgsDigester.detailed(args);
     }
 
-    // 生成简单参数摘要的方法，可以使用自定义的快速摘要算法
+    // 生成简单参数摘要的方法
     public String generateSimpleArgsDigest(Object[] args) {
-        // 将所有参数拼接成一个字符串并生成MD5摘要
-        String input = String.join(",", Arrays.stream(args)
-                .map(Object::toString)
-                .toArray(String[]::new));
-        return HashUtils.generateSimpleHash(input);
+        return generateDigest(args).getSimple();
     }
 
-    // 获取当前方法的信息（类名和方法名）
-    private String getCurrentMethodInfo(ProceedingJoinPoint joinPoint) {
-        String className = joinPoint.getSignature().getDeclaringType().getSimpleName();
-        String methodName = joinPoint.getSignature().getName();
-        return className + ":" + methodName;
+    // 执行原方法并记录耗时
+    private Object proceed(ProceedingJoinPoint joinPoint, MigrationMeters meters) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            meters.recordProceed(System.nanoTime() - start);
+        }
     }
 
-    // 获取上一层调用者的方法信息（类名和方法名）
+    // 获取上一层调用者的方法信息（类名和方法名），跳过代理与切面栈帧
     private Optional<String> getCallerMethodInfo() {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        // 查找调用链中的上一层方法（去掉前几层与切面相关的方法调用）
-        for (int i = 1; i < stackTrace.length; i++) {
-            StackTraceElement element = stackTrace[i];
-            if (!element.getClassName().equals(this.getClass().getName()) &&
-                    !element.getClassName().contains("CGLIB") &&
-                    !element.getMethodName().equals("around")) {
-                return Optional.of(element.getClassName() + ":" + element.getMethodName());
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(CallerResolver.resolve());
     }
 }
@@ -4,12 +4,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.reflect.MethodSignature;
-import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
 import java.util.Arrays;
 
 @Aspect
@@ -22,26 +19,14 @@ public class ExecutionVerifyAspect {
 
     @Around("@annotation(executionVerify)")
     public Object around(ProceedingJoinPoint joinPoint, ExecutionVerify executionVerify) throws Throwable {
-        // 获取方法名和类名
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
-        String className = joinPoint.getTarget().getClass().getSimpleName();
-        String methodName = method.getName();
-
-        // 从 MDC 中获取 uuid 和 count
-        String uuid = MDC.get("uuid");
-        String countStr = MDC.get("count");
-
-        if (uuid == null || countStr == null) {
-            log.error("MDC does not contain uuid or count. Unable to proceed.");
-            throw new IllegalStateException("MDC does not contain uuid or count");
+        // 从请求上下文中获取 uuid，并递增本请求内的调用序号
+        MigrationContext context = MigrationContext.current();
+        if (context == null) {
+            log.error("Migration context is not open. Unable to proceed.");
+            throw new IllegalStateException("Migration context is not open");
         }
-
-        int count = Integer.parseInt(countStr);
-
-        // 更新 count 值
-        count++;
-        MDC.put("count", String.valueOf(count));
+        String uuid = context.getUuid();
+        String count = context.nextSequence();
 
         // 生成 Redis 键，格式为 uuid + count
         String redisKey = uuid + "_" + count;
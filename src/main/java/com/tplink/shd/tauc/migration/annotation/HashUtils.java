@@ -1,24 +1,12 @@
 package com.tplink.shd.tauc.migration.annotation;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import com.tplink.shd.tauc.migration.digest.ArgsDigester;
+import com.tplink.shd.tauc.migration.digest.DigestAlgorithm;
 
 public class HashUtils {
 
-    // 使用MD5生成简化摘要（可根据实际需求选择不同的摘要算法）
+    // 使用MD5生成简化摘要，复用线程内的 MessageDigest 与缓冲区，结果与旧实现一致
     public static String generateSimpleHash(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Hashing algorithm not found", e);
-        }
+        return ArgsDigester.hash(input, DigestAlgorithm.MD5);
     }
 }
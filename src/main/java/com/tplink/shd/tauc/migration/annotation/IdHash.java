@@ -0,0 +1,10 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+/**
+ * InsertUniqueId 生成 id 的方式
+ */
+public enum IdHash {
+    NONE,        // 各路径的值以 "-" 连接，可读但较长，值中包含 "-" 时可能冲突
+    MURMUR3_128, // 128 位非加密哈希，32 个十六进制字符
+    SHA_256      // 加密哈希，64 个十六进制字符
+}
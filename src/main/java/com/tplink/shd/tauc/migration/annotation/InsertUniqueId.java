@@ -15,7 +15,19 @@ import java.lang.annotation.Target;
 @Target({ElementType.METHOD})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface InsertUniqueId {
-    // todo 在可能的性能问题情况下选择不同入参作为比较
+    /**
+     * 参与生成 id 的参数路径，如 "0"、"request.deviceId"、"1.owner.id"。
+     * 第一段为参数下标或参数名（需以 -parameters 编译），其后按声明类型依次取属性（getter、record 访问器或字段）；
+     * 为空时使用前两个参数，与旧版行为一致
+     */
+    String[] value() default {};
+
+    // 各路径取值的组合方式
+    IdHash hash() default IdHash.NONE;
+
+    // 未使用，保留以兼容已有注解
     String[] paramNames() default {};
+
+    // 未使用，保留以兼容已有注解
     String[] fieldNames() default {};
 }
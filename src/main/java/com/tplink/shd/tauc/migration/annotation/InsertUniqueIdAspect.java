@@ -1,20 +1,15 @@
-
 package com.tplink.shd.tauc.migration.annotation;
 
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.slf4j.MDC;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Description of this file
@@ -30,62 +25,50 @@ public class InsertUniqueIdAspect {
     @Autowired
     ExecuteMigration aopMigrationProps;
 
-    @Around("@annotation(InsertUniqueId)")
-    public Object insertUniqueId(ProceedingJoinPoint joinPoint) throws Throwable {
-        log.info("InsertUniqueId");
-        try {
-            Object[] args = joinPoint.getArgs();
-
-            // 使用指定的入参部分生成唯一id，例如使用第一个和第二个参数的组合
-            String param1 = args.length > 0 ? args[0].toString() : "";
-            String param2 = args.length > 1 ? args[1].toString() : "";
-//            String uniqueId = generateUniqueId(param1 + param2).substring(0, 32);
-            String uniqueId = param1+"-"+param2;
-            log.info(uniqueId);
-
-            // 将唯一id直接写入到MDC
-            MDC.put(aopMigrationProps.getUuid(), uniqueId);
-            log.info("[InsertUniqueIdAspect] Generated unique id: {}", uniqueId);
+    @Autowired
+    ComparisonLedgerService ledgerService;
 
-            // 执行原方法
-            return joinPoint.proceed();
+    // 每个方法的 id 生成计划，首次调用时编译
+    private final ConcurrentHashMap<Method, UniqueIdPlan> plans = new ConcurrentHashMap<>();
 
+    @Around("@annotation(insertUniqueId)")
+    public Object insertUniqueId(ProceedingJoinPoint joinPoint, InsertUniqueId insertUniqueId) throws Throwable {
+        String uniqueId;
+        try {
+            // 按注解中的参数路径生成唯一id，未配置时使用第一个和第二个参数的组合
+            uniqueId = plan(joinPoint, insertUniqueId).generate(joinPoint.getArgs());
         } catch (Exception e) {
             log.error("Error occurred in InsertUniqueIdAspect: ", e);
-            return joinPoint.proceed();
-        } finally {
-            // 清除MDC中的数据
-            MDC.remove(aopMigrationProps.getUuid());
+            return joinPoint.proceed(); // 无法生成id时不打开上下文，直接执行原方法
+        }
+        log.debug("[InsertUniqueIdAspect] Generated unique id: {}", uniqueId);
+
+        // 打开请求上下文，唯一id同步写入MDC供日志使用；关闭时恢复MDC中的数据
+        try (MigrationContext.Scope scope = MigrationContext.open(uniqueId, aopMigrationProps.getUuid())) {
+            try {
+                return joinPoint.proceed();
+            } finally {
+                ledgerService.flush(scope.getContext()); // 账本模式下写出本请求的账本，未开启时直接返回
+            }
         }
     }
 
-    /**
-     * 使用入参的第一个Object生成uuid
-     */
-    private int generateUUID(Object obj) throws IOException {
-        try(ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(baos)){
-            oos.writeObject(obj);
-            oos.flush();
-            byte[] bytes = baos.toByteArray();
-            return Arrays.hashCode(bytes);
+    private UniqueIdPlan plan(ProceedingJoinPoint joinPoint, InsertUniqueId annotation) {
+        Method method = ((MethodSignature) joinPoint.getStaticPart().getSignature()).getMethod();
+        UniqueIdPlan plan = plans.get(method);
+        if (plan == null) {
+            plan = plans.computeIfAbsent(method, m -> compile(m, annotation));
         }
+        return plan;
     }
 
-    /**
-     * 根据String生成md5摘要
-     * 后续可实现根据部分入参定制生成id的方式。
-     */
-    private String generateUniqueId(String input) throws NoSuchAlgorithmException {
-        MessageDigest md5 = MessageDigest.getInstance("MD5");
-        md5.update(input.getBytes());
-        byte[] digest = md5.digest();
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : digest) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append("0");
-            hexString.append(hex);
+    // 配置的路径无效时只记录一次错误，之后按旧版方式使用前两个参数
+    private static UniqueIdPlan compile(Method method, InsertUniqueId annotation) {
+        try {
+            return UniqueIdPlan.compile(method, annotation);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid @InsertUniqueId on {}, falling back to the first two arguments", method, e);
+            return UniqueIdPlan.defaultPlan(method);
         }
-        return hexString.toString();
     }
 }
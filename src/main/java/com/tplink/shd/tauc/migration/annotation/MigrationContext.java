@@ -0,0 +1,171 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 单个请求的迁移上下文，由 InsertUniqueIdAspect 在请求入口打开、在返回时关闭。
+ * 各切面直接读取其中的 uuid、序号与缓存的请求级状态；MDC 只同步 uuid 供日志使用，不再作为数据来源。
+ * 通过 MigrationContextExecutors 提交到其他线程的任务使用 fork 出的分支上下文：请求级状态共享，
+ * 序号按分支独立编号，分支编号在提交线程上按提交顺序分配，并行执行时 master 与 slave 的编号仍然一致。
+ */
+public final class MigrationContext {
+
+    private static final ThreadLocal<MigrationContext> CURRENT = new ThreadLocal<>();
+
+    private final String uuid;
+    private final String mdcKey; // 为 null 时不同步 MDC
+    private final double samplingPoint; // uuid 对应的抽样位置
+    private final MigrationContext root; // 请求级状态保存在根上下文，根上下文指向自身
+    private final String sequencePrefix; // 分支序号前缀，如 2. 表示父上下文的第 2 个分支，根上下文为空串
+    private final AtomicInteger sequence = new AtomicInteger(); // 本分支内 ExecutionVerify 的调用序号
+    private final AtomicInteger branches = new AtomicInteger(); // 已 fork 的分支数
+    private volatile Map<Object, Object> attributes; // 其他请求级状态，按需创建，只在根上下文上使用
+
+    private MigrationContext(String uuid, String mdcKey) {
+        this.uuid = uuid;
+        this.mdcKey = mdcKey;
+        this.samplingPoint = MigrationSampler.samplingPoint(uuid);
+        this.root = this;
+        this.sequencePrefix = "";
+    }
+
+    private MigrationContext(MigrationContext parent, String sequencePrefix) {
+        this.uuid = parent.uuid;
+        this.mdcKey = parent.mdcKey;
+        this.samplingPoint = parent.samplingPoint;
+        this.root = parent.root;
+        this.sequencePrefix = sequencePrefix;
+    }
+
+    /**
+     * 创建上下文并附加到当前线程，需在 finally 中关闭返回的 Scope
+     *
+     * @param mdcKey 同步 uuid 的 MDC 键，为 null 时不写 MDC
+     */
+    public static Scope open(String uuid, String mdcKey) {
+        return attach(new MigrationContext(uuid, mdcKey));
+    }
+
+    /**
+     * 把已有的上下文附加到当前线程，关闭 Scope 时恢复当前线程原有的上下文与 MDC
+     */
+    public static Scope attach(MigrationContext context) {
+        MigrationContext previous = CURRENT.get();
+        String previousMdcValue = null;
+        if (context.mdcKey != null) {
+            previousMdcValue = MDC.get(context.mdcKey);
+            MDC.put(context.mdcKey, context.uuid);
+        }
+        CURRENT.set(context);
+        return new Scope(context, previous, previousMdcValue);
+    }
+
+    // 当前线程的上下文，未打开时为 null
+    public static MigrationContext current() {
+        return CURRENT.get();
+    }
+
+    // 当前请求的 uuid，未打开上下文时为 null
+    public static String currentUuid() {
+        MigrationContext context = CURRENT.get();
+        return context == null ? null : context.uuid;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * 递增并返回本分支内的序号，从 1 开始；分支上下文的序号带有分支前缀，如 2.1 表示第 2 个分支内的第 1 次调用
+     */
+    public String nextSequence() {
+        int next = sequence.incrementAndGet();
+        return sequencePrefix.isEmpty() ? Integer.toString(next) : sequencePrefix + next;
+    }
+
+    /**
+     * 创建交给另一个线程执行的分支上下文，需在提交任务的线程上调用，使分支编号与提交顺序一致
+     */
+    public MigrationContext fork() {
+        return new MigrationContext(this, sequencePrefix + branches.incrementAndGet() + ".");
+    }
+
+    // uuid 在 [0, 1) 上的稳定抽样位置
+    public double samplingPoint() {
+        return samplingPoint;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(Object key) {
+        Map<Object, Object> map = root.attributes;
+        return map == null ? null : (T) map.get(key);
+    }
+
+    public void setAttribute(Object key, Object value) {
+        attributes().put(key, value);
+    }
+
+    // 读取请求级状态，不存在时创建
+    @SuppressWarnings("unchecked")
+    public <T> T computeAttributeIfAbsent(Object key, Function<Object, T> factory) {
+        return (T) attributes().computeIfAbsent(key, factory);
+    }
+
+    private Map<Object, Object> attributes() {
+        if (root != this) {
+            return root.attributes();
+        }
+        Map<Object, Object> map = attributes;
+        if (map == null) {
+            synchronized (this) {
+                map = attributes;
+                if (map == null) {
+                    map = new ConcurrentHashMap<>(4);
+                    attributes = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 上下文在某个线程上的一次附加
+     */
+    public static final class Scope implements AutoCloseable {
+        private final MigrationContext context;
+        private final MigrationContext previous;
+        private final String previousMdcValue;
+
+        private Scope(MigrationContext context, MigrationContext previous, String previousMdcValue) {
+            this.context = context;
+            this.previous = previous;
+            this.previousMdcValue = previousMdcValue;
+        }
+
+        public MigrationContext getContext() {
+            return context;
+        }
+
+        // 恢复附加前当前线程的上下文与 MDC
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            if (context.mdcKey != null) {
+                if (previousMdcValue == null) {
+                    MDC.remove(context.mdcKey);
+                } else {
+                    MDC.put(context.mdcKey, previousMdcValue);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.CompositeTaskDecorator;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 让 execute-migration.context-propagation.executor-bean-names 中的线程池传递 MigrationContext。
+ * ThreadPoolTaskExecutor 在初始化前追加 TaskDecorator，与应用已设置的 TaskDecorator（如 MDC、安全上下文）组合；TaskScheduler 不做处理；
+ * 其他 ExecutorService / Executor 被包装，ScheduledExecutorService 包装后仍可按调度接口注入，按具体实现类注入这些 bean 的地方需改为按接口注入。
+ */
+@Configuration
+public class MigrationContextConfiguration {
+
+    @Bean
+    public static BeanPostProcessor migrationContextExecutorPostProcessor(ObjectProvider<ExecuteMigration> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (!isPropagating(beanName)) {
+                    return bean;
+                }
+                if (bean instanceof ThreadPoolTaskExecutor) {
+                    ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) bean;
+                    // ThreadPoolTaskExecutor 没有公开已设置的 TaskDecorator，通过字段读取
+                    TaskDecorator existing = (TaskDecorator) new DirectFieldAccessor(executor).getPropertyValue("taskDecorator");
+                    if (existing == null) {
+                        executor.setTaskDecorator(new MigrationContextTaskDecorator());
+                    } else if (!(existing instanceof MigrationContextTaskDecorator)) {
+                        // 迁移上下文在最外层附加，应用的装饰器执行时已能读取到上下文
+                        executor.setTaskDecorator(new CompositeTaskDecorator(List.of(existing, new MigrationContextTaskDecorator())));
+                    }
+                }
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!isPropagating(beanName)
+                        || bean instanceof ThreadPoolTaskExecutor || bean instanceof TaskScheduler) {
+                    return bean;
+                }
+                if (bean instanceof ScheduledExecutorService) {
+                    return MigrationContextExecutors.wrap((ScheduledExecutorService) bean);
+                }
+                if (bean instanceof ExecutorService) {
+                    return MigrationContextExecutors.wrap((ExecutorService) bean);
+                }
+                if (bean instanceof Executor) {
+                    return MigrationContextExecutors.wrap((Executor) bean);
+                }
+                return bean;
+            }
+
+            private boolean isPropagating(String beanName) {
+                return properties.getObject().getContextPropagation().getExecutorBeanNames().contains(beanName);
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * 把 MigrationContext 传递到其他线程的工具方法。
+ * 任务在提交时从当前线程的上下文 fork 出分支上下文，执行时附加到执行线程，结束后恢复执行线程原有的上下文；
+ * 提交时没有上下文的任务原样执行，不产生额外开销。
+ */
+@Slf4j
+public final class MigrationContextExecutors {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadFactoryMethod();
+
+    private MigrationContextExecutors() {
+    }
+
+    public static Runnable wrap(Runnable task) {
+        MigrationContext context = MigrationContext.current();
+        if (context == null || task instanceof ContextRunnable) {
+            return task;
+        }
+        return new ContextRunnable(context.fork(), task);
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        MigrationContext current = MigrationContext.current();
+        if (current == null) {
+            return task;
+        }
+        MigrationContext context = current.fork();
+        return () -> {
+            try (MigrationContext.Scope ignored = MigrationContext.attach(context)) {
+                return task.call();
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> supplier) {
+        MigrationContext current = MigrationContext.current();
+        if (current == null) {
+            return supplier;
+        }
+        MigrationContext context = current.fork();
+        return () -> {
+            try (MigrationContext.Scope ignored = MigrationContext.attach(context)) {
+                return supplier.get();
+            }
+        };
+    }
+
+    // 包装 Executor，每次提交时捕获上下文
+    public static Executor wrap(Executor executor) {
+        if (executor instanceof ContextExecutorService || executor instanceof ContextExecutor) {
+            return executor;
+        }
+        if (executor instanceof ExecutorService) {
+            return wrap((ExecutorService) executor);
+        }
+        return new ContextExecutor(executor);
+    }
+
+    // ScheduledExecutorService 包装后仍实现调度接口
+    public static ExecutorService wrap(ExecutorService executorService) {
+        if (executorService instanceof ContextExecutorService) {
+            return executorService;
+        }
+        if (executorService instanceof ScheduledExecutorService) {
+            return new ContextScheduledExecutorService((ScheduledExecutorService) executorService);
+        }
+        return new ContextExecutorService(executorService);
+    }
+
+    public static ScheduledExecutorService wrap(ScheduledExecutorService executorService) {
+        if (executorService instanceof ContextScheduledExecutorService) {
+            return executorService;
+        }
+        return new ContextScheduledExecutorService(executorService);
+    }
+
+    // 与 CompletableFuture.supplyAsync 相同，异步任务中可读取当前请求的上下文
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(wrap(supplier));
+    }
+
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(wrap(supplier), executor);
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable task) {
+        return CompletableFuture.runAsync(wrap(task));
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(wrap(task), executor);
+    }
+
+    /**
+     * 每个任务一个虚拟线程的 ExecutorService，并传递上下文。
+     * 运行在 Java 21 以下时退回到可缓存的平台线程池
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return new ContextExecutorService((ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null));
+            } catch (ReflectiveOperationException e) {
+                log.warn("Failed to create virtual thread executor, falling back to platform threads", e);
+            }
+        }
+        return new ContextExecutorService(Executors.newCachedThreadPool());
+    }
+
+    // 虚拟线程需要 Java 21，编译目标为 17，因此通过反射获取
+    private static Method virtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    static final class ContextRunnable implements Runnable {
+        private final MigrationContext context;
+        private final Runnable task;
+
+        ContextRunnable(MigrationContext context, Runnable task) {
+            this.context = context;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try (MigrationContext.Scope ignored = MigrationContext.attach(context)) {
+                task.run();
+            }
+        }
+    }
+
+    private static final class ContextExecutor implements Executor {
+        private final Executor delegate;
+
+        private ContextExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(wrap(command));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 供 ThreadPoolTaskExecutor 等 Spring 线程池使用，提交任务时捕获 MigrationContext
+ */
+public class MigrationContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return MigrationContextExecutors.wrap(runnable);
+    }
+}
@@ -1,19 +1,24 @@
 package com.tplink.shd.tauc.migration.aspect;
 
 import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
-import com.tplink.shd.tauc.migration.annotation.ExecuteKafka;
 import com.tplink.shd.tauc.migration.annotation.ExecuteSaveAspect;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodRegistry;
+import com.tplink.shd.tauc.migration.annotation.MigrationSampler;
+import com.tplink.shd.tauc.migration.digest.ArgsDigest;
+import com.tplink.shd.tauc.migration.kafka.KafkaShadowBatcher;
+import com.tplink.shd.tauc.migration.kafka.KafkaTopicSettings;
+import com.tplink.shd.tauc.migration.store.MigrationCircuitBreaker;
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
+import com.tplink.shd.tauc.share.prometheus.PrometheusMetricMigrationSaveHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.slf4j.MDC;
 
-import java.util.List;
-
 @Aspect
 @Component
 @Slf4j
@@ -25,11 +30,23 @@ public class MigrationKafkaAspect {
     @Autowired
     private ExecuteSaveAspect executeSaveAspect; // 注入复用的切面逻辑
 
+    @Autowired
+    private MigrationMethodRegistry methodRegistry; // 方法描述注册表
+
+    @Autowired
+    private PrometheusMetricMigrationSaveHandler prometheusHandler; // 注入Prometheus预警处理器
+
+    @Autowired
+    private MigrationSampler sampler; // 按参数摘要抽样
+
+    @Autowired
+    private KafkaShadowBatcher batcher; // 开启 batch 的 topic 批量比对
+
+    @Autowired
+    private MigrationCircuitBreaker circuitBreaker; // 迁移缓存熔断器
+
     @Around("@annotation(com.tplink.shd.tauc.migration.annotation.ExecuteKafka)")
     public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
-        MethodSignature methodSignature = (MethodSignature) joinPoint.getSignature();
-        ExecuteKafka annotation = methodSignature.getMethod().getAnnotation(ExecuteKafka.class);
-
         // 获取方法参数
         Object[] args = joinPoint.getArgs();
         if (args.length < 1 || !(args[0] instanceof String)) {
@@ -39,48 +56,64 @@ public class MigrationKafkaAspect {
 
         String methodTopic = (String) args[0]; // 从方法参数中获取topic
 
-        // 获取配置文件中的Kafka topic列表
-        List<String> topicList = executeMigration.getKafkaTopicList();
+        // 使用预先编译的topic匹配器，配置变更时整体替换
+        KafkaTopicSettings topic = executeMigration.kafkaTopicMatcher().match(methodTopic);
 
-        // 判断方法参数中的topic是否在配置的topic列表中
-        if (topicList.contains(methodTopic)) {
+        // 判断方法参数中的topic是否在配置的topic列表中，以及当前角色是否需要比对
+        if (topic != null && topic.isEnabledFor(executeMigration.getKafkaRole())) {
             log.info("Intercepted method with matching topic: {}. Proceeding with additional processing.", methodTopic);
 
             // 执行匹配的额外处理逻辑
-            return processMatchingTopic(joinPoint, methodTopic, args);
+            return processMatchingTopic(joinPoint, methodTopic, topic, args);
         } else {
-            log.info("Topic {} not in the configured list: {}. Skipping additional processing.", methodTopic, topicList);
+            log.debug("Topic {} not in the configured list: {}. Skipping additional processing.", methodTopic, executeMigration.getKafkaTopics());
             return joinPoint.proceed(); // 继续执行业务逻辑
         }
     }
 
-    private Object processMatchingTopic(ProceedingJoinPoint joinPoint, String methodTopic, Object[] args) throws Throwable {
+    private Object processMatchingTopic(ProceedingJoinPoint joinPoint, String methodTopic, KafkaTopicSettings topic, Object[] args) throws Throwable {
         String uuid = "kafka";
 
         // 生成详细参数摘要和简单参数摘要
-        String argsDigest = executeSaveAspect.generateArgsDigest(args);
-        String simpleArgsDigest = executeSaveAspect.generateSimpleArgsDigest(args);
+        ArgsDigest digest = executeSaveAspect.generateDigest(args);
+        String argsDigest = digest.getDetailed();
+        String simpleArgsDigest = digest.getSimple();
+
+        // Kafka 消息没有请求uuid，按参数摘要抽样，master与slave对同一条消息的选择一致
+        if (!sampler.isSampled(simpleArgsDigest, topic.samplingRate(executeMigration.getSampling().getRate()))) {
+            return joinPoint.proceed();
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return joinPoint.proceed(); // 迁移缓存熔断期间直接执行业务逻辑
+        }
 
-        // 生成keyPart，包含类名和方法名
-        MethodSignature methodSignature = (MethodSignature) joinPoint.getSignature();
-        String keyPart = methodSignature.getDeclaringType().getSimpleName() + ":" + methodSignature.getName();
+        // keyPart 为类名和方法名，模板已在方法描述中预先生成
+        MigrationMethodDescriptor descriptor = methodRegistry.get(joinPoint.getStaticPart());
+        MigrationMethodDescriptor.KeyTemplates templates = descriptor.getMethodTemplates();
+        MigrationMeters meters = prometheusHandler.kafkaMeters(descriptor);
 
-        // 生成Redis键，分别使用master和slave的标识，并带上类名和方法名或tag
-        String masterInputKey = executeSaveAspect.generateKey(uuid, "master", keyPart, simpleArgsDigest);
-        String slaveInputKey = executeSaveAspect.generateKey(uuid, "slave", keyPart, simpleArgsDigest);
+        // 生成Redis键，分别使用master和slave的标识，并带上类名和方法名
+        boolean compact = executeMigration.isCompactKeys();
+        String masterInputKey = compact ? templates.compactMasterKey(simpleArgsDigest) : templates.masterKey(uuid, simpleArgsDigest);
+        String slaveInputKey = compact ? templates.compactSlaveKey(simpleArgsDigest) : templates.slaveKey(uuid, simpleArgsDigest);
 
         log.debug("Generated masterInputKey: {}", masterInputKey);
 
         // 使用配置中的缓存名称
         String cacheName = executeMigration.getCacheName();
 
-        // 根据角色区分逻辑处理
-        if ("master".equalsIgnoreCase(executeMigration.getKafkaRole())) {
-            return executeSaveAspect.handleMasterRole(joinPoint, cacheName, masterInputKey, slaveInputKey, argsDigest);
-        } else if ("slave".equalsIgnoreCase(executeMigration.getKafkaRole())) {
-            return executeSaveAspect.handleSlaveRole(cacheName, masterInputKey, slaveInputKey, argsDigest);
+        if (topic.isBatch()) {
+            // 批量比对：摘要入队后立即返回，消费线程不等待 Redis 往返
+            String role = executeMigration.getKafkaRole();
+            boolean master = "master".equalsIgnoreCase(role);
+            if (!master && !"slave".equalsIgnoreCase(role)) {
+                return joinPoint.proceed();
+            }
+            batcher.enqueue(methodTopic, master, meters, cacheName, masterInputKey, slaveInputKey, argsDigest);
+            return executeSaveAspect.proceedDetached(joinPoint, descriptor, meters, master);
         }
 
-        return joinPoint.proceed(); // 默认情况下，继续执行业务逻辑
+        // 根据角色与返回类型区分逻辑处理
+        return executeSaveAspect.handle(joinPoint, descriptor, meters, cacheName, masterInputKey, slaveInputKey, argsDigest);
     }
 }
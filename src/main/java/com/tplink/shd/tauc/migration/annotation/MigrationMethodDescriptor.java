@@ -0,0 +1,147 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.migration.digest.Murmur3;
+import lombok.Getter;
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.ReactiveAdapterRegistry;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 被迁移切面拦截的方法的不可变描述，每个方法只构建一次。
+ * 保存注解属性、类名:方法名以及预先拼好的 master/slave key 模板，热路径上不再做反射与字符串拼接。
+ */
+@Getter
+public final class MigrationMethodDescriptor {
+
+    private final Method method;
+    private final String methodKey; // 类名:方法名
+    private final String tag; // ExecuteSave.tag，未标注或未填写时为空串
+    private final KeyTemplates methodTemplates; // 以 类名:方法名 作为keyPart 的模板
+    private final KeyTemplates tagTemplates; // 以 tag 作为keyPart 的模板，tag 为空时为 null
+    private final ReactiveAdapter reactiveAdapter; // 返回 Mono/Flux/CompletableFuture 等异步类型时的适配器，同步方法为 null
+
+    // tag 为空时按调用者缓存的模板，调用者key来自 CallerResolver 的缓存
+    @Getter(lombok.AccessLevel.NONE)
+    private final ConcurrentHashMap<String, KeyTemplates> callerTemplates = new ConcurrentHashMap<>();
+
+    private MigrationMethodDescriptor(Method method) {
+        this.method = method;
+        this.methodKey = (method.getDeclaringClass().getSimpleName() + ":" + method.getName()).intern();
+        ExecuteSave executeSave = method.getAnnotation(ExecuteSave.class);
+        this.tag = executeSave == null ? "" : executeSave.tag();
+        this.methodTemplates = new KeyTemplates(methodKey);
+        this.tagTemplates = tag.isEmpty() ? null : new KeyTemplates(tag);
+        this.reactiveAdapter = ReactiveAdapterRegistry.getSharedInstance().getAdapter(method.getReturnType());
+    }
+
+    public static MigrationMethodDescriptor of(Method method) {
+        return new MigrationMethodDescriptor(method);
+    }
+
+    // tag 为空时 ExecuteSave 的 key 需要包含调用者信息
+    public boolean isCallerScoped() {
+        return tagTemplates == null;
+    }
+
+    // 返回值为异步类型时，比对与记录需组合进返回的异步链路中
+    public boolean isReactive() {
+        return reactiveAdapter != null;
+    }
+
+    // 当前方法信息和调用者方法信息共同作为keyPart 的模板
+    public KeyTemplates callerTemplates(String callerMethodInfo) {
+        KeyTemplates templates = callerTemplates.get(callerMethodInfo);
+        if (templates == null) {
+            templates = callerTemplates.computeIfAbsent(callerMethodInfo, caller -> new KeyTemplates(methodKey + ":" + caller));
+        }
+        return templates;
+    }
+
+    /**
+     * 紧凑 key 花括号内的哈希标签。uuid 中的 } 会提前结束标签，与 % 一起按百分号编码，编码结果与原值一一对应
+     */
+    public static String hashTag(String uuid) {
+        if (uuid.indexOf('}') < 0 && uuid.indexOf('%') < 0) {
+            return uuid;
+        }
+        StringBuilder sb = new StringBuilder(uuid.length() + 8);
+        for (int i = 0; i < uuid.length(); i++) {
+            char c = uuid.charAt(i);
+            if (c == '}') {
+                sb.append("%7D");
+            } else if (c == '%') {
+                sb.append("%25");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 预先拼好的 :角色:keyPart: 片段，生成的 key 与 ExecuteSaveAspect.generateKey 一致。
+     * 紧凑格式为 {uuid}角色方法id:摘要，方法id由 keyPart 的哈希得到，不同进程中保持一致；
+     * 花括号内为 Redis Cluster 的哈希标签，同一请求的记录位于同一个 slot，单个请求的多 key 脚本可在集群上执行；
+     * 不同请求的记录位于不同 slot，跨请求的批量读取由 MigrationRecordStore 在集群模式下按 slot 分组
+     */
+    public static final class KeyTemplates {
+        private final String ledgerPrefix;
+        private final String masterInfix;
+        private final String slaveInfix;
+        private final String methodId;
+        private final String compactMasterInfix;
+        private final String compactSlaveInfix;
+
+        KeyTemplates(String keyPart) {
+            this.masterInfix = (":master:" + keyPart + ":").intern();
+            this.slaveInfix = (":slave:" + keyPart + ":").intern();
+            this.methodId = methodId(keyPart);
+            this.compactMasterInfix = ("}m" + methodId).intern();
+            this.compactSlaveInfix = ("}s" + methodId).intern();
+            this.ledgerPrefix = (keyPart + ":").intern();
+        }
+
+        // 请求账本中的 field，master 与 slave 使用同一 field
+        public String ledgerField(String simpleArgsDigest, boolean compact) {
+            return (compact ? methodId + ":" : ledgerPrefix) + simpleArgsDigest;
+        }
+
+        public String masterKey(String uuid, String simpleArgsDigest) {
+            return uuid + masterInfix + simpleArgsDigest;
+        }
+
+        public String slaveKey(String uuid, String simpleArgsDigest) {
+            return uuid + slaveInfix + simpleArgsDigest;
+        }
+
+        public String compactMasterKey(String uuid, String simpleArgsDigest) {
+            return "{" + hashTag(uuid) + compactMasterInfix + ":" + simpleArgsDigest;
+        }
+
+        public String compactSlaveKey(String uuid, String simpleArgsDigest) {
+            return "{" + hashTag(uuid) + compactSlaveInfix + ":" + simpleArgsDigest;
+        }
+
+        // 没有请求uuid的记录（如 Kafka 消息）以摘要本身作为哈希标签，避免集中到同一个 slot
+        public String compactMasterKey(String simpleArgsDigest) {
+            return "{" + simpleArgsDigest + compactMasterInfix;
+        }
+
+        public String compactSlaveKey(String simpleArgsDigest) {
+            return "{" + simpleArgsDigest + compactSlaveInfix;
+        }
+
+        public String getMethodId() {
+            return methodId;
+        }
+
+        // keyPart 哈希的高 36 位，以 36 进制表示，最多 7 个字符
+        private static String methodId(String keyPart) {
+            long[] hash = new long[2];
+            Murmur3.hash128(keyPart, 0, hash);
+            return Long.toString(hash[0] >>> 28, 36);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法描述的注册表，首次调用时构建，之后每次拦截只需一次查表。
+ * Spring AOP 每次调用都会创建新的 StaticPart，因此以其背后的 Method 作为缓存键。
+ */
+@Component
+public class MigrationMethodRegistry {
+
+    private final ConcurrentHashMap<Method, MigrationMethodDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    public MigrationMethodDescriptor get(JoinPoint.StaticPart staticPart) {
+        Method method = ((MethodSignature) staticPart.getSignature()).getMethod();
+        MigrationMethodDescriptor descriptor = descriptors.get(method);
+        if (descriptor == null) {
+            descriptor = descriptors.computeIfAbsent(method, MigrationMethodDescriptor::of);
+        }
+        return descriptor;
+    }
+}
@@ -0,0 +1,69 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.migration.digest.Murmur3;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 按请求 uuid 决定是否参与迁移比对。
+ * 抽样结果只由 uuid 的哈希与抽样比例决定，master 与 slave 对同一请求总是做出相同的选择；
+ * 同一请求内比例较低的方法被抽中时，比例较高的方法也一定被抽中。
+ */
+@Component
+public class MigrationSampler {
+
+    private static final double UNIT = 0x1.0p-53; // 将 53 位哈希映射到 [0, 1)
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    public boolean isSampled(String uuid, MigrationMethodDescriptor descriptor) {
+        return isSampled(uuid, rate(descriptor));
+    }
+
+    // 与 isSampled(uuid, descriptor) 结果一致，使用上下文中缓存的抽样位置
+    public boolean isSampled(MigrationContext context, MigrationMethodDescriptor descriptor) {
+        double rate = rate(descriptor);
+        if (rate >= 1.0) {
+            return true;
+        }
+        return rate > 0.0 && context.samplingPoint() < rate;
+    }
+
+    // 按任意稳定的字符串抽样，如 Kafka 消息的参数摘要
+    public boolean isSampled(String key, double rate) {
+        if (rate >= 1.0) {
+            return true;
+        }
+        if (rate <= 0.0) {
+            return false;
+        }
+        return samplingPoint(key) < rate;
+    }
+
+    /**
+     * 字符串在 [0, 1) 上的稳定抽样位置，MigrationContext 按 uuid 缓存该值
+     */
+    static double samplingPoint(String key) {
+        // String.hashCode 的算法是规范固定的，跨 JVM 结果一致，且会缓存在字符串内
+        return (Murmur3.fmix64(key.hashCode()) >>> 11) * UNIT;
+    }
+
+    // 依次查找 tag、类名:方法名 的覆盖配置，都没有时使用全局比例
+    private double rate(MigrationMethodDescriptor descriptor) {
+        ExecuteMigration.Sampling sampling = properties.getSampling();
+        Map<String, Double> tagRates = sampling.getTagRates();
+        if (!tagRates.isEmpty()) {
+            Double rate = descriptor.getTag().isEmpty() ? null : tagRates.get(descriptor.getTag());
+            if (rate == null) {
+                rate = tagRates.get(descriptor.getMethodKey());
+            }
+            if (rate != null) {
+                return rate;
+            }
+        }
+        return sampling.getRate();
+    }
+}
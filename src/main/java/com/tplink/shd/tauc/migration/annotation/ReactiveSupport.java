@@ -0,0 +1,74 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.slf4j.MDC;
+import org.springframework.core.ReactiveAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+/**
+ * 切面处理异步返回类型时共用的组合方法
+ */
+final class ReactiveSupport {
+
+    private ReactiveSupport() {
+    }
+
+    // 记录从订阅到结束的耗时
+    static <T> Mono<T> timed(Mono<T> source, LongConsumer recorder) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return source.doFinally(signal -> recorder.accept(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * 订阅时才执行原方法，并把返回的 Mono/Flux/CompletableFuture 统一转为 Flux。
+     * 订阅可能发生在 boundedElastic 等其他线程上，调用时的 MigrationContext 与 MDC 在执行原方法期间恢复，需在切面线程上调用
+     */
+    static Flux<Object> proceed(ProceedingJoinPoint joinPoint, ReactiveAdapter adapter, MigrationMeters meters) {
+        MigrationContext context = MigrationContext.current();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            Object result;
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            restoreMdc(mdc);
+            MigrationContext.Scope scope = context == null ? null : MigrationContext.attach(context);
+            try {
+                result = joinPoint.proceed();
+            } catch (Throwable e) {
+                return Flux.error(e);
+            } finally {
+                if (scope != null) {
+                    scope.close();
+                }
+                restoreMdc(previousMdc);
+            }
+            if (result == null) {
+                meters.recordProceed(System.nanoTime() - start);
+                return Flux.empty();
+            }
+            return Flux.from(adapter.toPublisher(result))
+                    .doFinally(signal -> meters.recordProceed(System.nanoTime() - start));
+        });
+    }
+
+    private static void restoreMdc(Map<String, String> mdc) {
+        if (mdc == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(mdc);
+        }
+    }
+
+    // 把可能为空的结果转为 Optional，便于在链路中区分 不存在 与 已处理
+    static <T> Mono<Optional<T>> optional(Mono<T> source) {
+        return source.map(Optional::of).defaultIfEmpty(Optional.empty());
+    }
+}
@@ -0,0 +1,51 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 收集多值异步结果用于记录，最多保留 maxElements 个元素。
+ * 超出的元素照常返回给调用方但不记录，记录的 List 末尾追加截断标记；master、slave 与离线重放使用相同的上限，截断后的记录仍可比对。
+ */
+public final class RecordedElements implements Consumer<Object> {
+
+    public static final String TRUNCATED = "<migration:truncated>"; // 截断标记，记录的 List 以它结尾时表示元素不完整
+
+    private final int maxElements;
+    private final List<Object> elements = new ArrayList<>();
+    private boolean truncated;
+
+    public RecordedElements(int maxElements) {
+        this.maxElements = Math.max(maxElements, 0);
+    }
+
+    @Override
+    public void accept(Object element) {
+        if (elements.size() < maxElements) {
+            elements.add(element);
+        } else {
+            truncated = true;
+        }
+    }
+
+    // 收集到的元素，被截断时末尾带有截断标记
+    public List<Object> toList() {
+        if (!truncated) {
+            return elements;
+        }
+        List<Object> result = new ArrayList<>(elements.size() + 1);
+        result.addAll(elements);
+        result.add(TRUNCATED);
+        return result;
+    }
+
+    // 记录的输出是否为被截断的多值结果
+    public static boolean isTruncated(Object output) {
+        if (!(output instanceof List)) {
+            return false;
+        }
+        List<?> list = (List<?>) output;
+        return !list.isEmpty() && TRUNCATED.equals(list.get(list.size() - 1));
+    }
+}
@@ -0,0 +1,190 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.migration.digest.Hex;
+import com.tplink.shd.tauc.migration.digest.Murmur3;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * 单个方法的 id 生成计划，每个方法只编译一次。
+ * 每条参数路径编译为 (Object[]) -> Object 的 MethodHandle 链，中间值为 null 时整条路径的结果为 null，不会抛出异常。
+ */
+final class UniqueIdPlan {
+
+    private static final String[] DEFAULT_PATHS = {"0", "1"};
+    private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle IS_NULL;
+    private static final MethodHandle NULL_OBJECT;
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    static {
+        try {
+            IS_NULL = LOOKUP.findStatic(Objects.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+            NULL_OBJECT = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MethodHandle[] accessors;
+    private final IdHash hash;
+
+    private UniqueIdPlan(MethodHandle[] accessors, IdHash hash) {
+        this.accessors = accessors;
+        this.hash = hash;
+    }
+
+    // 使用前两个参数、不做哈希的计划，注解配置无效时同样使用
+    static UniqueIdPlan defaultPlan(Method method) {
+        return compile(method, DEFAULT_PATHS, IdHash.NONE, true);
+    }
+
+    /**
+     * @throws IllegalArgumentException 路径中的参数或属性不存在，或参数下标超出参数个数
+     */
+    static UniqueIdPlan compile(Method method, InsertUniqueId annotation) {
+        if (annotation.value().length == 0) {
+            return compile(method, DEFAULT_PATHS, annotation.hash(), true);
+        }
+        return compile(method, annotation.value(), annotation.hash(), false);
+    }
+
+    /**
+     * @param lenient 为 true 时超出参数个数的下标取值为空，只用于默认路径
+     */
+    private static UniqueIdPlan compile(Method method, String[] paths, IdHash hash, boolean lenient) {
+        MethodHandle[] accessors = new MethodHandle[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            accessors[i] = compilePath(method, paths[i], lenient);
+        }
+        return new UniqueIdPlan(accessors, hash);
+    }
+
+    String generate(Object[] args) throws Throwable {
+        if (hash == IdHash.NONE) {
+            StringBuilder id = new StringBuilder();
+            for (int i = 0; i < accessors.length; i++) {
+                if (i > 0) {
+                    id.append('-');
+                }
+                Object value = (Object) accessors[i].invokeExact(args);
+                if (value != null) {
+                    id.append(value);
+                }
+            }
+            return id.toString();
+        }
+        // 哈希前每个值带上长度前缀，避免不同的值拼接后相同
+        StringBuilder input = new StringBuilder();
+        for (MethodHandle accessor : accessors) {
+            Object value = (Object) accessor.invokeExact(args);
+            if (value == null) {
+                input.append('-').append(':');
+            } else {
+                String text = value.toString();
+                input.append(text.length()).append(':').append(text);
+            }
+        }
+        if (hash == IdHash.MURMUR3_128) {
+            long[] out = new long[2];
+            Murmur3.hash128(input, 0, out);
+            char[] hex = new char[32];
+            Hex.encode(out[0], hex, 0);
+            Hex.encode(out[1], hex, 16);
+            return new String(hex);
+        }
+        MessageDigest digest = SHA_256.get();
+        return Hex.encode(digest.digest(input.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MethodHandle compilePath(Method method, String path, boolean lenient) {
+        String[] segments = path.trim().split("\\.");
+        int index = parameterIndex(method, segments[0]);
+        if (index >= method.getParameterCount()) {
+            if (!lenient) {
+                throw new IllegalArgumentException("Parameter index " + index + " in path '" + path + "' is out of range, "
+                        + method + " has " + method.getParameterCount() + " parameters");
+            }
+            // 参数个数不足时取值为空，与旧版使用前两个参数时的行为一致
+            return MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Object[].class);
+        }
+        MethodHandle handle = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, index);
+        Class<?> type = method.getParameterTypes()[index];
+        for (int i = 1; i < segments.length; i++) {
+            MethodHandle getter = propertyGetter(type, segments[i], path);
+            type = getter.type().returnType();
+            MethodHandle nullSafe = MethodHandles.guardWithTest(IS_NULL, NULL_OBJECT,
+                    getter.asType(MethodType.methodType(Object.class, Object.class)));
+            handle = MethodHandles.filterReturnValue(handle, nullSafe);
+        }
+        return handle;
+    }
+
+    private static int parameterIndex(Method method, String segment) {
+        if (!segment.isEmpty() && segment.chars().allMatch(Character::isDigit)) {
+            return Integer.parseInt(segment);
+        }
+        String[] names = PARAMETER_NAMES.getParameterNames(method);
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(segment)) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown parameter '" + segment + "' on " + method);
+    }
+
+    // 按声明类型查找属性，依次尝试 getter、record 访问器、字段
+    private static MethodHandle propertyGetter(Class<?> type, String name, String path) {
+        try {
+            PropertyDescriptor property = BeanUtils.getPropertyDescriptor(type, name);
+            if (property != null && property.getReadMethod() != null) {
+                Method read = property.getReadMethod();
+                read.trySetAccessible();
+                return LOOKUP.unreflect(read);
+            }
+            if (type.isRecord()) {
+                for (RecordComponent component : type.getRecordComponents()) {
+                    if (component.getName().equals(name)) {
+                        Method accessor = component.getAccessor();
+                        accessor.trySetAccessible();
+                        return LOOKUP.unreflect(accessor);
+                    }
+                }
+            }
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers())) {
+                        field.trySetAccessible();
+                        return LOOKUP.unreflectGetter(field);
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Property '" + name + "' of " + type.getName() + " is not accessible in path '" + path + "'", e);
+        }
+        throw new IllegalArgumentException("Unknown property '" + name + "' of " + type.getName() + " in path '" + path + "'");
+    }
+}
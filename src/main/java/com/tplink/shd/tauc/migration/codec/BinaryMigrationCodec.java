@@ -0,0 +1,407 @@
+package com.tplink.shd.tauc.migration.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的二进制编解码器。
+ * 常见类型（包括全部装箱基本类型、UUID、Date、Optional 与对象数组）使用单字节类型标记加变长整数编码；业务类型可按类型 id 注册专用序列化器，
+ * 未注册的类型退回到 类名 + JSON 的编码方式，解码时只加载 codecJsonPackages 中的类，数据来自Redis或记录日志，不可完全信任。
+ */
+@Component
+public class BinaryMigrationCodec implements MigrationCodec {
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int TRUE = 4;
+    private static final int FALSE = 5;
+    private static final int DOUBLE = 6;
+    private static final int BYTES = 7;
+    private static final int LIST = 8;
+    private static final int SET = 9;
+    private static final int MAP = 10;
+    private static final int REGISTERED = 11;
+    private static final int JSON = 12;
+    private static final int FLOAT = 13;
+    private static final int SHORT = 14;
+    private static final int BYTE = 15;
+    private static final int CHAR = 16;
+    private static final int UUID_VALUE = 17;
+    private static final int DATE = 18;
+    private static final int ARRAY = 19; // 对象数组：元素类型名 + 逐个元素
+    private static final int OPTIONAL = 20;
+    private static final int OPTIONAL_EMPTY = 21;
+
+    // 对象数组元素类型中总是允许的 JDK 类型，数组元素本身仍按各自的类型标记解码
+    private static final Map<String, Class<?>> ARRAY_COMPONENT_TYPES = Map.ofEntries(
+            Map.entry("java.lang.Object", Object.class), Map.entry("java.lang.String", String.class),
+            Map.entry("java.lang.Integer", Integer.class), Map.entry("java.lang.Long", Long.class),
+            Map.entry("java.lang.Short", Short.class), Map.entry("java.lang.Byte", Byte.class),
+            Map.entry("java.lang.Double", Double.class), Map.entry("java.lang.Float", Float.class),
+            Map.entry("java.lang.Boolean", Boolean.class), Map.entry("java.lang.Character", Character.class),
+            Map.entry("java.lang.Number", Number.class), Map.entry("java.util.UUID", UUID.class),
+            Map.entry("java.util.Date", Date.class));
+
+    private final ObjectMapper objectMapper;
+    private final ExecuteMigration properties;
+
+    private final Map<Class<?>, Registration<?>> byType = new ConcurrentHashMap<>();
+    private final Map<Integer, Registration<?>> byId = new ConcurrentHashMap<>();
+    private final Map<String, Class<?>> jsonTypes = new ConcurrentHashMap<>(); // 已通过校验的 JSON 类型
+
+    public BinaryMigrationCodec(ObjectProvider<ObjectMapper> objectMapper, ExecuteMigration properties) {
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
+        this.properties = properties;
+    }
+
+    // 注册业务类型，master 与 slave 需使用相同的类型 id
+    public <T> void register(int typeId, Class<T> type, TypeSerializer<T> serializer) {
+        Registration<T> registration = new Registration<>(typeId, serializer);
+        Registration<?> existing = byId.putIfAbsent(typeId, registration);
+        if (existing != null) {
+            throw new IllegalArgumentException("Type id " + typeId + " is already registered");
+        }
+        byType.put(type, registration);
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(value, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(Object value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            writeVarLong(zigZag((Integer) value), out);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(zigZag((Long) value), out);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            writeVarLong(zigZag((Short) value), out);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            out.writeByte(UUID_VALUE);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(DATE);
+            writeVarLong(zigZag(((Date) value).getTime()), out);
+        } else if (value instanceof Optional) {
+            Optional<?> optional = (Optional<?>) value;
+            if (optional.isPresent()) {
+                out.writeByte(OPTIONAL);
+                write(optional.get(), out);
+            } else {
+                out.writeByte(OPTIONAL_EMPTY);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            out.writeByte(ARRAY);
+            writeString(array.getClass().getComponentType().getName(), out);
+            writeVarLong(array.length, out);
+            for (Object element : array) {
+                write(element, out);
+            }
+        } else if (value instanceof byte[]) {
+            byte[] array = (byte[]) value;
+            out.writeByte(BYTES);
+            writeVarLong(array.length, out);
+            out.write(array);
+        } else {
+            Registration<Object> registration = (Registration<Object>) byType.get(value.getClass());
+            if (registration != null) {
+                out.writeByte(REGISTERED);
+                writeVarLong(registration.typeId, out);
+                registration.serializer.write(value, out);
+            } else if (value instanceof List || value instanceof Set) {
+                Collection<?> collection = (Collection<?>) value;
+                out.writeByte(value instanceof List ? LIST : SET);
+                writeVarLong(collection.size(), out);
+                for (Object element : collection) {
+                    write(element, out);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                writeVarLong(map.size(), out);
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(entry.getKey(), out);
+                    write(entry.getValue(), out);
+                }
+            } else {
+                out.writeByte(JSON);
+                writeString(value.getClass().getName(), out);
+                byte[] json = objectMapper.writeValueAsBytes(value);
+                writeVarLong(json.length, out);
+                out.write(json);
+            }
+        }
+    }
+
+    private Object read(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INT:
+                return (int) unZigZag(readVarLong(in));
+            case LONG:
+                return unZigZag(readVarLong(in));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return (short) unZigZag(readVarLong(in));
+            case BYTE:
+                return in.readByte();
+            case CHAR:
+                return in.readChar();
+            case UUID_VALUE:
+                return new UUID(in.readLong(), in.readLong());
+            case DATE:
+                return new Date(unZigZag(readVarLong(in)));
+            case OPTIONAL:
+                return Optional.ofNullable(read(in));
+            case OPTIONAL_EMPTY:
+                return Optional.empty();
+            case ARRAY: {
+                Class<?> componentType = arrayComponentType(readString(in));
+                int length = (int) readVarLong(in);
+                Object array = Array.newInstance(componentType, length);
+                for (int i = 0; i < length; i++) {
+                    Object element = read(in);
+                    if (element != null && !componentType.isInstance(element)) {
+                        throw new IllegalStateException("Encoded element type " + element.getClass().getName()
+                                + " does not match array type " + componentType.getName());
+                    }
+                    Array.set(array, i, element);
+                }
+                return array;
+            }
+            case BYTES: {
+                byte[] array = new byte[(int) readVarLong(in)];
+                in.readFully(array);
+                return array;
+            }
+            case LIST:
+            case SET: {
+                int size = (int) readVarLong(in);
+                Collection<Object> collection = tag == LIST ? new ArrayList<>(size) : new LinkedHashSet<>();
+                for (int i = 0; i < size; i++) {
+                    collection.add(read(in));
+                }
+                return collection;
+            }
+            case MAP: {
+                int size = (int) readVarLong(in);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(read(in), read(in));
+                }
+                return map;
+            }
+            case REGISTERED: {
+                int typeId = (int) readVarLong(in);
+                Registration<?> registration = byId.get(typeId);
+                if (registration == null) {
+                    throw new IllegalStateException("Unknown registered type id: " + typeId);
+                }
+                return registration.serializer.read(in);
+            }
+            case JSON: {
+                String className = readString(in);
+                byte[] json = new byte[(int) readVarLong(in)];
+                in.readFully(json);
+                return objectMapper.readValue(json, jsonType(className));
+            }
+            default:
+                throw new IllegalStateException("Unknown type tag: " + tag);
+        }
+    }
+
+    // 只加载允许的包中的类，校验通过后缓存，不允许的类名不会触发类加载
+    private Class<?> jsonType(String className) {
+        Class<?> type = jsonTypes.get(className);
+        if (type != null) {
+            return type;
+        }
+        if (!isAllowedJsonType(className)) {
+            throw new IllegalStateException("Encoded type " + className
+                    + " is not in execute-migration.codec-json-packages, register a TypeSerializer or add its package");
+        }
+        try {
+            type = ClassUtils.forName(className, null);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Unknown encoded type: " + className, e);
+        }
+        jsonTypes.put(className, type);
+        return type;
+    }
+
+    // 对象数组的元素类型：常用 JDK 值类型总是允许，其余与 JSON 类型相同只加载允许的包中的类；多维数组的元素类型本身是数组
+    private Class<?> arrayComponentType(String className) {
+        Class<?> type = ARRAY_COMPONENT_TYPES.get(className);
+        if (type != null) {
+            return type;
+        }
+        if (className.startsWith("[")) {
+            int dimensions = 0;
+            while (className.charAt(dimensions) == '[') {
+                dimensions++;
+            }
+            String element = className.substring(dimensions);
+            if (element.startsWith("L") && element.endsWith(";")) {
+                Class<?> elementType = ARRAY_COMPONENT_TYPES.get(element.substring(1, element.length() - 1));
+                if (elementType != null) {
+                    return Array.newInstance(elementType, new int[dimensions]).getClass();
+                }
+            }
+        }
+        return jsonType(className);
+    }
+
+    // 数组按元素类型判断，基本类型数组总是允许
+    private boolean isAllowedJsonType(String className) {
+        String name = className;
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions > 0) {
+            name = name.substring(dimensions);
+            if (name.length() == 1) {
+                return true;
+            }
+            if (name.length() < 3 || name.charAt(0) != 'L' || name.charAt(name.length() - 1) != ';') {
+                return false;
+            }
+            name = name.substring(1, name.length() - 1);
+        }
+        for (String prefix : properties.getCodecJsonPackages()) {
+            if (!prefix.isEmpty() && name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length, out);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] utf8 = new byte[(int) readVarLong(in)];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarLong(long value, DataOutput out) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Registration<T> {
+        private final int typeId;
+        private final TypeSerializer<T> serializer;
+
+        private Registration(int typeId, TypeSerializer<T> serializer) {
+            this.typeId = typeId;
+            this.serializer = serializer;
+        }
+    }
+}
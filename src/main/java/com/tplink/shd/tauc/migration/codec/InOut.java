@@ -0,0 +1,50 @@
+package com.tplink.shd.tauc.migration.codec;
+
+/**
+ * ExecuteCheck 保存的输入摘要与输出。
+ * 输入摘要在解码时立即读取，输出只有在调用 getOutput 时才解码，摘要不一致时无需解码输出。
+ */
+public final class InOut {
+
+    private final String input;
+    private final InOutCodec codec;
+    private final byte[] frame;
+    private final int outputOffset;
+    private final boolean compressed;
+
+    private boolean decoded;
+    private Object output;
+
+    InOut(String input, InOutCodec codec, byte[] frame, int outputOffset, boolean compressed) {
+        this.input = input;
+        this.codec = codec;
+        this.frame = frame;
+        this.outputOffset = outputOffset;
+        this.compressed = compressed;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public Object getOutput() {
+        if (!decoded) {
+            output = codec.decodeOutput(frame, outputOffset, compressed);
+            decoded = true;
+        }
+        return output;
+    }
+
+    // 重新解码一份输出，与 getOutput 返回给调用方的对象互不影响，供后台线程使用
+    public Object copyOutput() {
+        return codec.decodeOutput(frame, outputOffset, compressed);
+    }
+
+    @Override
+    public String toString() {
+        return "InOut{" +
+                "input='" + input + '\'' +
+                ", outputBytes=" + (frame.length - outputOffset) +
+                '}';
+    }
+}
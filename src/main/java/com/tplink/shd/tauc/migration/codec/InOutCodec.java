@@ -0,0 +1,122 @@
+package com.tplink.shd.tauc.migration.codec;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * InOut 的帧格式：[标志位][输入摘要长度 varint][输入摘要 UTF-8][输出]。
+ * 输出由 MigrationCodec 编码，超过 codecCompressThreshold 字节时压缩，压缩时输出前附带原始长度。
+ */
+@Component
+public class InOutCodec {
+
+    private static final int FLAG_COMPRESSED = 1;
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private MigrationCodec codec;
+
+    public byte[] encode(String input, Object output) {
+        byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+        byte[] outputBytes = codec.encode(output);
+        int flags = 0;
+        byte[] originalLength = null;
+        int threshold = properties.getCodecCompressThreshold();
+        if (threshold > 0 && outputBytes.length > threshold) {
+            byte[] deflated = deflate(outputBytes);
+            if (deflated.length < outputBytes.length) {
+                flags |= FLAG_COMPRESSED;
+                originalLength = varLong(outputBytes.length);
+                outputBytes = deflated;
+            }
+        }
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(inputBytes.length + outputBytes.length + 16);
+        frame.write(flags);
+        frame.writeBytes(varLong(inputBytes.length));
+        frame.writeBytes(inputBytes);
+        if (originalLength != null) {
+            frame.writeBytes(originalLength);
+        }
+        frame.writeBytes(outputBytes);
+        return frame.toByteArray();
+    }
+
+    // 只解析输入摘要，输出延迟到 InOut.getOutput 时解码
+    public InOut decode(byte[] frame) {
+        int flags = frame[0];
+        int[] position = {1};
+        int inputLength = (int) readVarLong(frame, position);
+        String input = new String(frame, position[0], inputLength, StandardCharsets.UTF_8);
+        return new InOut(input, this, frame, position[0] + inputLength, (flags & FLAG_COMPRESSED) != 0);
+    }
+
+    Object decodeOutput(byte[] frame, int offset, boolean compressed) {
+        if (!compressed) {
+            return codec.decode(frame, offset, frame.length - offset);
+        }
+        int[] position = {offset};
+        int originalLength = (int) readVarLong(frame, position);
+        byte[] inflated = new byte[originalLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(frame, position[0], frame.length - position[0]);
+            int n = inflater.inflate(inflated);
+            if (n != originalLength) {
+                throw new IllegalStateException("Corrupted InOut payload, expected " + originalLength + " bytes but got " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted InOut payload", e);
+        } finally {
+            inflater.end();
+        }
+        return codec.decode(inflated);
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] varLong(long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(10);
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+        return out.toByteArray();
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = bytes[position[0]++] & 0xff;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+}
@@ -0,0 +1,15 @@
+package com.tplink.shd.tauc.migration.codec;
+
+/**
+ * 迁移比对中写入缓存的值的编解码器，可通过声明 @Primary 的自定义 Bean 替换默认的二进制实现
+ */
+public interface MigrationCodec {
+
+    byte[] encode(Object value);
+
+    Object decode(byte[] bytes, int offset, int length);
+
+    default Object decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,15 @@
+package com.tplink.shd.tauc.migration.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 注册到 BinaryMigrationCodec 的自定义类型序列化器
+ */
+public interface TypeSerializer<T> {
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
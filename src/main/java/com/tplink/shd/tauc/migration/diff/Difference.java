@@ -0,0 +1,53 @@
+package com.tplink.shd.tauc.migration.diff;
+
+/**
+ * master 与 slave 输出中一处字段级差异，路径格式为 /字段/下标，根节点为 /
+ */
+public final class Difference {
+
+    private final String path;
+    private final Kind kind;
+    private final String masterValue; // MISSING_IN_MASTER 时为 null
+    private final String slaveValue; // MISSING_IN_SLAVE 时为 null
+
+    Difference(String path, Kind kind, String masterValue, String slaveValue) {
+        this.path = path;
+        this.kind = kind;
+        this.masterValue = masterValue;
+        this.slaveValue = slaveValue;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getMasterValue() {
+        return masterValue;
+    }
+
+    public String getSlaveValue() {
+        return slaveValue;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case MISSING_IN_SLAVE:
+                return path + " only in master: " + masterValue;
+            case MISSING_IN_MASTER:
+                return path + " only in slave: " + slaveValue;
+            default:
+                return path + " master: " + masterValue + ", slave: " + slaveValue;
+        }
+    }
+
+    public enum Kind {
+        CHANGED,           // 两边都存在但值或类型不同
+        MISSING_IN_SLAVE,  // 只在 master 输出中存在
+        MISSING_IN_MASTER  // 只在 slave 输出中存在
+    }
+}
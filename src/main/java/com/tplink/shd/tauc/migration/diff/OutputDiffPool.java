@@ -0,0 +1,234 @@
+package com.tplink.shd.tauc.migration.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import com.tplink.shd.tauc.migration.codec.InOut;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ExecuteCheck slave 输出与 master 输出的后台结构比对。
+ * 业务线程先预留名额再执行 slave 逻辑并提交比对任务，输出转为 JSON 树与逐字段比对都在有界线程池中完成；
+ * 名额用完时直接跳过本次比对并计数，输出校验不增加请求延迟。
+ */
+@Slf4j
+@Component
+public class OutputDiffPool {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private ObjectProvider<ObjectMapper> objectMapper;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final ConcurrentHashMap<String, StructuralDiff> differs = new ConcurrentHashMap<>(); // 按 类名:方法名 编译的比对器
+    private final ConcurrentHashMap<String, DiffMeters> meters = new ConcurrentHashMap<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private ThreadPoolExecutor executor;
+    private Semaphore permits;
+    private ObjectMapper mapper;
+    private MeterRegistry registry;
+    private Timer diffTimer;
+
+    public boolean isEnabled() {
+        return properties.getOutputDiff().isEnabled();
+    }
+
+    /**
+     * 预留一个比对名额，slave 在执行自身逻辑前调用；名额在比对完成、失败或放弃后归还，排队与执行中的比对总数不超过名额数
+     *
+     * @return null 表示名额已用完，跳过本次比对并计数
+     */
+    public Reservation reserve(MigrationMethodDescriptor descriptor) {
+        if (!started.get()) {
+            start();
+        }
+        DiffMeters methodMeters = meters(descriptor.getMethodKey());
+        if (!permits.tryAcquire()) {
+            methodMeters.shed.increment();
+            return null;
+        }
+        return new Reservation(descriptor.getMethodKey(), methodMeters);
+    }
+
+    // 首次使用时才创建线程池，未开启输出比对的应用不会创建线程
+    private synchronized void start() {
+        if (started.get()) {
+            return;
+        }
+        ExecuteMigration.OutputDiff config = properties.getOutputDiff();
+        int threads = Math.max(config.getThreads(), 1);
+        permits = new Semaphore(Math.max(config.getQueueCapacity(), 1) + threads); // 每个线程执行一个，其余在队列中等待
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), // 长度由名额限制
+                task -> {
+                    Thread thread = new Thread(task, "migration-output-diff-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        mapper = objectMapper.getIfAvailable(ObjectMapper::new);
+
+        registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("migration.output.diff.queue.depth", executor.getQueue(), BlockingQueue::size)
+                .description("Output diffs waiting for a diff thread")
+                .register(registry);
+        diffTimer = Timer.builder("migration.output.diff.latency")
+                .description("Time to convert and structurally compare one master/slave output pair")
+                .register(registry);
+        started.set(true);
+        log.info("Output diff pool started, threads: {}, queue capacity: {}", threads, config.getQueueCapacity());
+    }
+
+    private void diff(String methodKey, DiffMeters methodMeters, String uuid, InOut master, Object slaveOutput) {
+        long start = System.nanoTime();
+        try {
+            JsonNode masterTree = mapper.valueToTree(master.copyOutput());
+            JsonNode slaveTree = mapper.valueToTree(slaveOutput);
+            List<Difference> differences = differ(methodKey).diff(masterTree, slaveTree);
+            if (differences.isEmpty()) {
+                methodMeters.match.increment();
+            } else {
+                methodMeters.mismatch.increment();
+                log.warn("Output mismatch for {} uuid: {}, {}{} differences: {}", methodKey, uuid, differences.size(),
+                        differences.size() >= properties.getOutputDiff().getMaxDifferences() ? "+" : "", differences);
+            }
+        } catch (RuntimeException e) {
+            methodMeters.error.increment();
+            log.error("Failed to diff outputs for {} uuid: {}", methodKey, uuid, e);
+        } finally {
+            diffTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private StructuralDiff differ(String methodKey) {
+        StructuralDiff differ = differs.get(methodKey);
+        if (differ == null) {
+            differ = differs.computeIfAbsent(methodKey, key -> {
+                ExecuteMigration.OutputDiff config = properties.getOutputDiff();
+                Set<String> paths = new LinkedHashSet<>(config.getIgnorePaths());
+                paths.addAll(config.getMethodIgnorePaths().getOrDefault(key, Set.of()));
+                return StructuralDiff.compile(paths, config.getMaxDifferences());
+            });
+        }
+        return differ;
+    }
+
+    private DiffMeters meters(String methodKey) {
+        DiffMeters methodMeters = meters.get(methodKey);
+        if (methodMeters == null) {
+            methodMeters = meters.computeIfAbsent(methodKey, key -> new DiffMeters(registry, key));
+        }
+        return methodMeters;
+    }
+
+    // 停止接收新的比对，并等待已提交的比对完成
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!started.get()) {
+            return;
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            log.info("Output diff pool stopped, {} pending diffs discarded", executor.shutdownNow().size());
+        }
+    }
+
+    /**
+     * 一次比对的名额，submit、fail 与 release 只有第一次调用生效
+     */
+    public final class Reservation {
+        private final String methodKey;
+        private final DiffMeters methodMeters;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Reservation(String methodKey, DiffMeters methodMeters) {
+            this.methodKey = methodKey;
+            this.methodMeters = methodMeters;
+        }
+
+        // 提交比对，master 输出在后台线程重新解码，不与返回给调用方的对象共享
+        public void submit(String uuid, InOut master, Object slaveOutput) {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        diff(methodKey, methodMeters, uuid, master, slaveOutput);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                methodMeters.shed.increment();
+                log.debug("Output diff pool is stopped, skipped diff for {} uuid: {}", methodKey, uuid);
+            }
+        }
+
+        // slave 自身逻辑执行失败，此时没有可比对的输出
+        public void fail() {
+            if (done.compareAndSet(false, true)) {
+                methodMeters.error.increment();
+                permits.release();
+            }
+        }
+
+        // 未比对即放弃，如调用方取消了订阅
+        public void release() {
+            if (done.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private static final class DiffMeters {
+        private final Counter match;
+        private final Counter mismatch;
+        private final Counter shed;
+        private final Counter error;
+
+        private DiffMeters(MeterRegistry registry, String method) {
+            this.match = counter(registry, method, "match");
+            this.mismatch = counter(registry, method, "mismatch");
+            this.shed = counter(registry, method, "shed");
+            this.error = counter(registry, method, "error");
+        }
+
+        private static Counter counter(MeterRegistry registry, String method, String result) {
+            return Counter.builder("migration.output.diff")
+                    .description("Structural master/slave output comparison outcomes")
+                    .tags("method", method, "result", result)
+                    .register(registry);
+        }
+    }
+}
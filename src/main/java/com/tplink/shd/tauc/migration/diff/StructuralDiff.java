@@ -0,0 +1,196 @@
+package com.tplink.shd.tauc.migration.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 两个 JSON 树的字段级结构比对。
+ * 对象按字段名比对，数组按下标比对，数字只比较数值（1 与 1.0 视为相同）；
+ * 忽略路径在创建时编译为前缀树，路径中的 * 匹配任意一层字段名或数组下标，被忽略的节点及其子节点不参与比对。
+ */
+public final class StructuralDiff {
+
+    private static final int MAX_VALUE_LENGTH = 200; // 报告中的值超过该长度时截断
+
+    private final PathNode ignored;
+    private final int maxDifferences;
+
+    private StructuralDiff(PathNode ignored, int maxDifferences) {
+        this.ignored = ignored;
+        this.maxDifferences = Math.max(maxDifferences, 1);
+    }
+
+    /**
+     * @param ignorePaths    以 / 分隔的字段路径，如 /updateTime；字段名中的 / 与 ~ 按 JSON Pointer 转义为 ~1 与 ~0，单独的 / 忽略整个输出
+     * @param maxDifferences 报告的差异数达到该值后停止比对
+     */
+    public static StructuralDiff compile(Collection<String> ignorePaths, int maxDifferences) {
+        PathNode root = new PathNode();
+        for (String path : ignorePaths) {
+            if (path == null || path.isEmpty()) {
+                continue;
+            }
+            if ("/".equals(path)) {
+                root.terminal = true;
+                continue;
+            }
+            PathNode node = root;
+            for (String segment : split(path)) {
+                node = node.child(segment);
+            }
+            node.terminal = true;
+        }
+        return new StructuralDiff(root, maxDifferences);
+    }
+
+    // 比对两棵树，一致时返回空列表
+    public List<Difference> diff(JsonNode master, JsonNode slave) {
+        if (ignored.terminal) {
+            return Collections.emptyList();
+        }
+        List<Difference> differences = new ArrayList<>();
+        compare(master, slave, new StringBuilder(), Collections.singletonList(ignored), differences);
+        return differences;
+    }
+
+    private void compare(JsonNode master, JsonNode slave, StringBuilder path, List<PathNode> ignoreNodes,
+                         List<Difference> differences) {
+        if (differences.size() >= maxDifferences) {
+            return;
+        }
+        if (master.isObject() && slave.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = master.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                child(field.getKey(), field.getValue(), slave.get(field.getKey()), path, ignoreNodes, differences);
+            }
+            Iterator<Map.Entry<String, JsonNode>> extra = slave.fields();
+            while (extra.hasNext()) {
+                Map.Entry<String, JsonNode> field = extra.next();
+                if (!master.has(field.getKey())) {
+                    child(field.getKey(), null, field.getValue(), path, ignoreNodes, differences);
+                }
+            }
+        } else if (master.isArray() && slave.isArray()) {
+            int size = Math.max(master.size(), slave.size());
+            for (int i = 0; i < size; i++) {
+                child(Integer.toString(i), master.get(i), slave.get(i), path, ignoreNodes, differences);
+            }
+        } else if (!sameValue(master, slave)) {
+            differences.add(new Difference(pathOf(path), Difference.Kind.CHANGED, render(master), render(slave)));
+        }
+    }
+
+    // 比对一个字段或数组元素，master 或 slave 一侧缺失时为 null
+    private void child(String segment, JsonNode master, JsonNode slave, StringBuilder path, List<PathNode> ignoreNodes,
+                       List<Difference> differences) {
+        if (differences.size() >= maxDifferences) {
+            return;
+        }
+        List<PathNode> next = advance(ignoreNodes, segment);
+        if (next == null) {
+            return; // 命中忽略路径
+        }
+        int length = path.length();
+        path.append('/').append(escape(segment));
+        if (master == null) {
+            differences.add(new Difference(path.toString(), Difference.Kind.MISSING_IN_MASTER, null, render(slave)));
+        } else if (slave == null) {
+            differences.add(new Difference(path.toString(), Difference.Kind.MISSING_IN_SLAVE, render(master), null));
+        } else {
+            compare(master, slave, path, next, differences);
+        }
+        path.setLength(length);
+    }
+
+    // 沿忽略路径前缀树前进一层，命中完整的忽略路径时返回 null
+    private static List<PathNode> advance(List<PathNode> nodes, String segment) {
+        if (nodes.isEmpty()) {
+            return nodes;
+        }
+        List<PathNode> next = new ArrayList<>(2);
+        for (PathNode node : nodes) {
+            PathNode exact = node.children.get(segment);
+            PathNode any = node.wildcard;
+            if ((exact != null && exact.terminal) || (any != null && any.terminal)) {
+                return null;
+            }
+            if (exact != null) {
+                next.add(exact);
+            }
+            if (any != null) {
+                next.add(any);
+            }
+        }
+        return next.isEmpty() ? Collections.emptyList() : next;
+    }
+
+    private static boolean sameValue(JsonNode master, JsonNode slave) {
+        if (master.isNumber() && slave.isNumber()) {
+            if (isNonFinite(master) || isNonFinite(slave)) {
+                return Double.compare(master.doubleValue(), slave.doubleValue()) == 0; // NaN 与无穷大没有 BigDecimal 表示，NaN 与 NaN 视为相同
+            }
+            return master.decimalValue().compareTo(slave.decimalValue()) == 0;
+        }
+        return master.equals(slave);
+    }
+
+    private static boolean isNonFinite(JsonNode node) {
+        return (node.isDouble() || node.isFloat()) && !Double.isFinite(node.doubleValue());
+    }
+
+    private static String render(JsonNode node) {
+        String text = node.toString();
+        return text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) + "..." : text;
+    }
+
+    private static String pathOf(StringBuilder path) {
+        return path.length() == 0 ? "/" : path.toString();
+    }
+
+    // 末尾的 / 不产生空字段名，/items/ 与 /items 相同
+    private static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int from = path.startsWith("/") ? 1 : 0;
+        int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        while (from <= end) {
+            int to = path.indexOf('/', from);
+            if (to < 0 || to > end) {
+                to = end;
+            }
+            segments.add(path.substring(from, to).replace("~1", "/").replace("~0", "~"));
+            from = to + 1;
+        }
+        return segments;
+    }
+
+    private static String escape(String segment) {
+        if (segment.indexOf('~') < 0 && segment.indexOf('/') < 0) {
+            return segment;
+        }
+        return segment.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static final class PathNode {
+        private final Map<String, PathNode> children = new HashMap<>();
+        private PathNode wildcard;
+        private boolean terminal; // 到此为一条完整的忽略路径
+
+        private PathNode child(String segment) {
+            if ("*".equals(segment)) {
+                if (wildcard == null) {
+                    wildcard = new PathNode();
+                }
+                return wildcard;
+            }
+            return children.computeIfAbsent(segment, k -> new PathNode());
+        }
+    }
+}
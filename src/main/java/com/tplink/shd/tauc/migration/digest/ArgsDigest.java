@@ -0,0 +1,17 @@
+package com.tplink.shd.tauc.migration.digest;
+
+import lombok.Getter;
+
+/**
+ * 一次遍历参数得到的两种摘要
+ */
+@Getter
+public final class ArgsDigest {
+    private final String detailed; // 详细参数摘要，参数以 : 连接
+    private final String simple; // 简单参数摘要，用于拼接 Redis 键
+
+    public ArgsDigest(String detailed, String simple) {
+        this.detailed = detailed;
+        this.simple = simple;
+    }
+}
@@ -0,0 +1,189 @@
+package com.tplink.shd.tauc.migration.digest;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 参数摘要引擎。
+ * 参数只遍历一次，写入线程复用的缓冲区，同时产出详细摘要（参数以 : 连接）与简单摘要（128 位哈希的十六进制或 base64url 编码）。
+ */
+public final class ArgsDigester {
+
+    private static final int MAX_RETAINED_CHARS = 64 * 1024; // 超过该长度的缓冲区用完即丢弃，避免线程长期持有大对象
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private ArgsDigester() {
+    }
+
+    // 一次遍历生成详细摘要与简单摘要
+    public static ArgsDigest digest(Object[] args, DigestAlgorithm algorithm) {
+        return digest(args, algorithm, DigestEncoding.HEX);
+    }
+
+    public static ArgsDigest digest(Object[] args, DigestAlgorithm algorithm, DigestEncoding encoding) {
+        Buffer buffer = acquire();
+        try {
+            buffer.write(args);
+            return new ArgsDigest(buffer.text.toString(), buffer.hash(algorithm, encoding));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    // 仅生成详细摘要
+    public static String detailed(Object[] args) {
+        Buffer buffer = acquire();
+        try {
+            buffer.write(args);
+            return buffer.text.toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    // 对任意字符串生成简单摘要
+    public static String hash(CharSequence input, DigestAlgorithm algorithm) {
+        Buffer buffer = acquire();
+        try {
+            buffer.text.append(input);
+            return buffer.hash(algorithm, DigestEncoding.HEX);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    // 参数的 toString 可能再次进入摘要引擎，此时线程缓冲区正被占用，改用临时缓冲区
+    private static Buffer acquire() {
+        Buffer buffer = BUFFERS.get();
+        if (buffer.inUse) {
+            return new Buffer();
+        }
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    // 常见类型直接写入，其他类型按 Canonicalizer 的规范化形式写入
+    static void appendArg(StringBuilder sb, Object arg) {
+        Canonicalizer.append(sb, arg);
+    }
+
+    /**
+     * 线程复用的摘要缓冲区
+     */
+    private static final class Buffer {
+        private StringBuilder text = new StringBuilder(256);
+        private int[] separators = new int[8]; // 参数分隔符在 text 中的位置
+        private int separatorCount;
+        private final long[] murmur = new long[2];
+        private final byte[] utf8 = new byte[512];
+        private final byte[] md5Bytes = new byte[16];
+        private final char[] hex = new char[32];
+        private final byte[] murmurBytes = new byte[16];
+        private final char[] base64 = new char[22];
+        private MessageDigest md5;
+        private boolean inUse;
+
+        void write(Object[] args) {
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    if (separatorCount == separators.length) {
+                        int[] grown = new int[separators.length << 1];
+                        System.arraycopy(separators, 0, grown, 0, separatorCount);
+                        separators = grown;
+                    }
+                    separators[separatorCount++] = text.length();
+                    text.append(':');
+                }
+                appendArg(text, args[i]);
+            }
+        }
+
+        String hash(DigestAlgorithm algorithm, DigestEncoding encoding) {
+            if (algorithm == DigestAlgorithm.MD5) {
+                md5();
+                if (encoding == DigestEncoding.BASE64URL) {
+                    return new String(base64, 0, Base64Url.encode(md5Bytes, 16, base64));
+                }
+                Hex.encode(md5Bytes, 16, hex);
+            } else {
+                Murmur3.hash128(text, 0, murmur);
+                if (encoding == DigestEncoding.BASE64URL) {
+                    putLong(murmur[0], murmurBytes, 0);
+                    putLong(murmur[1], murmurBytes, 8);
+                    return new String(base64, 0, Base64Url.encode(murmurBytes, 16, base64));
+                }
+                Hex.encode(murmur[0], hex, 0);
+                Hex.encode(murmur[1], hex, 16);
+            }
+            return new String(hex);
+        }
+
+        // 按大端序写入，与十六进制编码的字节顺序一致
+        private static void putLong(long value, byte[] out, int offset) {
+            for (int i = 7; i >= 0; i--) {
+                out[offset + i] = (byte) value;
+                value >>>= 8;
+            }
+        }
+
+        // 以 , 作为参数分隔符按 UTF-8 计算 MD5，与旧版 String.join(",") + HashUtils 结果一致
+        private void md5() {
+            if (md5 == null) {
+                try {
+                    md5 = MessageDigest.getInstance("MD5");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new RuntimeException("Hashing algorithm not found", e);
+                }
+            }
+            int length = text.length();
+            int next = 0; // 下一个分隔符下标
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                if (n > utf8.length - 4) {
+                    md5.update(utf8, 0, n);
+                    n = 0;
+                }
+                char c = text.charAt(i);
+                if (next < separatorCount && separators[next] == i) {
+                    next++;
+                    utf8[n++] = ',';
+                } else if (c < 0x80) {
+                    utf8[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    utf8[n++] = (byte) (0xc0 | (c >> 6));
+                    utf8[n++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, text.charAt(++i));
+                    utf8[n++] = (byte) (0xf0 | (cp >> 18));
+                    utf8[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    utf8[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    utf8[n++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    utf8[n++] = '?'; // 与 String.getBytes 对孤立代理字符的处理一致
+                } else {
+                    utf8[n++] = (byte) (0xe0 | (c >> 12));
+                    utf8[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    utf8[n++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            md5.update(utf8, 0, n);
+            try {
+                md5.digest(md5Bytes, 0, 16);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void release() {
+            inUse = false;
+            separatorCount = 0;
+            if (text.capacity() > MAX_RETAINED_CHARS) {
+                text = new StringBuilder(256);
+            } else {
+                text.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.tplink.shd.tauc.migration.digest;
+
+/**
+ * 无填充的 base64url 编码，直接写入调用方的字符数组，替代 Base64.getUrlEncoder 的中间数组
+ */
+public final class Base64Url {
+
+    private static final char[] DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private Base64Url() {
+    }
+
+    // 编码后的字符数
+    public static int encodedLength(int length) {
+        return (length * 4 + 2) / 3;
+    }
+
+    // 将 bytes 的前 length 个字节编码写入 out，返回写入的字符数
+    public static int encode(byte[] bytes, int length, char[] out) {
+        int j = 0;
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+            out[j++] = DIGITS[bits >>> 18];
+            out[j++] = DIGITS[(bits >>> 12) & 0x3f];
+            out[j++] = DIGITS[(bits >>> 6) & 0x3f];
+            out[j++] = DIGITS[bits & 0x3f];
+        }
+        int remaining = length - i;
+        if (remaining == 1) {
+            int bits = (bytes[i] & 0xff) << 16;
+            out[j++] = DIGITS[bits >>> 18];
+            out[j++] = DIGITS[(bits >>> 12) & 0x3f];
+        } else if (remaining == 2) {
+            int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8;
+            out[j++] = DIGITS[bits >>> 18];
+            out[j++] = DIGITS[(bits >>> 12) & 0x3f];
+            out[j++] = DIGITS[(bits >>> 6) & 0x3f];
+        }
+        return j;
+    }
+
+    public static String encode(byte[] bytes) {
+        char[] out = new char[encodedLength(bytes.length)];
+        encode(bytes, bytes.length, out);
+        return new String(out);
+    }
+}
@@ -0,0 +1,287 @@
+package com.tplink.shd.tauc.migration.digest;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 参数的规范化文本表示，直接写入摘要缓冲区。
+ * 每个类只分析一次，结果缓存在 ClassValue 中：
+ * 覆盖了 toString 的类和 JDK 类型沿用 toString；未覆盖 toString 的类按字段名排序，通过 MethodHandle 逐个读取字段；
+ * List 与数组保持顺序，Set 与 Map 按元素的规范化文本排序，与迭代顺序无关。
+ * 展开路径上再次遇到同一个对象时输出 <cycle:类名>，不再重复展开。
+ * 只包含简单类型的 List 摘要与旧版相同；数组、Set、Map 与未覆盖 toString 的对象与旧版不同，master 与 slave 需同时升级。
+ */
+public final class Canonicalizer {
+
+    private static final int MAX_DEPTH = 16; // 超过该嵌套深度时不再展开，循环引用由展开路径上的对象集合检测
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<Plan> PLANS = new ClassValue<Plan>() {
+        @Override
+        protected Plan computeValue(Class<?> type) {
+            return plan(type);
+        }
+    };
+
+    private Canonicalizer() {
+    }
+
+    public static String toString(Object value) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, value);
+        return sb.toString();
+    }
+
+    public static void append(StringBuilder sb, Object value) {
+        append(sb, value, 0, null);
+    }
+
+    /**
+     * @param path 展开路径上的对象，首次展开容器或对象时才创建
+     */
+    static void append(StringBuilder sb, Object value, int depth, Set<Object> path) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            sb.append((String) value);
+        } else if (value instanceof Integer) {
+            sb.append(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            sb.append(((Long) value).longValue());
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Character) {
+            sb.append(((Character) value).charValue());
+        } else if (depth >= MAX_DEPTH) {
+            sb.append("...");
+        } else {
+            PLANS.get(value.getClass()).append(sb, value, depth, path);
+        }
+    }
+
+    private static Plan plan(Class<?> type) {
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() ? primitiveArrayPlan(type.getComponentType()) : nested(Canonicalizer::appendArray);
+        }
+        if (overridesToString(type, false)) {
+            return (sb, value, depth, path) -> sb.append(value); // 业务类型自己实现的 toString，包括自定义集合
+        }
+        if (Set.class.isAssignableFrom(type)) {
+            return nested((sb, value, depth, path) -> appendSorted(sb, (Collection<?>) value, depth, path));
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return nested((sb, value, depth, path) -> appendOrdered(sb, (Collection<?>) value, depth, path));
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return nested((sb, value, depth, path) -> appendMap(sb, (Map<?, ?>) value, depth, path));
+        }
+        if (type == Optional.class) {
+            return nested(Canonicalizer::appendOptional);
+        }
+        if (overridesToString(type, true) || isJdkType(type)) {
+            return (sb, value, depth, path) -> sb.append(value);
+        }
+        try {
+            return nested(new FieldPlan(type));
+        } catch (IllegalAccessException | RuntimeException e) {
+            return (sb, value, depth, path) -> sb.append(value); // 字段不可访问时退回 toString
+        }
+    }
+
+    // 展开前把对象加入路径，已在路径上时输出回指标记；路径只记录祖先，同一对象在兄弟位置出现时照常展开
+    private static Plan nested(Plan plan) {
+        return (sb, value, depth, path) -> {
+            Set<Object> ancestors = path != null ? path : Collections.newSetFromMap(new IdentityHashMap<>());
+            if (!ancestors.add(value)) {
+                sb.append("<cycle:").append(value.getClass().getSimpleName()).append('>');
+                return;
+            }
+            try {
+                plan.append(sb, value, depth, ancestors);
+            } finally {
+                ancestors.remove(value);
+            }
+        };
+    }
+
+    /**
+     * @param includeJdk 为 false 时只认业务类型中声明的 toString，JDK 集合基类的 toString 不算
+     */
+    private static boolean overridesToString(Class<?> type, boolean includeJdk) {
+        try {
+            Class<?> declaring = type.getMethod("toString").getDeclaringClass();
+            return declaring != Object.class && (includeJdk || !isJdkType(declaring));
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isJdkType(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+
+    private static void appendOrdered(StringBuilder sb, Collection<?> collection, int depth, Set<Object> path) {
+        sb.append('[');
+        boolean first = true;
+        for (Object element : collection) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            append(sb, element, depth + 1, path);
+        }
+        sb.append(']');
+    }
+
+    private static void appendSorted(StringBuilder sb, Collection<?> collection, int depth, Set<Object> path) {
+        String[] elements = new String[collection.size()];
+        int n = 0;
+        StringBuilder element = new StringBuilder();
+        for (Object value : collection) {
+            element.setLength(0);
+            append(element, value, depth + 1, path);
+            elements[n++] = element.toString();
+        }
+        Arrays.sort(elements, 0, n);
+        sb.append('[');
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(elements[i]);
+        }
+        sb.append(']');
+    }
+
+    private static void appendMap(StringBuilder sb, Map<?, ?> map, int depth, Set<Object> path) {
+        List<String[]> entries = new ArrayList<>(map.size());
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            text.setLength(0);
+            append(text, entry.getKey(), depth + 1, path);
+            String key = text.toString();
+            text.setLength(0);
+            append(text, entry.getValue(), depth + 1, path);
+            entries.add(new String[]{key, text.toString()});
+        }
+        entries.sort(Comparator.comparing((String[] e) -> e[0]).thenComparing(e -> e[1]));
+        sb.append('{');
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(entries.get(i)[0]).append('=').append(entries.get(i)[1]);
+        }
+        sb.append('}');
+    }
+
+    private static void appendArray(StringBuilder sb, Object value, int depth, Set<Object> path) {
+        Object[] array = (Object[]) value;
+        sb.append('[');
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            append(sb, array[i], depth + 1, path);
+        }
+        sb.append(']');
+    }
+
+    // 基本类型数组按元素类型选择 Arrays.toString，不逐个装箱
+    private static Plan primitiveArrayPlan(Class<?> componentType) {
+        if (componentType == int.class) {
+            return (sb, value, depth, path) -> sb.append(Arrays.toString((int[]) value));
+        } else if (componentType == long.class) {
+            return (sb, value, depth, path) -> sb.append(Arrays.toString((long[]) value));
+        } else if (componentType == byte.class) {
+            return (sb, value, depth, path) -> sb.append(Arrays.toString((byte[]) value));
+        } else if (componentType == short.class) {
+            return (sb, value, depth, path) -> sb.append(Arrays.toString((short[]) value));
+        } else if (componentType == char.class) {
+            return (sb, value, depth, path) -> sb.append(Arrays.toString((char[]) value));
+        } else if (componentType == boolean.class) {
+            return (sb, value, depth, path) -> sb.append(Arrays.toString((boolean[]) value));
+        } else if (componentType == float.class) {
+            return (sb, value, depth, path) -> sb.append(Arrays.toString((float[]) value));
+        }
+        return (sb, value, depth, path) -> sb.append(Arrays.toString((double[]) value));
+    }
+
+    private static void appendOptional(StringBuilder sb, Object value, int depth, Set<Object> path) {
+        Optional<?> optional = (Optional<?>) value;
+        if (optional.isPresent()) {
+            sb.append("Optional[");
+            append(sb, optional.get(), depth + 1, path);
+            sb.append(']');
+        } else {
+            sb.append("Optional.empty");
+        }
+    }
+
+    @FunctionalInterface
+    private interface Plan {
+        void append(StringBuilder sb, Object value, int depth, Set<Object> path);
+    }
+
+    /**
+     * 未覆盖 toString 的类：类名(字段=值, ...)，字段含父类字段，按字段名排序，不含 static 与 transient 字段
+     */
+    private static final class FieldPlan implements Plan {
+        private final String prefix;
+        private final String[] labels; // 预先拼好的 "字段=" 片段
+        private final MethodHandle[] getters;
+
+        private FieldPlan(Class<?> type) throws IllegalAccessException {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                        fields.add(field);
+                    }
+                }
+            }
+            fields.sort(Comparator.comparing(Field::getName).thenComparing(f -> f.getDeclaringClass().getName()));
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            this.prefix = type.getSimpleName() + "(";
+            this.labels = new String[fields.size()];
+            this.getters = new MethodHandle[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                labels[i] = (i == 0 ? "" : ", ") + field.getName() + "=";
+                getters[i] = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            }
+        }
+
+        @Override
+        public void append(StringBuilder sb, Object value, int depth, Set<Object> path) {
+            sb.append(prefix);
+            for (int i = 0; i < getters.length; i++) {
+                sb.append(labels[i]);
+                Object fieldValue;
+                try {
+                    fieldValue = (Object) getters[i].invokeExact(value);
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Failed to read field of " + value.getClass().getName(), e);
+                }
+                Canonicalizer.append(sb, fieldValue, depth + 1, path);
+            }
+            sb.append(')');
+        }
+    }
+}
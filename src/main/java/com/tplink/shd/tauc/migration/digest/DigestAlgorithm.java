@@ -0,0 +1,9 @@
+package com.tplink.shd.tauc.migration.digest;
+
+/**
+ * 简单参数摘要使用的哈希算法
+ */
+public enum DigestAlgorithm {
+    MURMUR3_128, // 非加密 128 位哈希，默认
+    MD5          // 与旧版 HashUtils 生成的摘要一致
+}
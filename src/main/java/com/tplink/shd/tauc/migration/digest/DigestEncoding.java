@@ -0,0 +1,9 @@
+package com.tplink.shd.tauc.migration.digest;
+
+/**
+ * 简单参数摘要的文本编码
+ */
+public enum DigestEncoding {
+    HEX,      // 32 个十六进制字符，默认
+    BASE64URL // 22 个 base64url 字符，无填充，用于紧凑 key
+}
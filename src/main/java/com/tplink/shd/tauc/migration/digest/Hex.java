@@ -0,0 +1,35 @@
+package com.tplink.shd.tauc.migration.digest;
+
+/**
+ * 查表方式的十六进制编码，替代逐字节 String.format("%02x")
+ */
+public final class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private Hex() {
+    }
+
+    // 将 bytes 编码写入 out，out 长度需不小于 2 * length
+    public static void encode(byte[] bytes, int length, char[] out) {
+        for (int i = 0, j = 0; i < length; i++) {
+            int b = bytes[i] & 0xff;
+            out[j++] = DIGITS[b >>> 4];
+            out[j++] = DIGITS[b & 0x0f];
+        }
+    }
+
+    // 将 long 按大端序编码为 16 个字符写入 out 的 offset 处
+    public static void encode(long value, char[] out, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            out[offset + i] = DIGITS[(int) (value & 0x0f)];
+            value >>>= 4;
+        }
+    }
+
+    public static String encode(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        encode(bytes, bytes.length, out);
+        return new String(out);
+    }
+}
@@ -0,0 +1,105 @@
+package com.tplink.shd.tauc.migration.digest;
+
+/**
+ * MurmurHash3 x64 128 位实现，直接对字符序列按 UTF-16LE 计算，无需先编码为字节数组。
+ * 结果与 Guava Hashing.murmur3_128().hashUnencodedChars 的 h1、h2 相同；ArgsDigester 按大端序输出每个 long，
+ * 与 Guava HashCode.toString 的小端字节序不同。
+ */
+public final class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    // 计算 text 的 128 位哈希，结果写入 out[0]、out[1]
+    public static void hash128(CharSequence text, long seed, long[] out) {
+        int length = text.length();
+        long h1 = seed;
+        long h2 = seed;
+
+        int blocks = length >>> 3; // 每块 8 个字符，即 16 字节
+        for (int i = 0; i < blocks; i++) {
+            int p = i << 3;
+            long k1 = pack(text, p);
+            long k2 = pack(text, p + 4);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = blocks << 3;
+        int remaining = length - tail;
+        if (remaining > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int j = 0; j < remaining; j++) {
+                long c = text.charAt(tail + j);
+                if (j < 4) {
+                    k1 |= c << (j << 4);
+                } else {
+                    k2 |= c << ((j - 4) << 4);
+                }
+            }
+            if (remaining > 4) {
+                h2 ^= mixK2(k2);
+            }
+            h1 ^= mixK1(k1);
+        }
+
+        long byteLength = (long) length << 1;
+        h1 ^= byteLength;
+        h2 ^= byteLength;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    // 对 64 位整数做 fmix64 扰动，可用作稳定的整数哈希
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long pack(CharSequence text, int p) {
+        return (long) text.charAt(p)
+                | (long) text.charAt(p + 1) << 16
+                | (long) text.charAt(p + 2) << 32
+                | (long) text.charAt(p + 3) << 48;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+}
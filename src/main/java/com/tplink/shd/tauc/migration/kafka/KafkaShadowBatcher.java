@@ -0,0 +1,249 @@
+package com.tplink.shd.tauc.migration.kafka;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.ExecuteSaveAspect;
+import com.tplink.shd.tauc.migration.store.CompareRequest;
+import com.tplink.shd.tauc.migration.store.CompareResult;
+import com.tplink.shd.tauc.migration.store.MigrationRecordStore;
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 高吞吐 Kafka topic 的批量影子比对。
+ * 消费线程只把消息摘要放入所属 topic 的缓冲区后立即返回；
+ * 缓冲区达到批量大小或从第一条消息起超过时间窗口时，由后台线程取出整批，
+ * 通过 MigrationRecordStore.compareAndRecordAll 在一次 pipeline 往返中完成比对与记录，再统一记录比对结果。
+ */
+@Slf4j
+@Component
+public class KafkaShadowBatcher {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private MigrationRecordStore recordStore;
+
+    @Autowired
+    private ExecuteSaveAspect executeSaveAspect; // 复用比对结果的处理逻辑
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final ConcurrentHashMap<String, TopicBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter droppedCounter;
+    private Timer flushTimer;
+
+    /**
+     * 消息摘要入队，比对在后台线程完成
+     *
+     * @return false 表示该 topic 缓冲的消息过多或批量比对已停止，本条消息不参与比对
+     */
+    public boolean enqueue(String topic, boolean master, MigrationMeters meters, String cacheName,
+                           String masterInputKey, String slaveInputKey, String argsDigest) {
+        if (!started.get()) {
+            start();
+        }
+        TopicBuffer buffer = buffers.get(topic);
+        if (buffer == null) {
+            buffer = buffers.computeIfAbsent(topic, k -> new TopicBuffer());
+        }
+        ExecuteMigration.KafkaBatch config = properties.getKafkaBatch();
+        PendingCompare compare = new PendingCompare(master, meters, cacheName, masterInputKey, slaveInputKey, argsDigest);
+        int size;
+        synchronized (buffer) {
+            // 在缓冲区锁内检查，shutdown 最后一次提交缓冲区之后入队的消息不会滞留
+            if (!running) {
+                size = 0;
+            } else if (buffer.pending.size() >= config.getMaxPending()) {
+                size = -1;
+            } else {
+                if (buffer.pending.isEmpty()) {
+                    buffer.openedAt = System.nanoTime();
+                }
+                buffer.pending.add(compare);
+                size = buffer.pending.size();
+            }
+        }
+        if (size == 0) {
+            droppedCounter.increment();
+            log.debug("Kafka shadow batcher is stopped, dropped compare for key: {}", masterInputKey);
+            return false;
+        }
+        if (size < 0) {
+            droppedCounter.increment();
+            log.debug("Too many buffered messages for topic {}, dropped compare for key: {}", topic, masterInputKey);
+            return false;
+        }
+        if (size == config.getMaxBatchSize()) {
+            LockSupport.unpark(flusher); // 批量已满，不必等到时间窗口结束
+        }
+        return true;
+    }
+
+    // 首次入队时才启动后台线程，未开启批量比对的应用不会创建该线程
+    private synchronized void start() {
+        if (started.get()) {
+            return;
+        }
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        droppedCounter = Counter.builder("migration.kafka.batch.dropped")
+                .description("Kafka messages skipped because too many were buffered for comparison or the batcher was stopped")
+                .register(registry);
+        flushTimer = Timer.builder("migration.kafka.batch.flush")
+                .description("Latency of one batched Kafka compare-and-record exchange")
+                .register(registry);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "migration-kafka-batch");
+        flusher.setDaemon(true);
+        flusher.start();
+        started.set(true);
+        log.info("Kafka shadow batcher started, batch size: {}, window: {}ms",
+                properties.getKafkaBatch().getMaxBatchSize(), properties.getKafkaBatch().getWindowMillis());
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                long windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(properties.getKafkaBatch().getWindowMillis(), 1));
+                long nextDue = flushDue(false, windowNanos);
+                LockSupport.parkNanos(this, nextDue);
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in Kafka shadow batcher", e);
+            }
+        }
+    }
+
+    /**
+     * 提交已满或已超过时间窗口的缓冲区
+     *
+     * @param all 为 true 时提交全部缓冲区
+     * @return 距离下一个缓冲区到期的纳秒数
+     */
+    private long flushDue(boolean all, long windowNanos) {
+        int batchSize = Math.max(properties.getKafkaBatch().getMaxBatchSize(), 1);
+        long now = System.nanoTime();
+        long nextDue = windowNanos;
+        List<PendingCompare> due = new ArrayList<>();
+        for (TopicBuffer buffer : buffers.values()) {
+            synchronized (buffer) {
+                if (buffer.pending.isEmpty()) {
+                    continue;
+                }
+                long age = now - buffer.openedAt;
+                if (all || age >= windowNanos || buffer.pending.size() >= batchSize) {
+                    due.addAll(buffer.pending);
+                    buffer.pending.clear();
+                } else {
+                    nextDue = Math.min(nextDue, windowNanos - age);
+                }
+            }
+        }
+        if (!due.isEmpty()) {
+            compare(due, batchSize);
+        }
+        return nextDue;
+    }
+
+    private void compare(List<PendingCompare> due, int batchSize) {
+        // 不同 topic 的消息可共用一次往返，按 cacheName 分组后按批量大小切分
+        Map<String, List<PendingCompare>> byCache = new LinkedHashMap<>();
+        for (PendingCompare compare : due) {
+            byCache.computeIfAbsent(compare.cacheName, k -> new ArrayList<>()).add(compare);
+        }
+        for (Map.Entry<String, List<PendingCompare>> entry : byCache.entrySet()) {
+            List<PendingCompare> compares = entry.getValue();
+            for (int from = 0; from < compares.size(); from += batchSize) {
+                compareBatch(entry.getKey(), compares.subList(from, Math.min(from + batchSize, compares.size())));
+            }
+        }
+    }
+
+    private void compareBatch(String cacheName, List<PendingCompare> compares) {
+        List<CompareRequest> requests = new ArrayList<>(compares.size());
+        for (PendingCompare compare : compares) {
+            // master 检查 slave 输入与自身输入，slave 只检查 master 输入，与单条比对一致
+            requests.add(compare.master
+                    ? new CompareRequest(compare.slaveInputKey, compare.masterInputKey, compare.argsDigest, true)
+                    : new CompareRequest(compare.masterInputKey, compare.slaveInputKey, compare.argsDigest, false));
+        }
+        List<CompareResult> verdicts;
+        long start = System.nanoTime();
+        try {
+            verdicts = recordStore.compareAndRecordAll(cacheName, requests);
+        } catch (RuntimeException e) {
+            log.error("Failed to compare {} batched Kafka messages", compares.size(), e);
+            return;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        for (int i = 0; i < compares.size(); i++) {
+            PendingCompare compare = compares.get(i);
+            try {
+                executeSaveAspect.recordVerdict(compare.master, verdicts.get(i), compare.meters, cacheName,
+                        compare.masterInputKey, compare.slaveInputKey, compare.argsDigest);
+            } catch (RuntimeException e) {
+                log.error("Failed to record verdict for key: {}", compare.masterInputKey, e);
+            }
+        }
+    }
+
+    // 停止后台线程，并把缓冲区中剩余的消息比对完
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(1));
+        flushDue(true, 0);
+    }
+
+    private static final class TopicBuffer {
+        private final List<PendingCompare> pending = new ArrayList<>();
+        private long openedAt; // 当前批次第一条消息的入队时间
+    }
+
+    private static final class PendingCompare {
+        private final boolean master;
+        private final MigrationMeters meters;
+        private final String cacheName;
+        private final String masterInputKey;
+        private final String slaveInputKey;
+        private final String argsDigest;
+
+        private PendingCompare(boolean master, MigrationMeters meters, String cacheName,
+                               String masterInputKey, String slaveInputKey, String argsDigest) {
+            this.master = master;
+            this.meters = meters;
+            this.cacheName = cacheName;
+            this.masterInputKey = masterInputKey;
+            this.slaveInputKey = slaveInputKey;
+            this.argsDigest = argsDigest;
+        }
+    }
+}
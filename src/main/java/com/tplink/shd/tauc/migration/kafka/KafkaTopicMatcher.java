@@ -0,0 +1,153 @@
+package com.tplink.shd.tauc.migration.kafka;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 由 kafkaTopics 与 kafkaTopicSettings 编译出的不可变 topic 匹配器。
+ * 精确 topic 放入哈希表，含 * 的模式放入字符前缀树：末尾的 * 匹配任意后缀，其余位置的 * 匹配一个不含 . 的非空片段。
+ * 同时命中多个模式时，精确 topic 优先，其次是逐字符匹配更长的模式。
+ * 匹配过程不分配对象，耗时与 topic 长度成正比。
+ */
+public final class KafkaTopicMatcher {
+
+    public static final KafkaTopicMatcher EMPTY = new KafkaTopicMatcher(new HashMap<>(), new Node());
+
+    private final Map<String, KafkaTopicSettings> exact;
+    private final Node root;
+
+    private KafkaTopicMatcher(Map<String, KafkaTopicSettings> exact, Node root) {
+        this.exact = exact;
+        this.root = root;
+    }
+
+    /**
+     * @param topics   用逗号分隔的 topic 或模式，可为空
+     * @param settings 按 topic 或模式的单独配置，其中的 key 同样参与匹配
+     */
+    public static KafkaTopicMatcher compile(String topics, Map<String, ExecuteMigration.KafkaTopic> settings) {
+        Map<String, ExecuteMigration.KafkaTopic> patterns = new LinkedHashMap<>();
+        if (topics != null) {
+            for (String topic : topics.split(",")) {
+                String pattern = topic.trim();
+                if (!pattern.isEmpty()) {
+                    patterns.put(pattern, null);
+                }
+            }
+        }
+        if (settings != null) {
+            for (Map.Entry<String, ExecuteMigration.KafkaTopic> entry : settings.entrySet()) {
+                patterns.put(entry.getKey().trim(), entry.getValue());
+            }
+        }
+        if (patterns.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, KafkaTopicSettings> exact = new HashMap<>();
+        Node root = new Node();
+        for (Map.Entry<String, ExecuteMigration.KafkaTopic> entry : patterns.entrySet()) {
+            String pattern = entry.getKey();
+            ExecuteMigration.KafkaTopic config = entry.getValue();
+            KafkaTopicSettings topicSettings = config == null
+                    ? new KafkaTopicSettings(pattern, null, null, false)
+                    : new KafkaTopicSettings(pattern, config.getSamplingRate(), config.getRole(), config.isBatch());
+            if (pattern.indexOf('*') < 0) {
+                exact.put(pattern, topicSettings);
+            } else {
+                root.insert(pattern, topicSettings);
+            }
+        }
+        return new KafkaTopicMatcher(exact, root);
+    }
+
+    // 返回命中的配置，未命中时为 null
+    public KafkaTopicSettings match(String topic) {
+        KafkaTopicSettings settings = exact.get(topic);
+        if (settings != null) {
+            return settings;
+        }
+        return match(root, topic, 0);
+    }
+
+    private static KafkaTopicSettings match(Node node, String topic, int index) {
+        int length = topic.length();
+        if (index == length) {
+            return node.terminal != null ? node.terminal : node.prefix;
+        }
+        Node child = node.child(topic.charAt(index));
+        if (child != null) {
+            KafkaTopicSettings settings = match(child, topic, index + 1);
+            if (settings != null) {
+                return settings;
+            }
+        }
+        if (node.segment != null) {
+            int end = index;
+            while (end < length && topic.charAt(end) != '.') {
+                end++;
+            }
+            if (end > index) {
+                KafkaTopicSettings settings = match(node.segment, topic, end);
+                if (settings != null) {
+                    return settings;
+                }
+            }
+        }
+        return node.prefix;
+    }
+
+    /**
+     * 前缀树节点，子节点按字符线性查找，topic 名称的字符集很小，分支数通常只有个位数
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Node segment; // 中间的 * 之后的模式
+        private KafkaTopicSettings terminal; // 模式在此结束
+        private KafkaTopicSettings prefix; // 以 * 结尾的模式在此结束
+
+        Node child(char c) {
+            char[] k = keys;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void insert(String pattern, KafkaTopicSettings settings) {
+            Node node = this;
+            int last = pattern.length() - 1;
+            for (int i = 0; i <= last; i++) {
+                char c = pattern.charAt(i);
+                if (c == '*') {
+                    if (i == last) {
+                        node.prefix = settings;
+                        return;
+                    }
+                    if (node.segment == null) {
+                        node.segment = new Node();
+                    }
+                    node = node.segment;
+                } else {
+                    Node next = node.child(c);
+                    if (next == null) {
+                        next = new Node();
+                        node.keys = Arrays.copyOf(node.keys, node.keys.length + 1);
+                        node.children = Arrays.copyOf(node.children, node.children.length + 1);
+                        node.keys[node.keys.length - 1] = c;
+                        node.children[node.children.length - 1] = next;
+                    }
+                    node = next;
+                }
+            }
+            node.terminal = settings;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.tplink.shd.tauc.migration.kafka;
+
+/**
+ * 单个 topic 或 topic 模式的配置，由 KafkaTopicMatcher 在编译时生成，不可变
+ */
+public final class KafkaTopicSettings {
+
+    private final String pattern;
+    private final Double samplingRate; // 为 null 时使用全局抽样比例
+    private final String role; // 为 null 时 master 与 slave 都参与比对
+    private final boolean batch; // 是否由 KafkaShadowBatcher 批量比对
+
+    KafkaTopicSettings(String pattern, Double samplingRate, String role, boolean batch) {
+        this.pattern = pattern;
+        this.samplingRate = samplingRate;
+        this.role = role == null || role.isEmpty() ? null : role;
+        this.batch = batch;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public double samplingRate(double defaultRate) {
+        return samplingRate == null ? defaultRate : samplingRate;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    // 当前角色是否对该 topic 做比对
+    public boolean isEnabledFor(String currentRole) {
+        return role == null || role.equalsIgnoreCase(currentRole);
+    }
+}
@@ -0,0 +1,156 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteCheck;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import com.tplink.shd.tauc.migration.annotation.RecordedElements;
+import com.tplink.shd.tauc.migration.digest.ArgsDigester;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 默认的重放方式：按 类名:方法名 找到 slave 构建中标注了 ExecuteCheck 的 Bean 方法，以记录的参数重新调用。
+ * 调用经过 Bean 的代理，execute-migration.kafka 开启时 ReplayEngine 拒绝重放，ExecuteCheckAspect 直接执行业务逻辑。
+ * 异步返回类型阻塞等待结果，多值结果按相同上限收集为 List，与 master 的记录一致。
+ */
+@Slf4j
+@Component
+public class MethodInvokingReplayHandler implements ReplayHandler, ApplicationContextAware {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    private ApplicationContext applicationContext;
+
+    private volatile Map<String, List<Target>> targets; // 类名:方法名 到同名方法的列表，首次重放时扫描
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public ReplayResult replay(RecordedCall call, Object[] args) throws Throwable {
+        if (args == null) {
+            return null; // 记录时未保存参数，无法重新调用
+        }
+        Target target = resolve(call.getMethodKey(), args);
+        if (target == null) {
+            return null;
+        }
+        String inputDigest = ArgsDigester.detailed(args); // 先于调用计算，与 master 一致
+        Object output;
+        try {
+            output = target.method.invoke(target.bean, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        ReactiveAdapter adapter = target.descriptor.getReactiveAdapter();
+        if (adapter != null && output != null) {
+            output = adapter.isMultiValue()
+                    ? Flux.from(adapter.toPublisher(output))
+                            .collect(() -> new RecordedElements(properties.getMaxRecordedElements()), RecordedElements::accept)
+                            .map(RecordedElements::toList).block()
+                    : Mono.from(adapter.toPublisher(output)).block();
+        }
+        return ReplayResult.of(inputDigest, output);
+    }
+
+    // 同名重载方法按参数个数与类型选择
+    private Target resolve(String methodKey, Object[] args) {
+        List<Target> candidates = targets().get(methodKey);
+        if (candidates == null) {
+            return null;
+        }
+        for (Target candidate : candidates) {
+            Class<?>[] parameterTypes = candidate.method.getParameterTypes();
+            if (parameterTypes.length != args.length) {
+                continue;
+            }
+            boolean assignable = true;
+            for (int i = 0; i < args.length && assignable; i++) {
+                assignable = ClassUtils.isAssignableValue(parameterTypes[i], args[i]);
+            }
+            if (assignable) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, List<Target>> targets() {
+        Map<String, List<Target>> resolved = targets;
+        if (resolved == null) {
+            synchronized (this) {
+                resolved = targets;
+                if (resolved == null) {
+                    resolved = scan();
+                    targets = resolved;
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private Map<String, List<Target>> scan() {
+        Map<String, List<Target>> found = new HashMap<>();
+        for (String name : applicationContext.getBeanNamesForType(Object.class, false, false)) {
+            Object bean;
+            try {
+                bean = applicationContext.getBean(name);
+            } catch (BeansException e) {
+                log.debug("Skipped bean {} while scanning ExecuteCheck methods", name, e);
+                continue;
+            }
+            Class<?> targetClass = AopUtils.getTargetClass(bean);
+            ReflectionUtils.doWithMethods(targetClass, method -> {
+                Method invocable = AopUtils.selectInvocableMethod(method, bean.getClass());
+                ReflectionUtils.makeAccessible(invocable);
+                add(found, MigrationMethodDescriptor.of(method), bean, invocable);
+                // JDK 代理时切面看到的是接口方法，记录中的方法键使用接口名
+                for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(targetClass)) {
+                    Method declared = ReflectionUtils.findMethod(type, method.getName(), method.getParameterTypes());
+                    if (declared != null) {
+                        add(found, MigrationMethodDescriptor.of(declared), bean, invocable);
+                    }
+                }
+            }, method -> AnnotatedElementUtils.hasAnnotation(method, ExecuteCheck.class));
+        }
+        log.info("Found {} ExecuteCheck method keys for replay", found.size());
+        return found;
+    }
+
+    private static void add(Map<String, List<Target>> found, MigrationMethodDescriptor descriptor, Object bean, Method method) {
+        found.computeIfAbsent(descriptor.getMethodKey(), key -> new ArrayList<>()).add(new Target(bean, method, descriptor));
+    }
+
+    private static final class Target {
+        private final Object bean; // 经过代理的 Bean
+        private final Method method;
+        private final MigrationMethodDescriptor descriptor;
+
+        private Target(Object bean, Method method, MigrationMethodDescriptor descriptor) {
+            this.bean = bean;
+            this.method = method;
+            this.descriptor = descriptor;
+        }
+    }
+}
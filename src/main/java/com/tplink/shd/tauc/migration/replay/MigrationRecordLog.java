@@ -0,0 +1,352 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.codec.MigrationCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * ExecuteCheck master 的本地记录日志。
+ * 每次调用以 (uuid, 类名:方法名, 参数, InOut 帧) 追加到内存映射的分段文件，写入只是一次内存拷贝，不访问Redis；
+ * 分段由后台线程提前创建并按大小写满 0 预先分配磁盘空间，磁盘已满时在创建分段时失败，不会在业务线程写映射时出错；
+ * 第一个分段在启动时开始创建，业务线程从不等待分段就绪，就绪前的记录丢弃并计数。
+ * 分段文件名包含创建时间与实例标识，多个进程共用目录时互不冲突；写入中的分段持有文件锁，清理旧分段时跳过其他进程正在写的分段。
+ * 数据在进程退出或崩溃后仍由操作系统写回文件，写满的分段与关闭时的分段强制刷盘；日志由 ReplayEngine 离线交给 slave 构建重放比对。
+ */
+@Slf4j
+@Component
+public class MigrationRecordLog {
+
+    private static final long RETRY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1); // 分段创建失败后的重试间隔
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(1 << 20).asReadOnlyBuffer();
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private MigrationCodec codec;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private Path directory;
+    private String instanceId;
+    private long segmentBytes;
+    private long segmentIndex; // 只在后台线程中递增
+    private ExecutorService preparer; // 创建下一个分段、刷盘并关闭写满的分段
+    private Segment current; // 当前写入的分段，不可用时为 null
+    private Future<Segment> next; // 提前创建的下一个分段
+    private long retryAtNanos;
+    private boolean closed;
+    private Counter appendedCounter;
+    private Counter droppedCounter;
+
+    public boolean isEnabled() {
+        return properties.getRecordLog().isEnabled();
+    }
+
+    // 记录模式下 master 不再通过Redis与slave交换
+    public boolean isExclusive() {
+        ExecuteMigration.RecordLog config = properties.getRecordLog();
+        return config.isEnabled() && !config.isRedisExchange();
+    }
+
+    // 开启时在启动阶段由后台线程创建第一个分段，避免首个业务请求等待预分配与刷盘
+    @PostConstruct
+    public void init() {
+        if (isEnabled()) {
+            start();
+        }
+    }
+
+    /**
+     * 在执行原方法前调用，参数此时编码，业务逻辑修改参数后记录仍与输入摘要一致
+     */
+    public Pending begin(String uuid, String methodKey, Object[] args) {
+        if (!started.get()) {
+            start();
+        }
+        byte[] encodedArgs = null;
+        if (properties.getRecordLog().isRecordArgs()) {
+            try {
+                encodedArgs = codec.encode(Arrays.asList(args));
+            } catch (RuntimeException e) {
+                log.debug("Failed to encode args for {} uuid: {}, recording without args", methodKey, uuid, e);
+            }
+        }
+        return new Pending(uuid, methodKey, encodedArgs);
+    }
+
+    /**
+     * 追加一条记录，分段不可用或记录超过分段大小时丢弃并计数；不抛出异常，记录失败不影响业务结果
+     */
+    public void append(Pending pending, byte[] inOutFrame) {
+        byte[] payload = RecordLogFormat.payload(System.currentTimeMillis(), pending.uuid, pending.methodKey,
+                pending.args, inOutFrame);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        int size = RecordLogFormat.RECORD_HEADER_BYTES + payload.length;
+        synchronized (this) {
+            if (closed) {
+                droppedCounter.increment();
+                return;
+            }
+            if (current != null && current.buffer.remaining() < size) {
+                retire(current); // 写满的分段交给后台线程刷盘
+                current = null;
+            }
+            if (current == null) {
+                activate();
+            }
+            if (current == null || current.buffer.remaining() < size) {
+                droppedCounter.increment();
+                return;
+            }
+            try {
+                current.buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            } catch (InternalError e) {
+                // 映射的页面无法写回（如文件被截断），放弃该分段，之后的记录写入新的分段
+                log.error("Failed to write migration record log segment {}", current.path.getFileName(), e);
+                retire(current);
+                current = null;
+                droppedCounter.increment();
+                return;
+            }
+        }
+        appendedCounter.increment();
+    }
+
+    // 启动时或运行中开启后首次记录时开始创建分段，之前进程留下的分段保留，新记录总是写入新的分段
+    private synchronized void start() {
+        if (started.get()) {
+            return;
+        }
+        ExecuteMigration.RecordLog config = properties.getRecordLog();
+        directory = Paths.get(config.getDirectory());
+        instanceId = instanceId();
+        segmentBytes = Math.max((long) config.getSegmentSizeMb(), 1L) << 20;
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        appendedCounter = Counter.builder("migration.record.log.appended")
+                .description("ExecuteCheck master calls appended to the local record log")
+                .register(registry);
+        droppedCounter = Counter.builder("migration.record.log.dropped")
+                .description("ExecuteCheck master calls that could not be appended to the local record log")
+                .register(registry);
+        preparer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "migration-record-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        next = preparer.submit(this::prepare); // 不等待完成，失败时在 activate 中记录并按间隔重试
+        started.set(true);
+        log.info("Migration record log started, directory: {}, instance: {}, segment size: {}MB",
+                directory.toAbsolutePath(), instanceId, config.getSegmentSizeMb());
+    }
+
+    // 调用方持有锁；下一个分段已就绪时切换过去并提前创建再下一个，创建失败后按间隔重试，未就绪时本条记录丢弃
+    private void activate() {
+        if (next == null) {
+            if (System.nanoTime() - retryAtNanos < 0) {
+                return;
+            }
+            next = preparer.submit(this::prepare);
+        }
+        if (!next.isDone()) {
+            return;
+        }
+        try {
+            current = next.get();
+        } catch (ExecutionException e) {
+            log.error("Failed to create migration record log segment in {}, records will be dropped until it succeeds",
+                    directory, e.getCause());
+            retryAtNanos = System.nanoTime() + RETRY_INTERVAL_NANOS;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        next = current != null ? preparer.submit(this::prepare) : null;
+    }
+
+    // 在后台线程中执行：创建目录与分段、写满 0 预分配磁盘空间、加锁、映射并写入分段头，然后清理超出数量的旧分段
+    private Segment prepare() throws IOException {
+        segmentIndex++;
+        Files.createDirectories(directory); // 目录不存在或运行中被删除时重新创建
+        Path path = directory.resolve(RecordLogFormat.segmentName(System.currentTimeMillis(), instanceId, segmentIndex));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            for (long position = 0; position < segmentBytes; ) {
+                ByteBuffer zeros = ZEROS.duplicate();
+                zeros.limit((int) Math.min(zeros.capacity(), segmentBytes - position));
+                position += channel.write(zeros, position);
+            }
+            channel.force(false);
+            FileLock lock = channel.lock();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.putInt(RecordLogFormat.MAGIC).putInt(RecordLogFormat.VERSION);
+            Segment segment = new Segment(path, channel, lock, buffer);
+            deleteOldSegments(path);
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    // 除刚创建、尚未写入的分段外保留最新的 maxSegments 个分段，正在写入的分段（本进程或其他进程持有文件锁）不删除
+    private void deleteOldSegments(Path created) {
+        int maxSegments = properties.getRecordLog().getMaxSegments();
+        if (maxSegments <= 0) {
+            return;
+        }
+        try {
+            List<Path> segments = new ArrayList<>(RecordLogReader.segments(directory));
+            segments.remove(created);
+            for (int i = 0; i < segments.size() - maxSegments; i++) {
+                Path oldest = segments.get(i);
+                if (deleteUnlocked(oldest)) {
+                    log.info("Deleted migration record log segment {}", oldest.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete old migration record log segments in {}", directory, e);
+        }
+    }
+
+    private static boolean deleteUnlocked(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return false; // 其他进程正在写入
+            }
+            Files.delete(path);
+            return true;
+        } catch (OverlappingFileLockException e) {
+            return false; // 本进程正在写入
+        }
+    }
+
+    // 调用方持有锁；业务线程不再访问该分段后，由后台线程刷盘、解除映射并释放文件锁，删除旧分段时磁盘空间立即回收
+    private void retire(Segment segment) {
+        preparer.execute(() -> close(segment));
+    }
+
+    private static void close(Segment segment) {
+        try {
+            segment.buffer.force();
+        } catch (RuntimeException | InternalError e) {
+            log.warn("Failed to flush migration record log segment {}", segment.path.getFileName(), e);
+        }
+        RecordLogFormat.unmap(segment.buffer);
+        try {
+            segment.lock.release();
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close migration record log segment {}", segment.path.getFileName(), e);
+        }
+    }
+
+    // 主机名与进程号，只保留文件名中安全的字符
+    private static String instanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        return (host + "-" + ProcessHandle.current().pid()).replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    // 刷盘并关闭当前分段，删除提前创建但未写入的分段
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        Future<Segment> unused;
+        synchronized (this) {
+            if (preparer == null || closed) {
+                return;
+            }
+            closed = true;
+            if (current != null) {
+                retire(current);
+                current = null;
+            }
+            unused = next;
+            next = null;
+        }
+        if (unused != null) {
+            preparer.execute(() -> {
+                try {
+                    Segment segment = unused.get();
+                    close(segment);
+                    Files.deleteIfExists(segment.path);
+                } catch (ExecutionException | InterruptedException | IOException e) {
+                    log.debug("Failed to delete unused migration record log segment", e);
+                }
+            });
+        }
+        preparer.shutdown();
+        if (!preparer.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Migration record log segments were not flushed in time");
+        }
+    }
+
+    /**
+     * 已编码参数、等待输出的记录
+     */
+    public static final class Pending {
+        private final String uuid;
+        private final String methodKey;
+        private final byte[] args;
+
+        private Pending(String uuid, String methodKey, byte[] args) {
+            this.uuid = uuid;
+            this.methodKey = methodKey;
+            this.args = args;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel; // 保持打开以持有文件锁
+        private final FileLock lock;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, FileChannel channel, FileLock lock, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.lock = lock;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * 记录日志的分段格式。
+ * 分段文件：[魔数 int][版本 int][记录]...，文件按固定大小创建，未写入的部分为 0。
+ * 记录：[负载长度 int][负载 CRC32C int][负载]，负载长度为 0 表示分段结束。
+ * 负载：[时间戳 long][uuid][类名:方法名][参数][InOut 帧]，后四项均为 varint 长度加字节，参数长度为 0 表示未记录。
+ */
+final class RecordLogFormat {
+
+    static final int MAGIC = 0x4D524C47; // "MRLG"
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 8;
+
+    // segment-[创建时间毫秒]-[实例标识]-[实例内序号].log，按文件名排序即按创建时间排序
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-\\d{13}-[A-Za-z0-9_.-]+-\\d{6,}\\.log");
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private RecordLogFormat() {
+    }
+
+    static String segmentName(long createdMillis, String instanceId, long index) {
+        return String.format("segment-%013d-%s-%06d.log", createdMillis, instanceId, index);
+    }
+
+    static boolean isSegment(String fileName) {
+        return SEGMENT_NAME.matcher(fileName).matches();
+    }
+
+    // 立即解除映射，之后不能再访问该缓冲区；不支持时等待 GC 回收
+    static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            // 保留映射，由 GC 回收
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static byte[] payload(long timestampMillis, String uuid, String methodKey, byte[] args, byte[] inOutFrame) {
+        byte[] uuidBytes = uuid.getBytes(StandardCharsets.UTF_8);
+        byte[] methodBytes = methodKey.getBytes(StandardCharsets.UTF_8);
+        byte[] argsBytes = args == null ? new byte[0] : args;
+        ByteBuffer payload = ByteBuffer.allocate(Long.BYTES + sizeOf(uuidBytes) + sizeOf(methodBytes)
+                + sizeOf(argsBytes) + sizeOf(inOutFrame));
+        payload.putLong(timestampMillis);
+        putBytes(payload, uuidBytes);
+        putBytes(payload, methodBytes);
+        putBytes(payload, argsBytes);
+        putBytes(payload, inOutFrame);
+        return payload.array();
+    }
+
+    static RecordedCall parse(ByteBuffer payload) {
+        long timestampMillis = payload.getLong();
+        String uuid = new String(getBytes(payload), StandardCharsets.UTF_8);
+        String methodKey = new String(getBytes(payload), StandardCharsets.UTF_8);
+        byte[] args = getBytes(payload);
+        byte[] inOutFrame = getBytes(payload);
+        return new RecordedCall(timestampMillis, uuid, methodKey, args.length == 0 ? null : args, inOutFrame);
+    }
+
+    // varint 长度加字节的总长度
+    private static int sizeOf(byte[] bytes) {
+        int size = 1;
+        for (int value = bytes.length >>> 7; value != 0; value >>>= 7) {
+            size++;
+        }
+        return size + bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        int value = bytes.length;
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        buffer.put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+            if (shift > 28) {
+                throw new IllegalStateException("Malformed length in record payload");
+            }
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,98 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 顺序读取记录日志。
+ * 分段以只读方式映射，读到长度为 0 的记录头时该分段结束；
+ * 校验和不一致的记录（进程崩溃时未写完）及其后的内容被跳过。
+ */
+@Slf4j
+public final class RecordLogReader {
+
+    private RecordLogReader() {
+    }
+
+    // 目录中的分段，按创建时间从旧到新
+    public static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> RecordLogFormat.isSegment(path.getFileName().toString()))
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 依次读取目录中所有分段的记录
+     *
+     * @return 读取的记录数
+     */
+    public static long read(Path directory, Consumer<RecordedCall> consumer) throws IOException {
+        long count = 0;
+        for (Path segment : segments(directory)) {
+            count += readSegment(segment, consumer);
+        }
+        return count;
+    }
+
+    public static long readSegment(Path segment, Consumer<RecordedCall> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < RecordLogFormat.SEGMENT_HEADER_BYTES
+                || buffer.getInt() != RecordLogFormat.MAGIC || buffer.getInt() != RecordLogFormat.VERSION) {
+            log.warn("Skipped {}, not a migration record log segment", segment.getFileName());
+            RecordLogFormat.unmap(buffer);
+            return 0;
+        }
+        try {
+            return readRecords(segment, buffer, consumer);
+        } finally {
+            RecordLogFormat.unmap(buffer); // 记录已复制出缓冲区
+        }
+    }
+
+    private static long readRecords(Path segment, MappedByteBuffer buffer, Consumer<RecordedCall> consumer) {
+        long count = 0;
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= RecordLogFormat.RECORD_HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length == 0) {
+                break; // 分段结束
+            }
+            if (length < 0 || length > buffer.remaining()) {
+                log.warn("Corrupted record at offset {} of {}, skipped the rest of the segment",
+                        buffer.position() - RecordLogFormat.RECORD_HEADER_BYTES, segment.getFileName());
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Checksum mismatch at offset {} of {}, skipped the rest of the segment",
+                        buffer.position() - RecordLogFormat.RECORD_HEADER_BYTES, segment.getFileName());
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            consumer.accept(RecordLogFormat.parse(payload));
+            count++;
+        }
+        return count;
+    }
+}
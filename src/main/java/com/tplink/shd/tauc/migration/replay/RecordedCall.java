@@ -0,0 +1,51 @@
+package com.tplink.shd.tauc.migration.replay;
+
+/**
+ * 记录日志中的一次 ExecuteCheck master 调用，InOut 帧与 Redis 中保存的格式相同
+ */
+public final class RecordedCall {
+
+    private final long timestampMillis;
+    private final String uuid;
+    private final String methodKey; // 类名:方法名
+    private final byte[] args; // MigrationCodec 编码的参数列表，未开启 recordArgs 时为 null
+    private final byte[] inOutFrame; // InOutCodec 编码的输入摘要与输出
+
+    RecordedCall(long timestampMillis, String uuid, String methodKey, byte[] args, byte[] inOutFrame) {
+        this.timestampMillis = timestampMillis;
+        this.uuid = uuid;
+        this.methodKey = methodKey;
+        this.args = args;
+        this.inOutFrame = inOutFrame;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getMethodKey() {
+        return methodKey;
+    }
+
+    public byte[] getArgs() {
+        return args;
+    }
+
+    public byte[] getInOutFrame() {
+        return inOutFrame;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedCall{" +
+                "uuid='" + uuid + '\'' +
+                ", methodKey='" + methodKey + '\'' +
+                ", argsBytes=" + (args == null ? 0 : args.length) +
+                ", inOutBytes=" + inOutFrame.length +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.codec.InOut;
+import com.tplink.shd.tauc.migration.codec.InOutCodec;
+import com.tplink.shd.tauc.migration.codec.MigrationCodec;
+import com.tplink.shd.tauc.migration.diff.Difference;
+import com.tplink.shd.tauc.migration.diff.StructuralDiff;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 离线重放记录日志，在 slave 构建中使用，需关闭 execute-migration.kafka。
+ * 读取线程顺序读取分段，记录交给固定数量的工作线程并发重放，队列满时由读取线程自己重放，不会无限堆积；
+ * 每条记录先比对输入摘要，一致时按 outputDiff 的忽略路径逐字段比对输出，结果汇总为 ReplayReport。
+ */
+@Slf4j
+@Component
+public class ReplayEngine {
+
+    private static final int QUEUE_PER_THREAD = 64;
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private InOutCodec inOutCodec;
+
+    @Autowired
+    private MigrationCodec codec;
+
+    @Autowired
+    private ObjectProvider<ObjectMapper> objectMapper;
+
+    @Autowired
+    private MethodInvokingReplayHandler methodInvokingHandler;
+
+    // 以记录的参数重新调用 slave 构建中的 ExecuteCheck 方法
+    public ReplayReport replay(Path directory) throws IOException, InterruptedException {
+        return replay(directory, methodInvokingHandler);
+    }
+
+    public ReplayReport replay(Path directory, ReplayHandler handler) throws IOException, InterruptedException {
+        if (properties.isKafka()) {
+            // 重放经过 Bean 的代理，开启时重放调用会再次进入 ExecuteCheckAspect，读写Redis或追加记录日志
+            throw new IllegalStateException("execute-migration.kafka must be off when replaying the migration record log");
+        }
+        ExecuteMigration.RecordLog config = properties.getRecordLog();
+        int threads = config.getReplayThreads() > 0 ? config.getReplayThreads() : Runtime.getRuntime().availableProcessors();
+        ObjectMapper mapper = objectMapper.getIfAvailable(ObjectMapper::new);
+        ConcurrentHashMap<String, StructuralDiff> differs = new ConcurrentHashMap<>();
+        ReplayReport report = new ReplayReport(config.getMaxReportedMismatches());
+
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD),
+                task -> {
+                    Thread thread = new Thread(task, "migration-replay-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        log.info("Replaying migration record log in {} with {} threads", directory.toAbsolutePath(), threads);
+        long start = System.nanoTime();
+        try {
+            RecordLogReader.read(directory, call -> executor.execute(() -> replay(call, handler, mapper, differs, report)));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        report.finish(System.nanoTime() - start);
+        log.info("Replayed {} records in {}ms: matched {}, mismatched {}, failed {}, skipped {}", report.getReplayed(),
+                report.getElapsedMillis(), report.getMatched(), report.getMismatched(), report.getFailed(), report.getSkipped());
+        return report;
+    }
+
+    private void replay(RecordedCall call, ReplayHandler handler, ObjectMapper mapper,
+                        ConcurrentHashMap<String, StructuralDiff> differs, ReplayReport report) {
+        try {
+            InOut master = inOutCodec.decode(call.getInOutFrame());
+            Object[] args = call.getArgs() == null ? null : ((List<?>) codec.decode(call.getArgs())).toArray();
+            ReplayResult result = handler.replay(call, args);
+            if (result == null) {
+                report.skip(call);
+                return;
+            }
+            if (result.getInputDigest() != null && !result.getInputDigest().equals(master.getInput())) {
+                report.inputMismatch(call, master.getInput(), result.getInputDigest());
+                return;
+            }
+            List<Difference> differences = differ(differs, call.getMethodKey())
+                    .diff(mapper.valueToTree(master.getOutput()), mapper.valueToTree(result.getOutput()));
+            if (differences.isEmpty()) {
+                report.match(call);
+            } else {
+                report.outputMismatch(call, differences);
+            }
+        } catch (Throwable e) {
+            log.debug("Failed to replay {} uuid: {}", call.getMethodKey(), call.getUuid(), e);
+            report.error(call, e);
+        }
+    }
+
+    // 与 OutputDiffPool 相同，全局忽略路径加上该方法追加的忽略路径
+    private StructuralDiff differ(ConcurrentHashMap<String, StructuralDiff> differs, String methodKey) {
+        StructuralDiff differ = differs.get(methodKey);
+        if (differ == null) {
+            differ = differs.computeIfAbsent(methodKey, key -> {
+                ExecuteMigration.OutputDiff config = properties.getOutputDiff();
+                Set<String> paths = new LinkedHashSet<>(config.getIgnorePaths());
+                paths.addAll(config.getMethodIgnorePaths().getOrDefault(key, Set.of()));
+                return StructuralDiff.compile(paths, config.getMaxDifferences());
+            });
+        }
+        return differ;
+    }
+}
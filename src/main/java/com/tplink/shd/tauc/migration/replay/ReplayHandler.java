@@ -0,0 +1,14 @@
+package com.tplink.shd.tauc.migration.replay;
+
+/**
+ * 在 slave 构建上重放一条记录，由 ReplayEngine 的工作线程并发调用
+ */
+@FunctionalInterface
+public interface ReplayHandler {
+
+    /**
+     * @param args 解码后的方法参数，记录时未开启 recordArgs 时为 null
+     * @return slave 的输入摘要与输出，返回 null 表示该记录无法重放，计为跳过
+     */
+    ReplayResult replay(RecordedCall call, Object[] args) throws Throwable;
+}
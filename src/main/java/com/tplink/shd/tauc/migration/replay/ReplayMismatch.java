@@ -0,0 +1,56 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import com.tplink.shd.tauc.migration.diff.Difference;
+
+import java.util.List;
+
+/**
+ * 重放报告中的一条不一致或失败的记录
+ */
+public final class ReplayMismatch {
+
+    private final String uuid;
+    private final String methodKey;
+    private final Kind kind;
+    private final String detail; // INPUT 时为两端摘要，ERROR 时为异常信息
+    private final List<Difference> differences; // OUTPUT 时的字段级差异，其余情况为空
+
+    ReplayMismatch(String uuid, String methodKey, Kind kind, String detail, List<Difference> differences) {
+        this.uuid = uuid;
+        this.methodKey = methodKey;
+        this.kind = kind;
+        this.detail = detail;
+        this.differences = differences;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getMethodKey() {
+        return methodKey;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public List<Difference> getDifferences() {
+        return differences;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + methodKey + " uuid: " + uuid + ", " + (kind == Kind.OUTPUT ? differences : detail);
+    }
+
+    public enum Kind {
+        INPUT,  // slave 的输入摘要与 master 不一致
+        OUTPUT, // 输入一致但输出存在差异
+        ERROR   // 解码记录或 slave 执行失败
+    }
+}
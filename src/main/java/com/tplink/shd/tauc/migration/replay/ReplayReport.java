@@ -0,0 +1,176 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import com.tplink.shd.tauc.migration.diff.Difference;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * 一次重放的结果汇总，工作线程并发写入。
+ * 按方法统计各类结果，不一致的记录最多保留 maxMismatches 条明细。
+ */
+public final class ReplayReport {
+
+    private final int maxMismatches;
+    private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<ReplayMismatch> mismatches = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger reported = new AtomicInteger();
+
+    private volatile long elapsedNanos;
+
+    ReplayReport(int maxMismatches) {
+        this.maxMismatches = maxMismatches;
+    }
+
+    void match(RecordedCall call) {
+        stats(call).matched.increment();
+    }
+
+    void skip(RecordedCall call) {
+        stats(call).skipped.increment();
+    }
+
+    void inputMismatch(RecordedCall call, String masterDigest, String slaveDigest) {
+        stats(call).inputMismatched.increment();
+        report(new ReplayMismatch(call.getUuid(), call.getMethodKey(), ReplayMismatch.Kind.INPUT,
+                "master: " + masterDigest + ", slave: " + slaveDigest, Collections.emptyList()));
+    }
+
+    void outputMismatch(RecordedCall call, List<Difference> differences) {
+        stats(call).outputMismatched.increment();
+        report(new ReplayMismatch(call.getUuid(), call.getMethodKey(), ReplayMismatch.Kind.OUTPUT, null, differences));
+    }
+
+    void error(RecordedCall call, Throwable e) {
+        stats(call).failed.increment();
+        report(new ReplayMismatch(call.getUuid(), call.getMethodKey(), ReplayMismatch.Kind.ERROR,
+                String.valueOf(e), Collections.emptyList()));
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getReplayed() {
+        return sum(MethodStats::getReplayed);
+    }
+
+    public long getMatched() {
+        return sum(MethodStats::getMatched);
+    }
+
+    public long getMismatched() {
+        return sum(stats -> stats.getInputMismatched() + stats.getOutputMismatched());
+    }
+
+    public long getFailed() {
+        return sum(MethodStats::getFailed);
+    }
+
+    public long getSkipped() {
+        return sum(MethodStats::getSkipped);
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    // 按 类名:方法名 排序的统计
+    public Map<String, MethodStats> getMethods() {
+        return new TreeMap<>(methods);
+    }
+
+    // 保留的不一致明细，超过 maxMismatches 的部分只计入统计
+    public List<ReplayMismatch> getMismatches() {
+        return new ArrayList<>(mismatches);
+    }
+
+    // 输出可读的报告：汇总、按方法统计、不一致明细
+    public void writeTo(Appendable out) throws IOException {
+        long replayed = getReplayed();
+        long elapsedMillis = getElapsedMillis();
+        out.append(String.format("Replayed %d records in %dms (%.0f/s): matched %d, mismatched %d, failed %d, skipped %d%n",
+                replayed, elapsedMillis, elapsedMillis == 0 ? 0.0 : replayed * 1000.0 / elapsedMillis,
+                getMatched(), getMismatched(), getFailed(), getSkipped()));
+        for (Map.Entry<String, MethodStats> entry : getMethods().entrySet()) {
+            MethodStats stats = entry.getValue();
+            out.append(String.format("  %s: replayed %d, matched %d, input mismatched %d, output mismatched %d, failed %d, skipped %d%n",
+                    entry.getKey(), stats.getReplayed(), stats.getMatched(), stats.getInputMismatched(),
+                    stats.getOutputMismatched(), stats.getFailed(), stats.getSkipped()));
+        }
+        for (ReplayMismatch mismatch : mismatches) {
+            out.append(mismatch.toString()).append(System.lineSeparator());
+        }
+        long omitted = getMismatched() + getFailed() - mismatches.size();
+        if (omitted > 0) {
+            out.append(String.format("... %d more mismatches not listed%n", omitted));
+        }
+    }
+
+    private void report(ReplayMismatch mismatch) {
+        if (reported.incrementAndGet() <= maxMismatches) {
+            mismatches.add(mismatch);
+        }
+    }
+
+    private MethodStats stats(RecordedCall call) {
+        MethodStats stats = methods.get(call.getMethodKey());
+        if (stats == null) {
+            stats = methods.computeIfAbsent(call.getMethodKey(), key -> new MethodStats());
+        }
+        return stats;
+    }
+
+    private long sum(ToLongFunction<MethodStats> field) {
+        long total = 0;
+        for (MethodStats stats : methods.values()) {
+            total += field.applyAsLong(stats);
+        }
+        return total;
+    }
+
+    /**
+     * 单个方法的重放统计
+     */
+    public static final class MethodStats {
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder inputMismatched = new LongAdder();
+        private final LongAdder outputMismatched = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+
+        public long getReplayed() {
+            return getMatched() + getInputMismatched() + getOutputMismatched() + getFailed() + getSkipped();
+        }
+
+        public long getMatched() {
+            return matched.sum();
+        }
+
+        public long getInputMismatched() {
+            return inputMismatched.sum();
+        }
+
+        public long getOutputMismatched() {
+            return outputMismatched.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getSkipped() {
+            return skipped.sum();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.tplink.shd.tauc.migration.replay;
+
+/**
+ * slave 重放一条记录的结果
+ */
+public final class ReplayResult {
+
+    private final String inputDigest; // slave 计算的输入摘要，为 null 时不比对输入
+    private final Object output; // 多值的异步结果以 List 表示，与 master 的记录一致
+
+    private ReplayResult(String inputDigest, Object output) {
+        this.inputDigest = inputDigest;
+        this.output = output;
+    }
+
+    public static ReplayResult of(String inputDigest, Object output) {
+        return new ReplayResult(inputDigest, output);
+    }
+
+    public String getInputDigest() {
+        return inputDigest;
+    }
+
+    public Object getOutput() {
+        return output;
+    }
+}
@@ -0,0 +1,73 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录迁移 cacheName 上每次 CacheService 操作的耗时与异常，供 MigrationCircuitBreaker 判断是否熔断；
+ * 其他 cacheName 的操作直接转发，不计入。
+ */
+public class CircuitBreakerCacheService implements CacheService {
+
+    private final CacheService delegate;
+    private final ExecuteMigration properties;
+    private final MigrationCircuitBreaker circuitBreaker;
+
+    public CircuitBreakerCacheService(CacheService delegate, ExecuteMigration properties, MigrationCircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public CacheService getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> T get(String cacheName, String key, Class<T> clazz) {
+        if (!isMigrationCache(cacheName)) {
+            return delegate.get(cacheName, key, clazz);
+        }
+        return circuitBreaker.execute(() -> delegate.get(cacheName, key, clazz));
+    }
+
+    @Override
+    public <T> Map<String, T> multiGet(String cacheName, Collection<String> keys, Class<T> clazz) {
+        if (!isMigrationCache(cacheName)) {
+            return delegate.multiGet(cacheName, keys, clazz);
+        }
+        return circuitBreaker.execute(() -> delegate.multiGet(cacheName, keys, clazz));
+    }
+
+    @Override
+    public void set(String cacheName, String key, Object value, long timeout, TimeUnit unit) {
+        if (!isMigrationCache(cacheName)) {
+            delegate.set(cacheName, key, value, timeout, unit);
+            return;
+        }
+        circuitBreaker.execute(() -> {
+            delegate.set(cacheName, key, value, timeout, unit);
+            return null;
+        });
+    }
+
+    @Override
+    public void multiSet(String cacheName, Map<String, ?> entries, long timeout, TimeUnit unit) {
+        if (!isMigrationCache(cacheName)) {
+            delegate.multiSet(cacheName, entries, timeout, unit);
+            return;
+        }
+        circuitBreaker.execute(() -> {
+            delegate.multiSet(cacheName, entries, timeout, unit);
+            return null;
+        });
+    }
+
+    private boolean isMigrationCache(String cacheName) {
+        return cacheName != null && cacheName.equals(properties.getCacheName());
+    }
+}
@@ -0,0 +1,54 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * 开启 execute-migration.circuit-breaker.enabled 时，用 CircuitBreakerCacheService 包装容器中的 CacheService。
+ * 先于 LatencyBudgetConfiguration 与 NearCacheConfiguration 执行，包装在最内层；
+ * 近端缓存包装在最外层，命中近端缓存的读取不计入熔断统计。
+ */
+@Configuration
+public class CircuitBreakerConfiguration {
+
+    @Bean
+    public static BeanPostProcessor circuitBreakerCacheServicePostProcessor(ObjectProvider<ExecuteMigration> properties,
+                                                                            ObjectProvider<MigrationCircuitBreaker> circuitBreaker) {
+        return new CircuitBreakerPostProcessor(properties, circuitBreaker);
+    }
+
+    private static final class CircuitBreakerPostProcessor implements BeanPostProcessor, Ordered {
+        private final ObjectProvider<ExecuteMigration> properties;
+        private final ObjectProvider<MigrationCircuitBreaker> circuitBreaker;
+
+        private CircuitBreakerPostProcessor(ObjectProvider<ExecuteMigration> properties,
+                                            ObjectProvider<MigrationCircuitBreaker> circuitBreaker) {
+            this.properties = properties;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof CacheService) || bean instanceof CircuitBreakerCacheService
+                    || bean instanceof LatencyBudgetCacheService || bean instanceof NearCacheService) {
+                return bean;
+            }
+            ExecuteMigration executeMigration = properties.getObject();
+            if (!executeMigration.getCircuitBreaker().isEnabled()
+                    || LatencyBudgetConfiguration.isHedgeReplica(executeMigration, beanName)) {
+                return bean;
+            }
+            return new CircuitBreakerCacheService((CacheService) bean, executeMigration, circuitBreaker.getObject());
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE - 1;
+        }
+    }
+}
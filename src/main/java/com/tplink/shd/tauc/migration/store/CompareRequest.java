@@ -0,0 +1,35 @@
+package com.tplink.shd.tauc.migration.store;
+
+/**
+ * 批量比对中的一项，参数含义与 MigrationRecordStore.compareAndRecord 一致
+ */
+public final class CompareRequest {
+
+    private final String peerKey;
+    private final String ownKey;
+    private final String digest;
+    private final boolean checkOwn;
+
+    public CompareRequest(String peerKey, String ownKey, String digest, boolean checkOwn) {
+        this.peerKey = peerKey;
+        this.ownKey = ownKey;
+        this.digest = digest;
+        this.checkOwn = checkOwn;
+    }
+
+    public String getPeerKey() {
+        return peerKey;
+    }
+
+    public String getOwnKey() {
+        return ownKey;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public boolean isCheckOwn() {
+        return checkOwn;
+    }
+}
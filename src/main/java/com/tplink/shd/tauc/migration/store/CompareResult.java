@@ -0,0 +1,79 @@
+package com.tplink.shd.tauc.migration.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 一次比对并记录操作的结果，以及比对时 Redis 中已有的摘要
+ */
+public final class CompareResult {
+
+    private static final CompareResult FIRST_WRITER = new CompareResult(CompareVerdict.FIRST_WRITER, null);
+
+    private final CompareVerdict verdict;
+    private final String existing; // 对端或本端已有的摘要，FIRST_WRITER 时为 null
+
+    private CompareResult(CompareVerdict verdict, String existing) {
+        this.verdict = verdict;
+        this.existing = existing;
+    }
+
+    public static CompareResult firstWriter() {
+        return FIRST_WRITER;
+    }
+
+    public static CompareResult of(CompareVerdict verdict, String existing) {
+        return verdict == CompareVerdict.FIRST_WRITER ? FIRST_WRITER : new CompareResult(verdict, existing);
+    }
+
+    // 解析 compare_and_record.lua 返回的 {返回码, 已有摘要}；响应式客户端可能把数组拆成逐个元素，由调用方收集后传入
+    static CompareResult ofScript(List<?> result) {
+        if (result.size() == 1 && result.get(0) instanceof List) {
+            result = (List<?>) result.get(0);
+        }
+        CompareVerdict verdict = CompareVerdict.ofCode(((Number) result.get(0)).longValue());
+        return of(verdict, result.size() > 1 ? asString(result.get(1)) : null);
+    }
+
+    private static String asString(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        if (value instanceof ByteBuffer) {
+            return StandardCharsets.UTF_8.decode(((ByteBuffer) value).duplicate()).toString();
+        }
+        return value == null ? null : value.toString();
+    }
+
+    public CompareVerdict getVerdict() {
+        return verdict;
+    }
+
+    public String getExisting() {
+        return existing;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompareResult)) {
+            return false;
+        }
+        CompareResult that = (CompareResult) o;
+        return verdict == that.verdict && Objects.equals(existing, that.existing);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(verdict, existing);
+    }
+
+    @Override
+    public String toString() {
+        return existing == null ? verdict.name() : verdict + "(" + existing + ")";
+    }
+}
@@ -0,0 +1,19 @@
+package com.tplink.shd.tauc.migration.store;
+
+/**
+ * 一次比对并记录操作的结果
+ */
+public enum CompareVerdict {
+    FIRST_WRITER,  // 对端与本端都不存在，本端输入已记录
+    PEER_MATCH,    // 对端已存在且摘要一致
+    PEER_MISMATCH, // 对端已存在但摘要不一致
+    SELF_MATCH,    // 本端已存在且摘要一致
+    SELF_MISMATCH; // 本端已存在但摘要不一致
+
+    private static final CompareVerdict[] VALUES = values();
+
+    // 与 compare_and_record.lua 的返回码一一对应
+    public static CompareVerdict ofCode(long code) {
+        return VALUES[(int) code];
+    }
+}
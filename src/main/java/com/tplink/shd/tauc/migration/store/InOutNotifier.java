@@ -0,0 +1,109 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * master 写入 InOut 后通过 Redis pub/sub 发布信号，slave 收到信号后立即唤醒，
+ * 替代固定时长的 Thread.sleep。
+ */
+@Slf4j
+@Component
+public class InOutNotifier {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    // 本节点正在等待的 InOut key，每个等待者单独一个信号，某个等待者结束或取消时不影响同一 key 上的其他等待者；
+    // 列表只在 compute 中修改，收到信号时整体移除
+    private final ConcurrentHashMap<String, List<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+
+    private volatile Disposable subscription;
+
+    // master 写入 InOut 后发布信号，异步发送，不阻塞业务线程
+    public void publish(String keyInOut) {
+        reactiveRedisTemplate.convertAndSend(properties.getInOutChannel(), keyInOut)
+                .subscribe(null, e -> log.warn("Failed to publish InOut signal for key: {}", keyInOut, e));
+    }
+
+    // slave 登记等待者，需在再次读取 Redis 之前调用，避免信号早于登记而丢失
+    public CompletableFuture<Void> register(String keyInOut) {
+        ensureSubscribed();
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        waiters.compute(keyInOut, (k, signals) -> {
+            List<CompletableFuture<Void>> updated = signals == null ? new ArrayList<>(1) : signals;
+            updated.add(signal);
+            return updated;
+        });
+        return signal;
+    }
+
+    // 等待信号到达，超时或被取消时返回 false
+    public boolean await(CompletableFuture<Void> signal, long timeoutMillis) throws InterruptedException {
+        try {
+            signal.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        }
+    }
+
+    // 结束等待后移除登记
+    public void unregister(String keyInOut, CompletableFuture<Void> signal) {
+        waiters.computeIfPresent(keyInOut, (k, signals) -> {
+            signals.remove(signal);
+            return signals.isEmpty() ? null : signals;
+        });
+    }
+
+    private void onSignal(String keyInOut) {
+        List<CompletableFuture<Void>> signals = waiters.remove(keyInOut);
+        if (signals != null) {
+            signals.forEach(signal -> signal.complete(null));
+        }
+    }
+
+    // 首次等待时才订阅频道，未使用 ExecuteCheck slave 的应用不会建立订阅连接
+    private void ensureSubscribed() {
+        if (subscription != null) {
+            return;
+        }
+        synchronized (this) {
+            if (subscription == null) {
+                subscription = reactiveRedisTemplate.listenToChannel(properties.getInOutChannel())
+                        .map(ReactiveSubscription.Message::getMessage)
+                        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)))
+                        .subscribe(this::onSignal);
+                log.info("Subscribed to InOut channel: {}", properties.getInOutChannel());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        waiters.values().forEach(signals -> signals.forEach(signal -> signal.cancel(false)));
+        waiters.clear();
+    }
+}
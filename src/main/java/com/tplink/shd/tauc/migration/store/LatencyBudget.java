@@ -0,0 +1,62 @@
+package com.tplink.shd.tauc.migration.store;
+
+/**
+ * 单次切面调用的缓存操作延迟预算，只在创建它的线程上使用。
+ * 进入预算后，当前线程上的迁移缓存操作由 LatencyBudgetExecutor 限时执行并扣减预算；
+ * 执行业务逻辑前应以 enter(null) 暂停预算，业务逻辑的耗时不计入。
+ */
+public final class LatencyBudget {
+
+    private static final ThreadLocal<LatencyBudget> CURRENT = new ThreadLocal<>();
+
+    private long remainingNanos;
+
+    LatencyBudget(long remainingNanos) {
+        this.remainingNanos = remainingNanos;
+    }
+
+    // 当前线程生效的预算，没有时为 null
+    public static LatencyBudget current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 使 budget 在当前线程生效，关闭返回的 Scope 时恢复之前的预算
+     *
+     * @param budget 为 null 时暂停之前的预算
+     */
+    public static Scope enter(LatencyBudget budget) {
+        LatencyBudget previous = CURRENT.get();
+        CURRENT.set(budget);
+        return new Scope(previous);
+    }
+
+    public long remainingNanos() {
+        return remainingNanos;
+    }
+
+    public boolean isExhausted() {
+        return remainingNanos <= 0;
+    }
+
+    void spend(long nanos) {
+        remainingNanos -= nanos;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final LatencyBudget previous;
+
+        private Scope(LatencyBudget previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import org.springframework.beans.factory.BeanFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 迁移 cacheName 上的 CacheService 操作在当前线程的 LatencyBudget 内执行，读取可对冲到副本 CacheService；
+ * 其他 cacheName 的操作及没有生效预算时直接转发。
+ */
+public class LatencyBudgetCacheService implements CacheService {
+
+    private final CacheService delegate;
+    private final ExecuteMigration properties;
+    private final LatencyBudgetExecutor budgetExecutor;
+    private final BeanFactory beanFactory;
+
+    private volatile CacheService replica; // 首次对冲时按 bean 名称查找
+
+    public LatencyBudgetCacheService(CacheService delegate, ExecuteMigration properties, LatencyBudgetExecutor budgetExecutor,
+                                     BeanFactory beanFactory) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.budgetExecutor = budgetExecutor;
+        this.beanFactory = beanFactory;
+    }
+
+    public CacheService getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> T get(String cacheName, String key, Class<T> clazz) {
+        if (!isBudgeted(cacheName)) {
+            return delegate.get(cacheName, key, clazz);
+        }
+        CacheService hedge = replica();
+        return budgetExecutor.read(() -> delegate.get(cacheName, key, clazz),
+                hedge == null ? null : () -> hedge.get(cacheName, key, clazz));
+    }
+
+    @Override
+    public <T> Map<String, T> multiGet(String cacheName, Collection<String> keys, Class<T> clazz) {
+        if (!isBudgeted(cacheName)) {
+            return delegate.multiGet(cacheName, keys, clazz);
+        }
+        CacheService hedge = replica();
+        return budgetExecutor.read(() -> delegate.multiGet(cacheName, keys, clazz),
+                hedge == null ? null : () -> hedge.multiGet(cacheName, keys, clazz));
+    }
+
+    @Override
+    public void set(String cacheName, String key, Object value, long timeout, TimeUnit unit) {
+        if (!isBudgeted(cacheName)) {
+            delegate.set(cacheName, key, value, timeout, unit);
+            return;
+        }
+        budgetExecutor.call(() -> {
+            delegate.set(cacheName, key, value, timeout, unit);
+            return null;
+        });
+    }
+
+    @Override
+    public void multiSet(String cacheName, Map<String, ?> entries, long timeout, TimeUnit unit) {
+        if (!isBudgeted(cacheName)) {
+            delegate.multiSet(cacheName, entries, timeout, unit);
+            return;
+        }
+        budgetExecutor.call(() -> {
+            delegate.multiSet(cacheName, entries, timeout, unit);
+            return null;
+        });
+    }
+
+    private boolean isBudgeted(String cacheName) {
+        return LatencyBudget.current() != null && cacheName != null && cacheName.equals(properties.getCacheName());
+    }
+
+    private CacheService replica() {
+        String beanName = properties.getLatencyBudget().getHedgeCacheService();
+        if (beanName == null || beanName.isEmpty()) {
+            return null;
+        }
+        CacheService cacheService = replica;
+        if (cacheService == null) {
+            cacheService = beanFactory.getBean(beanName, CacheService.class);
+            replica = cacheService;
+        }
+        return cacheService;
+    }
+}
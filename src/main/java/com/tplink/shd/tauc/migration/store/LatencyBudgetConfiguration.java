@@ -0,0 +1,61 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * 开启 execute-migration.latency-budget.enabled 时，用 LatencyBudgetCacheService 包装容器中的 CacheService。
+ * 在 CircuitBreakerConfiguration 之后、NearCacheConfiguration 之前执行：熔断统计记录的是每次操作的实际耗时，
+ * 包括预算耗尽后仍在后台完成的操作；命中近端缓存的读取不占用预算。
+ */
+@Configuration
+public class LatencyBudgetConfiguration {
+
+    @Bean
+    public static BeanPostProcessor latencyBudgetCacheServicePostProcessor(ObjectProvider<ExecuteMigration> properties,
+                                                                           ObjectProvider<LatencyBudgetExecutor> budgetExecutor,
+                                                                           BeanFactory beanFactory) {
+        return new LatencyBudgetPostProcessor(properties, budgetExecutor, beanFactory);
+    }
+
+    private static final class LatencyBudgetPostProcessor implements BeanPostProcessor, Ordered {
+        private final ObjectProvider<ExecuteMigration> properties;
+        private final ObjectProvider<LatencyBudgetExecutor> budgetExecutor;
+        private final BeanFactory beanFactory;
+
+        private LatencyBudgetPostProcessor(ObjectProvider<ExecuteMigration> properties,
+                                           ObjectProvider<LatencyBudgetExecutor> budgetExecutor, BeanFactory beanFactory) {
+            this.properties = properties;
+            this.budgetExecutor = budgetExecutor;
+            this.beanFactory = beanFactory;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof CacheService) || bean instanceof LatencyBudgetCacheService || bean instanceof NearCacheService) {
+                return bean;
+            }
+            ExecuteMigration executeMigration = properties.getObject();
+            if (!executeMigration.getLatencyBudget().isEnabled() || isHedgeReplica(executeMigration, beanName)) {
+                return bean;
+            }
+            return new LatencyBudgetCacheService((CacheService) bean, executeMigration, budgetExecutor.getObject(), beanFactory);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+
+    // 对冲读取的副本只由 LatencyBudgetCacheService 调用，保持原样，不再套上熔断、预算与近端缓存的包装
+    static boolean isHedgeReplica(ExecuteMigration properties, String beanName) {
+        return beanName != null && beanName.equals(properties.getLatencyBudget().getHedgeCacheService());
+    }
+}
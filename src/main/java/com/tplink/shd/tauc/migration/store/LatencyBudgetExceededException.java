@@ -0,0 +1,35 @@
+package com.tplink.shd.tauc.migration.store;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 缓存操作未能在剩余预算内完成，切面捕获后直接执行业务逻辑
+ */
+public class LatencyBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient CompletableFuture<?> pending; // 仍在后台执行的操作，操作未发起时为 null
+
+    public LatencyBudgetExceededException(String message) {
+        this(message, null);
+    }
+
+    public LatencyBudgetExceededException(String message, CompletableFuture<?> pending) {
+        super(message, null, false, false); // 热路径上的降级信号，不填充调用栈
+        this.pending = pending;
+    }
+
+    /**
+     * 操作已在后台发起时，在其成功完成后执行 action
+     *
+     * @return false 表示操作未发起，action 不会执行
+     */
+    public boolean whenCompleted(Runnable action) {
+        if (pending == null) {
+            return false;
+        }
+        pending.thenRun(action);
+        return true;
+    }
+}
@@ -0,0 +1,272 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 在当前线程的 LatencyBudget 内执行迁移缓存操作。
+ * 操作交给有界线程池执行，调用线程最多等待剩余预算，超时后放弃等待并抛出 LatencyBudgetExceededException；
+ * 配置了副本时，读取在主读取超过历史延迟分位数仍未返回后再向副本发起一次，取先成功的结果。
+ * 当前线程没有生效的预算时（未开启、异步链路或后台线程）直接在当前线程执行。
+ */
+@Slf4j
+@Component
+public class LatencyBudgetExecutor {
+
+    private static final int BUCKETS = 64;
+    private static final long BUCKET_BASE_NANOS = TimeUnit.MICROSECONDS.toNanos(10); // 第 0 个桶的上界，之后每 4 个桶翻倍
+    private static final int MIN_SAMPLES = 100; // 样本少于该数量时使用初始对冲延迟
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS); // 主读取延迟的对数分桶计数
+    private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime()); // nanoTime 的起点任意，不能以 0 作为初值
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile long hedgeDelayNanos = -1; // -1 表示样本不足
+    private ThreadPoolExecutor executor;
+    private Counter exceededCounter;
+    private Counter hedgedCounter;
+    private Counter hedgeWinsCounter;
+
+    // 新建一次切面调用的预算，未开启时为 null
+    public LatencyBudget newBudget() {
+        ExecuteMigration.LatencyBudget config = properties.getLatencyBudget();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        return new LatencyBudget(TimeUnit.MILLISECONDS.toNanos(config.getBudgetMillis()));
+    }
+
+    // 限时执行一次写入或脚本调用
+    public <T> T call(Supplier<T> operation) {
+        return read(operation, null);
+    }
+
+    /**
+     * 限时执行一次读取
+     *
+     * @param hedge 向副本读取，为 null 时不对冲
+     */
+    public <T> T read(Supplier<T> primary, Supplier<T> hedge) {
+        LatencyBudget budget = LatencyBudget.current();
+        if (budget == null) {
+            return primary.get();
+        }
+        if (!started.get()) {
+            start();
+        }
+        if (budget.isExhausted()) {
+            throw exceeded("Latency budget already spent");
+        }
+        long start = System.nanoTime();
+        try {
+            CompletableFuture<T> primaryFuture = submit(primary);
+            primaryFuture.whenComplete((value, e) -> recordLatency(System.nanoTime() - start));
+            if (hedge == null) {
+                return await(primaryFuture, budget.remainingNanos());
+            }
+            long delay = hedgeDelayNanos();
+            if (delay < budget.remainingNanos()) {
+                try {
+                    return primaryFuture.get(delay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    hedgedCounter.increment(); // 主读取慢于分位数，向副本发起对冲读取
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                }
+                CompletableFuture<T> hedgeFuture = submit(hedge);
+                hedgeFuture.thenRun(() -> {
+                    if (!primaryFuture.isDone()) {
+                        hedgeWinsCounter.increment();
+                    }
+                });
+                return await(firstSuccess(primaryFuture, hedgeFuture), budget.remainingNanos() - (System.nanoTime() - start));
+            }
+            return await(primaryFuture, budget.remainingNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw exceeded("Interrupted while waiting for a migration cache operation");
+        } finally {
+            budget.spend(System.nanoTime() - start);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, executor);
+        } catch (RejectedExecutionException e) {
+            throw exceeded("Too many migration cache operations in flight");
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future, long timeoutNanos) throws InterruptedException {
+        if (timeoutNanos <= 0 && !future.isDone()) {
+            throw exceeded("Latency budget spent", future);
+        }
+        try {
+            return future.get(Math.max(timeoutNanos, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // 操作继续在后台完成，调用方不再等待，可通过异常在完成后执行后续动作
+            throw exceeded("Migration cache operation did not finish within the latency budget", future);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    // 取两次读取中先成功的结果，均失败时以主读取的异常结束
+    static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> primary, CompletableFuture<T> hedge) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(e);
+            }
+        });
+        hedge.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                primary.whenComplete((v, primaryError) -> result.completeExceptionally(primaryError != null ? primaryError : e));
+            }
+        });
+        return result;
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private LatencyBudgetExceededException exceeded(String message) {
+        return exceeded(message, null);
+    }
+
+    private LatencyBudgetExceededException exceeded(String message, CompletableFuture<?> pending) {
+        exceededCounter.increment();
+        return new LatencyBudgetExceededException(message, pending);
+    }
+
+    // 首次在预算内执行操作时才创建线程池
+    private synchronized void start() {
+        if (started.get()) {
+            return;
+        }
+        ExecuteMigration.LatencyBudget config = properties.getLatencyBudget();
+        AtomicInteger index = new AtomicInteger();
+        // 没有空闲线程且已达上限时拒绝，由调用方按预算耗尽处理
+        executor = new ThreadPoolExecutor(0, Math.max(config.getMaxConcurrentOperations(), 1), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "migration-cache-io-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        exceededCounter = Counter.builder("migration.latency.budget.exceeded")
+                .description("Migration aspect calls degraded to pass-through because the cache latency budget ran out")
+                .register(registry);
+        hedgedCounter = Counter.builder("migration.latency.budget.hedged")
+                .description("Migration cache reads that were hedged to the replica")
+                .register(registry);
+        hedgeWinsCounter = Counter.builder("migration.latency.budget.hedge.wins")
+                .description("Hedged reads answered by the replica before the primary")
+                .register(registry);
+        Gauge.builder("migration.latency.budget.hedge.delay", this, e -> e.hedgeDelayNanos() / 1e6)
+                .description("Current hedge delay in milliseconds")
+                .register(registry);
+        started.set(true);
+        log.info("Latency budget executor started, budget: {}ms, hedge cache service: {}",
+                config.getBudgetMillis(), config.getHedgeCacheService());
+    }
+
+    void recordLatency(long nanos) {
+        latencies.incrementAndGet(bucket(nanos));
+    }
+
+    // 对冲延迟每秒按主读取延迟的分位数重新计算一次，之后计数减半，使旧样本逐渐失效
+    long hedgeDelayNanos() {
+        long now = System.nanoTime();
+        long refresh = nextRefresh.get();
+        if (now - refresh >= 0 && nextRefresh.compareAndSet(refresh, now + TimeUnit.SECONDS.toNanos(1))) {
+            hedgeDelayNanos = percentile(properties.getLatencyBudget().getHedgePercentile());
+        }
+        long delay = hedgeDelayNanos;
+        return delay < 0 ? TimeUnit.MILLISECONDS.toNanos(properties.getLatencyBudget().getInitialHedgeDelayMillis()) : delay;
+    }
+
+    private long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latencies.getAndUpdate(i, c -> c >> 1);
+            total += counts[i];
+        }
+        if (total < MIN_SAMPLES) {
+            return -1;
+        }
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    // 以 10 微秒为起点，每翻倍分为 4 个桶
+    static int bucket(long nanos) {
+        if (nanos <= BUCKET_BASE_NANOS) {
+            return 0;
+        }
+        int index = (int) Math.ceil(4 * (Math.log((double) nanos / BUCKET_BASE_NANOS) / Math.log(2)));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        return (long) (BUCKET_BASE_NANOS * Math.pow(2, bucket / 4.0));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (started.get()) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 迁移缓存路径的熔断器。
+ * 迁移 cacheName 上的每次缓存操作按耗时与是否出错记入按秒分桶的滑动窗口；
+ * 窗口内错误率达到阈值，或慢于阈值的操作占比超过 1 - 分位数（即该分位数的延迟超过阈值）时熔断。
+ * 熔断期间切面直接执行业务逻辑，经过 openMillis 后进入半开状态放行少量调用试探，试探成功后恢复。
+ */
+@Slf4j
+@Component
+public class MigrationCircuitBreaker {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger probePermits = new AtomicInteger();
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+    private volatile boolean started;
+    private volatile long stateChangedAt; // 最近一次进入 OPEN 或 HALF_OPEN 的时间
+    private Bucket[] buckets;
+    private Counter bypassedCounter;
+
+    /**
+     * 切面入口调用，返回 false 时应直接执行业务逻辑，不访问迁移缓存
+     */
+    public boolean allowRequest() {
+        ExecuteMigration.CircuitBreaker config = properties.getCircuitBreaker();
+        if (!config.isEnabled()) {
+            return true;
+        }
+        if (!started) {
+            start();
+        }
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        long openNanos = TimeUnit.MILLISECONDS.toNanos(config.getOpenMillis());
+        if (System.nanoTime() - stateChangedAt >= openNanos) {
+            current = halfOpen(config, openNanos);
+        }
+        if (current == State.HALF_OPEN && probePermits.getAndDecrement() > 0) {
+            return true;
+        }
+        bypassedCounter.increment();
+        return false;
+    }
+
+    /**
+     * 记录一次迁移缓存操作
+     *
+     * @param failed 操作是否抛出异常
+     */
+    public void record(long nanos, boolean failed) {
+        ExecuteMigration.CircuitBreaker config = properties.getCircuitBreaker();
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (!started) {
+            start();
+        }
+        boolean slow = nanos > TimeUnit.MILLISECONDS.toNanos(config.getLatencyThresholdMillis());
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (failed || slow) {
+                trip(State.HALF_OPEN, failed ? "probe failed" : "probe was slow");
+            } else if (probeSuccesses.incrementAndGet() >= config.getHalfOpenProbes()
+                    && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                resetWindow();
+                log.info("Migration circuit breaker closed after {} successful probes", config.getHalfOpenProbes());
+            }
+            return;
+        }
+        if (current == State.OPEN) {
+            return; // 熔断前已开始的操作，不再计入
+        }
+        Bucket bucket = bucket(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()));
+        bucket.calls.increment();
+        if (failed) {
+            bucket.failures.increment();
+        }
+        if (slow) {
+            bucket.slow.increment();
+        }
+        if (failed || slow) {
+            evaluate(config);
+        }
+    }
+
+    // 执行并记录一次阻塞的缓存操作
+    public <T> T execute(Supplier<T> operation) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = operation.get();
+            failed = false;
+            return result;
+        } finally {
+            record(System.nanoTime() - start, failed);
+        }
+    }
+
+    // 记录一次异步缓存操作，从订阅到结束计时；被取消时已慢于阈值的计为慢调用（如上游超时后取消），未超过阈值的不计入
+    public <T> Mono<T> execute(Mono<T> operation) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean(); // 成功后上游仍可能收到取消，只记录一次
+            return operation
+                    .doOnSuccess(value -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            record(System.nanoTime() - start, false);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            record(System.nanoTime() - start, true);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        long nanos = System.nanoTime() - start;
+                        if (nanos > TimeUnit.MILLISECONDS.toNanos(properties.getCircuitBreaker().getLatencyThresholdMillis())
+                                && recorded.compareAndSet(false, true)) {
+                            record(nanos, false);
+                        }
+                    });
+        });
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    private synchronized void start() {
+        if (started) {
+            return;
+        }
+        int windowSeconds = Math.max(properties.getCircuitBreaker().getWindowSeconds(), 1);
+        buckets = new Bucket[windowSeconds];
+        for (int i = 0; i < windowSeconds; i++) {
+            buckets[i] = new Bucket();
+        }
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("migration.circuit.breaker.state", state, s -> s.get().code)
+                .description("Migration cache circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        bypassedCounter = Counter.builder("migration.circuit.breaker.bypassed")
+                .description("Migration aspect calls passed straight to the business method while the breaker was open")
+                .register(registry);
+        started = true;
+    }
+
+    // OPEN 到期进入半开；半开过久仍未得出结论（试探调用没有缓存操作）时重新放行一批试探
+    private synchronized State halfOpen(ExecuteMigration.CircuitBreaker config, long openNanos) {
+        State current = state.get();
+        long now = System.nanoTime();
+        if (current == State.CLOSED || now - stateChangedAt < openNanos) {
+            return current;
+        }
+        probePermits.set(config.getHalfOpenProbes());
+        probeSuccesses.set(0);
+        stateChangedAt = now;
+        state.set(State.HALF_OPEN);
+        if (current == State.OPEN) {
+            log.info("Migration circuit breaker half-open, probing with {} calls", config.getHalfOpenProbes());
+        }
+        return State.HALF_OPEN;
+    }
+
+    // 按窗口内的错误率与慢调用占比判断是否熔断
+    private void evaluate(ExecuteMigration.CircuitBreaker config) {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long calls = 0;
+        long failures = 0;
+        long slow = 0;
+        for (Bucket bucket : buckets) {
+            long bucketSecond = bucket.second.get();
+            if (bucketSecond != Long.MIN_VALUE && second - bucketSecond < buckets.length) {
+                calls += bucket.calls.sum();
+                failures += bucket.failures.sum();
+                slow += bucket.slow.sum();
+            }
+        }
+        if (calls < Math.max(config.getMinimumCalls(), 1)) {
+            return;
+        }
+        if (failures >= calls * config.getFailureRateThreshold()) {
+            trip(State.CLOSED, String.format("failure rate %.3f over %d calls", (double) failures / calls, calls));
+        } else if (slow > calls * (1 - config.getLatencyPercentile())) {
+            trip(State.CLOSED, String.format("p%s latency above %dms over %d calls",
+                    config.getLatencyPercentile() * 100, config.getLatencyThresholdMillis(), calls));
+        }
+    }
+
+    private synchronized void trip(State from, String reason) {
+        stateChangedAt = System.nanoTime(); // 先于状态写入，读到 OPEN 的线程一定能看到新的时间
+        if (state.compareAndSet(from, State.OPEN)) {
+            log.warn("Migration circuit breaker opened ({}), bypassing migration for {}ms",
+                    reason, properties.getCircuitBreaker().getOpenMillis());
+        }
+    }
+
+    // 取当前秒对应的桶，桶属于更早的秒时先清零
+    private Bucket bucket(long second) {
+        Bucket bucket = buckets[(int) Math.floorMod(second, (long) buckets.length)];
+        long bucketSecond = bucket.second.get();
+        if (bucketSecond != second && bucket.second.compareAndSet(bucketSecond, second)) {
+            bucket.calls.reset();
+            bucket.failures.reset();
+            bucket.slow.reset();
+        }
+        return bucket;
+    }
+
+    private void resetWindow() {
+        for (Bucket bucket : buckets) {
+            bucket.second.set(Long.MIN_VALUE);
+            bucket.calls.reset();
+            bucket.failures.reset();
+            bucket.slow.reset();
+        }
+    }
+
+    public enum State {
+        CLOSED(0),
+        OPEN(1),
+        HALF_OPEN(2);
+
+        private final int code; // 指标中的取值
+
+        State(int code) {
+            this.code = code;
+        }
+    }
+
+    private static final class Bucket {
+        private final AtomicLong second = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+    }
+}
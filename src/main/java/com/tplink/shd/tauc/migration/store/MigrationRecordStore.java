@@ -0,0 +1,345 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 迁移比对记录的读写入口。
+ * 开启 atomicRecord 时使用 Lua 脚本在一次往返内完成比对与记录，否则退回到 CacheService 的逐条读写。
+ * 脚本模式直接读写 Redis 中的 cacheName:key，master 与 slave 必须同时开启或同时关闭。
+ * 非脚本模式下的写入可经由 WriteBehindPipeline 异步批量完成，脚本模式的记录在脚本内原子写入，不经过该管道。
+ * Redis Cluster 上不同请求的记录位于不同 slot，批量读取按 slot 分组，每组一次往返。
+ */
+@Slf4j
+@Component
+public class MigrationRecordStore {
+
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> COMPARE_AND_RECORD_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/compare_and_record.lua"), List.class);
+
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> LEDGER_FLUSH_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/ledger_flush.lua"), List.class);
+
+    private static final boolean LETTUCE_PRESENT =
+            ClassUtils.isPresent("io.lettuce.core.RedisClient", MigrationRecordStore.class.getClassLoader());
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private WriteBehindPipeline writeBehind;
+
+    @Autowired
+    private MigrationCircuitBreaker circuitBreaker; // 直接通过 redisTemplate 的操作在此计入熔断统计，CacheService 的操作由其包装类计入
+
+    @Autowired
+    private LatencyBudgetExecutor budgetExecutor; // 直接通过 redisTemplate 的操作在此限时，CacheService 的操作由其包装类限时
+
+    private volatile Boolean cluster; // 首次使用时判断
+
+    // 比对脚本同时访问对端与本端两个 key，集群模式下只有带哈希标签的紧凑 key 能落在同一个 slot
+    @PostConstruct
+    public void validate() {
+        if (properties.isAtomicRecord() && !properties.isCompactKeys() && isCluster()) {
+            throw new IllegalStateException("execute-migration.compact-keys must be on when atomic-record is enabled against a Redis cluster");
+        }
+    }
+
+    /**
+     * 检查对端记录，必要时检查本端记录，均不存在时记录本端摘要
+     *
+     * @param checkOwn 为 false 时跳过本端检查，直接覆盖本端记录
+     */
+    public CompareResult compareAndRecord(String cacheName, String peerKey, String ownKey, String digest, boolean checkOwn) {
+        if (properties.isAtomicRecord()) {
+            List<?> result = budgetExecutor.call(() -> circuitBreaker.execute(() -> redisTemplate.execute(COMPARE_AND_RECORD_SCRIPT,
+                    Arrays.asList(rawKey(cacheName, peerKey), rawKey(cacheName, ownKey)),
+                    digest, String.valueOf(properties.getExpireTime()), checkOwn ? "1" : "0")));
+            return CompareResult.ofScript(result);
+        }
+
+        String peer = cacheService.get(cacheName, peerKey, String.class);
+        if (peer != null) {
+            return CompareResult.of(peer.equals(digest) ? CompareVerdict.PEER_MATCH : CompareVerdict.PEER_MISMATCH, peer);
+        }
+        if (checkOwn) {
+            String own = cacheService.get(cacheName, ownKey, String.class);
+            if (own != null) {
+                return CompareResult.of(own.equals(digest) ? CompareVerdict.SELF_MATCH : CompareVerdict.SELF_MISMATCH, own);
+            }
+        }
+        write(cacheName, ownKey, digest, properties.getExpireTime(), null);
+        return CompareResult.firstWriter();
+    }
+
+    /**
+     * 写入本端的请求账本并读取对端账本，一次往返完成。
+     * 账本以 Redis hash 保存，不论是否开启 atomicRecord 都通过脚本直接读写 cacheName:key
+     *
+     * @param entries field 到摘要的映射
+     * @return 对端账本，对端尚未写入时为空
+     */
+    public Map<String, String> flushLedger(String cacheName, String ownKey, String ownMarkerKey, String peerKey, Map<String, String> entries) {
+        List<String> args = new ArrayList<>(entries.size() * 2 + 1);
+        args.add(String.valueOf(properties.getExpireTime()));
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        List<?> result = circuitBreaker.execute(() -> redisTemplate.execute(LEDGER_FLUSH_SCRIPT,
+                Arrays.asList(rawKey(cacheName, ownKey), rawKey(cacheName, ownMarkerKey), rawKey(cacheName, peerKey)),
+                args.toArray()));
+        Map<String, String> peer = new LinkedHashMap<>();
+        if (result != null) {
+            for (int i = 0; i + 1 < result.size(); i += 2) {
+                peer.put(String.valueOf(result.get(i)), String.valueOf(result.get(i + 1)));
+            }
+        }
+        return peer;
+    }
+
+    /**
+     * 批量比对并记录，返回结果与 requests 一一对应。
+     * 脚本模式下所有脚本调用在一次 pipeline 中发出，Redis 按顺序执行，同一批次内的重复记录也能正确识别；
+     * 否则批量读取全部相关 key，在本地依次判定后批量写入首次出现的记录。
+     */
+    public List<CompareResult> compareAndRecordAll(String cacheName, List<CompareRequest> requests) {
+        if (properties.isAtomicRecord()) {
+            return compareAndRecordPipelined(cacheName, requests);
+        }
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (CompareRequest request : requests) {
+            keys.add(request.getPeerKey());
+            if (request.isCheckOwn()) {
+                keys.add(request.getOwnKey());
+            }
+        }
+        Map<String, String> existing = cacheMultiGet(cacheName, keys);
+        Map<String, String> written = new LinkedHashMap<>(); // 本批次新记录，后续项比对时同样可见
+        List<CompareResult> verdicts = new ArrayList<>(requests.size());
+        for (CompareRequest request : requests) {
+            String peer = lookup(existing, written, request.getPeerKey());
+            if (peer != null) {
+                verdicts.add(CompareResult.of(peer.equals(request.getDigest()) ? CompareVerdict.PEER_MATCH : CompareVerdict.PEER_MISMATCH, peer));
+                continue;
+            }
+            if (request.isCheckOwn()) {
+                String own = lookup(existing, written, request.getOwnKey());
+                if (own != null) {
+                    verdicts.add(CompareResult.of(own.equals(request.getDigest()) ? CompareVerdict.SELF_MATCH : CompareVerdict.SELF_MISMATCH, own));
+                    continue;
+                }
+            }
+            written.put(request.getOwnKey(), request.getDigest());
+            verdicts.add(CompareResult.firstWriter());
+        }
+        if (!written.isEmpty()) {
+            if (writeBehind.isEnabled()) {
+                for (Map.Entry<String, String> entry : written.entrySet()) {
+                    writeBehind.enqueue(cacheName, entry.getKey(), entry.getValue(), properties.getExpireTime(), null);
+                }
+            } else {
+                cacheService.multiSet(cacheName, written, properties.getExpireTime(), TimeUnit.SECONDS);
+            }
+        }
+        return verdicts;
+    }
+
+    private List<CompareResult> compareAndRecordPipelined(String cacheName, List<CompareRequest> requests) {
+        String sha = COMPARE_AND_RECORD_SCRIPT.getSha1();
+        String expireTime = String.valueOf(properties.getExpireTime());
+        List<Object> results = circuitBreaker.execute(() -> {
+            try {
+                return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                    for (CompareRequest request : requests) {
+                        stringConnection.evalSha(sha, ReturnType.MULTI, 2,
+                                rawKey(cacheName, request.getPeerKey()), rawKey(cacheName, request.getOwnKey()),
+                                request.getDigest(), expireTime, request.isCheckOwn() ? "1" : "0");
+                    }
+                    return null;
+                });
+            } catch (RedisPipelineException e) {
+                return e.getPipelineResult(); // 单条失败（如 NOSCRIPT）不计为缓存故障，下面逐条重试
+            }
+        });
+
+        List<CompareResult> verdicts = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Object result = i < results.size() ? results.get(i) : null;
+            if (result instanceof List) {
+                verdicts.add(CompareResult.ofScript((List<?>) result));
+            } else {
+                // 脚本尚未加载（NOSCRIPT）或单条失败时逐条重试，单条执行会在需要时加载脚本
+                CompareRequest request = requests.get(i);
+                verdicts.add(compareAndRecord(cacheName, request.getPeerKey(), request.getOwnKey(), request.getDigest(), request.isCheckOwn()));
+            }
+        }
+        return verdicts;
+    }
+
+    private static String lookup(Map<String, String> existing, Map<String, String> written, String key) {
+        String value = written.get(key);
+        return value != null ? value : existing.get(key);
+    }
+
+    /**
+     * 通过 CacheService 写入一条记录，开启 write-behind 时只入队，由后台线程批量写入
+     *
+     * @param onWritten 写入完成后执行，可为 null；记录被丢弃时不会执行，超出延迟预算时在后台写入完成后执行
+     */
+    public void write(String cacheName, String key, Object value, long timeoutSeconds, Runnable onWritten) {
+        if (writeBehind.isEnabled()) {
+            writeBehind.enqueue(cacheName, key, value, timeoutSeconds, onWritten);
+            return;
+        }
+        try {
+            cacheService.set(cacheName, key, value, timeoutSeconds, TimeUnit.SECONDS);
+        } catch (LatencyBudgetExceededException e) {
+            if (onWritten != null) {
+                e.whenCompleted(onWritten);
+            }
+            throw e;
+        }
+        if (onWritten != null) {
+            onWritten.run();
+        }
+    }
+
+    // 读取一条摘要记录，与 compareAndRecord 使用同一种存储方式
+    public String get(String cacheName, String key) {
+        if (properties.isAtomicRecord()) {
+            return budgetExecutor.call(() -> circuitBreaker.execute(() -> redisTemplate.opsForValue().get(rawKey(cacheName, key))));
+        }
+        return cacheService.get(cacheName, key, String.class);
+    }
+
+    // 批量读取摘要记录，返回结果与 keys 一一对应，不存在的为 null；集群模式下每个 slot 一次往返，否则整批一次往返
+    public List<String> multiGet(String cacheName, List<String> keys) {
+        if (properties.isAtomicRecord()) {
+            return multiGetRaw(cacheName, keys);
+        }
+        Map<String, String> values = cacheMultiGet(cacheName, keys);
+        List<String> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            result.add(values.get(key));
+        }
+        return result;
+    }
+
+    /**
+     * 直接通过 StringRedisTemplate 批量读取 cacheName:key，不经过 CacheService 的序列化；
+     * 用于读取 Lua 脚本写入的键，与 atomicRecord 是否开启无关
+     */
+    public List<String> multiGetRaw(String cacheName, List<String> keys) {
+        if (!isCluster()) {
+            List<String> rawKeys = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                rawKeys.add(rawKey(cacheName, key));
+            }
+            return budgetExecutor.call(() -> circuitBreaker.execute(() -> redisTemplate.opsForValue().multiGet(rawKeys)));
+        }
+        Map<String, String> values = new HashMap<>();
+        for (List<String> group : slotGroups(cacheName, keys)) {
+            List<String> rawKeys = new ArrayList<>(group.size());
+            for (String key : group) {
+                rawKeys.add(rawKey(cacheName, key));
+            }
+            List<String> groupValues = budgetExecutor.call(() -> circuitBreaker.execute(() -> redisTemplate.opsForValue().multiGet(rawKeys)));
+            for (int i = 0; groupValues != null && i < group.size(); i++) {
+                values.put(group.get(i), groupValues.get(i));
+            }
+        }
+        List<String> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            result.add(values.get(key));
+        }
+        return result;
+    }
+
+    private Map<String, String> cacheMultiGet(String cacheName, Collection<String> keys) {
+        if (keys.size() < 2 || !isCluster()) {
+            return cacheService.multiGet(cacheName, keys, String.class);
+        }
+        Map<String, String> values = new HashMap<>();
+        for (List<String> group : slotGroups(cacheName, keys)) {
+            values.putAll(cacheService.multiGet(cacheName, group, String.class));
+        }
+        return values;
+    }
+
+    // 按 cacheName:key 所在的 slot 分组，保持组内顺序
+    private static Collection<List<String>> slotGroups(String cacheName, Collection<String> keys) {
+        Map<Integer, List<String>> groups = new LinkedHashMap<>();
+        for (String key : keys) {
+            groups.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(rawKey(cacheName, key)), slot -> new ArrayList<>()).add(key);
+        }
+        return groups.values();
+    }
+
+    /**
+     * Redis 是否以集群模式连接，首次调用时按连接工厂的配置判断，结果缓存
+     */
+    public boolean isCluster() {
+        Boolean detected = cluster;
+        if (detected == null) {
+            detected = detectCluster();
+            cluster = detected;
+        }
+        return detected;
+    }
+
+    private boolean detectCluster() {
+        RedisConnectionFactory factory = redisTemplate == null ? null : redisTemplate.getConnectionFactory();
+        if (factory == null) {
+            return false;
+        }
+        if (LETTUCE_PRESENT && factory instanceof LettuceConnectionFactory) {
+            return ((LettuceConnectionFactory) factory).isClusterAware(); // 只看配置，不建立连接
+        }
+        try (RedisConnection connection = factory.getConnection()) {
+            return connection instanceof RedisClusterConnection;
+        }
+    }
+
+    static String rawKey(String cacheName, String key) {
+        return cacheName + ":" + key;
+    }
+}
@@ -0,0 +1,37 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置了 execute-migration.near-cache.cache-names 时，用 NearCacheService 包装容器中的 CacheService
+ */
+@Configuration
+public class NearCacheConfiguration {
+
+    @Bean
+    public static BeanPostProcessor nearCacheServicePostProcessor(ObjectProvider<ExecuteMigration> properties,
+                                                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof CacheService) || bean instanceof NearCacheService) {
+                    return bean;
+                }
+                ExecuteMigration executeMigration = properties.getObject();
+                if (executeMigration.getNearCache().getCacheNames().isEmpty()
+                        || LatencyBudgetConfiguration.isHedgeReplica(executeMigration, beanName)) {
+                    return bean;
+                }
+                return new NearCacheService((CacheService) bean, executeMigration,
+                        meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+            }
+        };
+    }
+}
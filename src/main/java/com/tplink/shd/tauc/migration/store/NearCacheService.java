@@ -0,0 +1,308 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 在 CacheService 前增加一层进程内近端缓存，只对 execute-migration.near-cache.cache-names 中的缓存生效。
+ * 未命中同样缓存一段较短时间（负缓存）；本节点写入时使对应 key 失效；
+ * 容量满时按访问频率准入，新 key 的频率不高于被淘汰者时不进入缓存。
+ * 命中的读取不加锁，多个线程读取同一个 cacheName 时互不阻塞。
+ */
+public class NearCacheService implements CacheService {
+
+    private static final Object NEGATIVE = new Object(); // 负缓存占位
+
+    private final CacheService delegate;
+    private final ExecuteMigration properties;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, Segment> segments = new ConcurrentHashMap<>();
+
+    public NearCacheService(CacheService delegate, ExecuteMigration properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public CacheService getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> T get(String cacheName, String key, Class<T> clazz) {
+        Segment segment = segment(cacheName);
+        if (segment == null) {
+            return delegate.get(cacheName, key, clazz);
+        }
+        Object cached = segment.get(key);
+        if (cached == NEGATIVE) {
+            segment.negativeHits.increment();
+            return null;
+        }
+        if (cached != null && clazz.isInstance(cached)) {
+            segment.hits.increment();
+            return clazz.cast(cached);
+        }
+        segment.misses.increment();
+        T value = delegate.get(cacheName, key, clazz);
+        ExecuteMigration.NearCache config = properties.getNearCache();
+        if (value == null) {
+            segment.put(key, NEGATIVE, config.getNegativeTtlMillis());
+        } else {
+            segment.put(key, value, config.getPositiveTtlMillis());
+        }
+        return value;
+    }
+
+    @Override
+    public <T> Map<String, T> multiGet(String cacheName, Collection<String> keys, Class<T> clazz) {
+        Segment segment = segment(cacheName);
+        if (segment == null) {
+            return delegate.multiGet(cacheName, keys, clazz);
+        }
+        Map<String, T> values = new HashMap<>();
+        List<String> missed = new ArrayList<>();
+        for (String key : keys) {
+            Object cached = segment.get(key);
+            if (cached == NEGATIVE) {
+                segment.negativeHits.increment();
+            } else if (cached != null && clazz.isInstance(cached)) {
+                segment.hits.increment();
+                values.put(key, clazz.cast(cached));
+            } else {
+                segment.misses.increment();
+                missed.add(key);
+            }
+        }
+        if (missed.isEmpty()) {
+            return values;
+        }
+        // 未命中的 key 一次批量读取
+        Map<String, T> loaded = delegate.multiGet(cacheName, missed, clazz);
+        ExecuteMigration.NearCache config = properties.getNearCache();
+        for (String key : missed) {
+            T value = loaded.get(key);
+            if (value == null) {
+                segment.put(key, NEGATIVE, config.getNegativeTtlMillis());
+            } else {
+                segment.put(key, value, config.getPositiveTtlMillis());
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void set(String cacheName, String key, Object value, long timeout, TimeUnit unit) {
+        delegate.set(cacheName, key, value, timeout, unit);
+        invalidate(cacheName, key);
+    }
+
+    @Override
+    public void multiSet(String cacheName, Map<String, ?> entries, long timeout, TimeUnit unit) {
+        delegate.multiSet(cacheName, entries, timeout, unit);
+        for (String key : entries.keySet()) {
+            invalidate(cacheName, key);
+        }
+    }
+
+    // 使本节点缓存的 key 失效，已知远端写入时（如收到 InOut 信号）也应调用
+    public void invalidate(String cacheName, String key) {
+        Segment segment = segments.get(cacheName);
+        if (segment != null) {
+            segment.remove(key);
+        }
+    }
+
+    public long hitCount(String cacheName) {
+        Segment segment = segments.get(cacheName);
+        return segment == null ? 0 : segment.hits.sum() + segment.negativeHits.sum();
+    }
+
+    public long missCount(String cacheName) {
+        Segment segment = segments.get(cacheName);
+        return segment == null ? 0 : segment.misses.sum();
+    }
+
+    private Segment segment(String cacheName) {
+        if (!properties.getNearCache().getCacheNames().contains(cacheName)) {
+            return null;
+        }
+        Segment segment = segments.get(cacheName);
+        if (segment == null) {
+            segment = segments.computeIfAbsent(cacheName, this::createSegment);
+        }
+        return segment;
+    }
+
+    private Segment createSegment(String cacheName) {
+        Segment segment = new Segment(properties.getNearCache().getMaximumSize());
+        FunctionCounter.builder("migration.near.cache.requests", segment.hits, LongAdder::sum)
+                .tags("cache", cacheName, "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("migration.near.cache.requests", segment.negativeHits, LongAdder::sum)
+                .tags("cache", cacheName, "result", "negative_hit").register(meterRegistry);
+        FunctionCounter.builder("migration.near.cache.requests", segment.misses, LongAdder::sum)
+                .tags("cache", cacheName, "result", "miss").register(meterRegistry);
+        Gauge.builder("migration.near.cache.size", segment, Segment::size)
+                .tags("cache", cacheName).register(meterRegistry);
+        return segment;
+    }
+
+    /**
+     * 单个 cacheName 的近端缓存。
+     * 读取只访问 ConcurrentHashMap，不加锁；访问记录写入有损的环形缓冲区，由写入或抽样到的读取在 tryLock 成功时
+     * 批量计入访问频率与访问顺序，缓冲区被覆盖时丢失的访问只影响近似的淘汰顺序。
+     * 写入、失效与淘汰持有 lock，顺序表头部为最久未访问的条目。
+     */
+    private static final class Segment {
+        private static final int READ_BUFFER_SIZE = 256; // 2 的幂
+        private static final int DRAIN_MASK = 15; // 约每 16 次读取尝试处理一次缓冲区
+
+        private final int maximumSize;
+        private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Boolean> order = new LinkedHashMap<>(16, 0.75f, true); // 持有 lock 时访问
+        private final FrequencySketch sketch; // 持有 lock 时访问
+        private final AtomicReferenceArray<String> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder negativeHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private Segment(int maximumSize) {
+            this.maximumSize = maximumSize;
+            this.sketch = new FrequencySketch(maximumSize);
+        }
+
+        Object get(String key) {
+            recordRead(key);
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key, entry); // 顺序表中的残留在处理缓冲区或淘汰时清理
+                return null;
+            }
+            return entry.value;
+        }
+
+        void put(String key, Object value, long ttlMillis) {
+            if (ttlMillis <= 0) {
+                return;
+            }
+            Entry entry = new Entry(value, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+            lock.lock();
+            try {
+                drainReads(); // 准入判断前计入尚未处理的访问
+                if (order.size() > entries.size() + maximumSize) {
+                    order.keySet().removeIf(k -> !entries.containsKey(k)); // 缓冲区被覆盖时漏掉的残留
+                }
+                if (entries.containsKey(key) || entries.size() < maximumSize) {
+                    insert(key, entry);
+                    return;
+                }
+                String victim = eldest();
+                Entry victimEntry = victim == null ? null : entries.get(victim);
+                // 过期的条目直接淘汰，否则只有新 key 更常被访问时才替换最久未访问的条目
+                if (victimEntry == null || victimEntry.expiresAt - System.nanoTime() <= 0
+                        || sketch.frequency(key.hashCode()) > sketch.frequency(victim.hashCode())) {
+                    if (victim != null) {
+                        entries.remove(victim);
+                        order.remove(victim);
+                    }
+                    insert(key, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(String key) {
+            entries.remove(key); // 先于加锁生效，之后的读取不会再看到旧值
+            lock.lock();
+            try {
+                order.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        // 随机选择缓冲区的槽位，多个线程同时读取时不竞争同一个计数器
+        private void recordRead(String key) {
+            int random = ThreadLocalRandom.current().nextInt();
+            readBuffer.lazySet(random & (READ_BUFFER_SIZE - 1), key);
+            if ((random >>> 24 & DRAIN_MASK) == 0 && lock.tryLock()) {
+                try {
+                    drainReads();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        // 持有 lock 时调用
+        private void drainReads() {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                String key = readBuffer.get(i);
+                if (key == null) {
+                    continue;
+                }
+                readBuffer.compareAndSet(i, key, null);
+                sketch.increment(key.hashCode());
+                if (order.get(key) != null && !entries.containsKey(key)) {
+                    order.remove(key); // 已过期移除的条目
+                }
+            }
+        }
+
+        // 持有 lock 时调用
+        private void insert(String key, Entry entry) {
+            entries.put(key, entry);
+            order.put(key, Boolean.TRUE);
+        }
+
+        // 持有 lock 时调用，跳过顺序表中已不在缓存里的残留
+        private String eldest() {
+            Iterator<String> iterator = order.keySet().iterator();
+            while (iterator.hasNext()) {
+                String key = iterator.next();
+                if (entries.containsKey(key)) {
+                    return key;
+                }
+                iterator.remove();
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 延迟的 oneside 检查。
+ * slave 记录输入后立即返回，由哈希时间轮在延迟到期后检查 master 记录是否已写入；
+ * 同一格到期的检查按 cacheName 分组，每组一次批量读取。
+ * 时间轮只由后台线程访问，业务线程提交的检查先进入无锁队列，每格开始时再放入对应的槽位。
+ */
+@Slf4j
+@Component
+public class OnesideCheckWheel {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private MigrationRecordStore recordStore;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final Queue<PendingCheck> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private List<List<PendingCheck>> wheel;
+    private int mask;
+    private long tickNanos;
+    private long startTime;
+    private long tick; // 已处理完的格数，只由后台线程读写
+    private Thread worker;
+    private volatile boolean running;
+
+    private Counter droppedCounter;
+
+    /**
+     * 在 delayMillis 后检查 key 是否存在，不存在时执行 onMissing
+     *
+     * @param onMissing 在后台线程执行，不应阻塞
+     * @return false 表示等待中的检查过多，本次检查被丢弃
+     */
+    public boolean schedule(String cacheName, String key, long delayMillis, Runnable onMissing) {
+        return schedule(cacheName, key, false, delayMillis, onMissing);
+    }
+
+    /**
+     * @param raw 为 true 时通过 StringRedisTemplate 直接读取 key，用于检查 Lua 脚本写入的键
+     */
+    public boolean schedule(String cacheName, String key, boolean raw, long delayMillis, Runnable onMissing) {
+        if (!started.get()) {
+            start();
+        }
+        if (pending.incrementAndGet() > properties.getOnesideCheck().getMaxPending()) {
+            pending.decrementAndGet();
+            droppedCounter.increment();
+            log.debug("Too many pending one-side checks, dropped check for key: {}", key);
+            return false;
+        }
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        incoming.add(new PendingCheck(cacheName, key, raw, deadline, onMissing));
+        return true;
+    }
+
+    // 首次提交检查时才启动后台线程，未使用 ExecuteSave slave 的应用不会创建该线程
+    private synchronized void start() {
+        if (started.get()) {
+            return;
+        }
+        ExecuteMigration.OnesideCheck config = properties.getOnesideCheck();
+        int size = Integer.highestOneBit(Math.max(config.getWheelSize() - 1, 1)) << 1;
+        wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        mask = size - 1;
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(config.getTickMillis(), 1));
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("migration.oneside.check.pending", pending, AtomicInteger::get)
+                .description("One-side checks waiting on the timing wheel")
+                .register(registry);
+        droppedCounter = Counter.builder("migration.oneside.check.dropped")
+                .description("One-side checks dropped because too many were pending")
+                .register(registry);
+
+        startTime = System.nanoTime();
+        running = true;
+        worker = new Thread(this::workerLoop, "migration-oneside-wheel");
+        worker.setDaemon(true);
+        worker.start();
+        started.set(true);
+        log.info("One-side check wheel started, tick: {}ms, size: {}", config.getTickMillis(), size);
+    }
+
+    private void workerLoop() {
+        List<PendingCheck> due = new ArrayList<>();
+        while (running) {
+            try {
+                waitForNextTick();
+                transferIncoming();
+                expireBucket(wheel.get((int) (tick & mask)), due);
+                tick++;
+                if (!due.isEmpty()) {
+                    check(due);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in one-side check wheel", e);
+            } finally {
+                due.clear();
+            }
+        }
+    }
+
+    private void waitForNextTick() throws InterruptedException {
+        long deadline = (tick + 1) * tickNanos;
+        long sleepNanos = deadline - (System.nanoTime() - startTime);
+        if (sleepNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        }
+    }
+
+    // 把新提交的检查放入到期所在的槽位，已过期的放入当前格
+    private void transferIncoming() {
+        PendingCheck check;
+        while ((check = incoming.poll()) != null) {
+            long calculated = check.deadline / tickNanos;
+            check.remainingRounds = (calculated - tick) / wheel.size();
+            long ticks = Math.max(calculated, tick);
+            wheel.get((int) (ticks & mask)).add(check);
+        }
+    }
+
+    // 取出当前槽位中已到期的检查，其余检查的剩余圈数减一
+    private void expireBucket(List<PendingCheck> bucket, List<PendingCheck> due) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            PendingCheck check = bucket.get(i);
+            if (check.remainingRounds <= 0) {
+                due.add(check);
+            } else {
+                check.remainingRounds--;
+                bucket.set(kept++, check);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void check(List<PendingCheck> due) {
+        pending.addAndGet(-due.size());
+        // 按读取方式与 cacheName 分组
+        Map<String, List<PendingCheck>> byCache = new LinkedHashMap<>();
+        Map<String, List<PendingCheck>> rawByCache = new LinkedHashMap<>();
+        for (PendingCheck check : due) {
+            (check.raw ? rawByCache : byCache).computeIfAbsent(check.cacheName, k -> new ArrayList<>()).add(check);
+        }
+        check(byCache, false);
+        check(rawByCache, true);
+    }
+
+    private void check(Map<String, List<PendingCheck>> byCache, boolean raw) {
+        int batchSize = Math.max(properties.getOnesideCheck().getBatchSize(), 1);
+        for (Map.Entry<String, List<PendingCheck>> entry : byCache.entrySet()) {
+            List<PendingCheck> checks = entry.getValue();
+            for (int from = 0; from < checks.size(); from += batchSize) {
+                checkBatch(entry.getKey(), checks.subList(from, Math.min(from + batchSize, checks.size())), raw);
+            }
+        }
+    }
+
+    private void checkBatch(String cacheName, List<PendingCheck> checks, boolean raw) {
+        List<String> keys = new ArrayList<>(checks.size());
+        for (PendingCheck check : checks) {
+            keys.add(check.key);
+        }
+        List<String> values;
+        try {
+            values = raw ? recordStore.multiGetRaw(cacheName, keys) : recordStore.multiGet(cacheName, keys);
+        } catch (RuntimeException e) {
+            log.error("Failed to read {} keys for one-side check", keys.size(), e);
+            return;
+        }
+        for (int i = 0; i < checks.size(); i++) {
+            if (values == null || values.get(i) == null) {
+                PendingCheck check = checks.get(i);
+                log.warn("One-side exception: master input key not found after waiting: {}", check.key);
+                try {
+                    check.onMissing.run();
+                } catch (RuntimeException e) {
+                    log.error("One-side callback failed for key: {}", check.key, e);
+                }
+            }
+        }
+    }
+
+    // 停止后台线程，未到期的检查直接丢弃
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(1));
+        if (pending.get() > 0) {
+            log.info("One-side check wheel stopped, {} pending checks discarded", pending.get());
+        }
+    }
+
+    private static final class PendingCheck {
+        private final String cacheName;
+        private final String key;
+        private final boolean raw; // 通过 StringRedisTemplate 直接读取
+        private final long deadline; // 相对 startTime 的纳秒数
+        private final Runnable onMissing;
+        private long remainingRounds;
+
+        private PendingCheck(String cacheName, String key, boolean raw, long deadline, Runnable onMissing) {
+            this.cacheName = cacheName;
+            this.key = key;
+            this.raw = raw;
+            this.deadline = deadline;
+            this.onMissing = onMissing;
+        }
+    }
+}
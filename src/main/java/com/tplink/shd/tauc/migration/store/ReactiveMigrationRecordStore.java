@@ -0,0 +1,77 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+
+/**
+ * MigrationRecordStore 的非阻塞版本，供返回 Mono/Flux/CompletableFuture 的方法使用。
+ * 开启 atomicRecord 时直接通过响应式 Redis 客户端执行脚本与读取；
+ * CacheService 只提供阻塞接口，其调用统一切换到 boundedElastic 线程池，不占用事件循环线程。
+ */
+@Component
+public class ReactiveMigrationRecordStore {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private MigrationRecordStore recordStore;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private WriteBehindPipeline writeBehind;
+
+    @Autowired
+    private MigrationCircuitBreaker circuitBreaker; // 响应式客户端的操作在此计入熔断统计
+
+    // 语义与 MigrationRecordStore.compareAndRecord 一致
+    public Mono<CompareResult> compareAndRecord(String cacheName, String peerKey, String ownKey, String digest, boolean checkOwn) {
+        if (properties.isAtomicRecord()) {
+            return circuitBreaker.execute(reactiveRedisTemplate.execute(MigrationRecordStore.COMPARE_AND_RECORD_SCRIPT,
+                            Arrays.asList(MigrationRecordStore.rawKey(cacheName, peerKey), MigrationRecordStore.rawKey(cacheName, ownKey)),
+                            Arrays.asList(digest, String.valueOf(properties.getExpireTime()), checkOwn ? "1" : "0"))
+                    .collectList())
+                    .map(CompareResult::ofScript);
+        }
+        return Mono.fromCallable(() -> recordStore.compareAndRecord(cacheName, peerKey, ownKey, digest, checkOwn))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // 读取一条摘要记录，不存在时为空
+    public Mono<String> get(String cacheName, String key) {
+        if (properties.isAtomicRecord()) {
+            return circuitBreaker.execute(reactiveRedisTemplate.opsForValue().get(MigrationRecordStore.rawKey(cacheName, key)));
+        }
+        return getValue(cacheName, key, String.class);
+    }
+
+    // 通过 CacheService 读取任意类型的值，不存在时为空
+    public <T> Mono<T> getValue(String cacheName, String key, Class<T> clazz) {
+        return Mono.fromCallable(() -> cacheService.get(cacheName, key, clazz))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 语义与 MigrationRecordStore.write 一致；write-behind 以丢弃策略入队时不会阻塞，直接在当前线程完成
+     */
+    public Mono<Void> write(String cacheName, String key, Object value, long timeoutSeconds, Runnable onWritten) {
+        Mono<Void> write = Mono.fromRunnable(() -> recordStore.write(cacheName, key, value, timeoutSeconds, onWritten));
+        if (writeBehind.isEnabled()
+                && properties.getWriteBehind().getOverflowPolicy() == WriteBehindPipeline.OverflowPolicy.DROP) {
+            return write;
+        }
+        return write.subscribeOn(Schedulers.boundedElastic());
+    }
+}
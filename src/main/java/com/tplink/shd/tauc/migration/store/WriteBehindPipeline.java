@@ -0,0 +1,216 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * master 端结果记录的异步写入管道。
+ * 记录先进入有界队列，后台线程批量取出后按 cacheName 与过期时间分组，通过 CacheService.multiSet 批量写入。
+ */
+@Slf4j
+@Component
+public class WriteBehindPipeline {
+
+    @Autowired
+    private ExecuteMigration properties;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private BlockingQueue<PendingWrite> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter droppedCounter;
+    private Counter failedCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        ExecuteMigration.WriteBehind config = properties.getWriteBehind();
+        if (!config.isEnabled()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(config.getCapacity());
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("migration.write.behind.queue.depth", queue, BlockingQueue::size)
+                .description("Records waiting to be flushed to the migration cache")
+                .register(registry);
+        droppedCounter = Counter.builder("migration.write.behind.dropped")
+                .description("Records dropped because the write-behind queue was full or already stopped")
+                .register(registry);
+        failedCounter = Counter.builder("migration.write.behind.failed")
+                .description("Records whose batch write failed")
+                .register(registry);
+        flushTimer = Timer.builder("migration.write.behind.flush")
+                .description("Latency of one write-behind batch flush")
+                .register(registry);
+
+        running = true;
+        flusher = new Thread(this::drainLoop, "migration-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Write-behind pipeline started, capacity: {}, batch size: {}, overflow policy: {}",
+                config.getCapacity(), config.getBatchSize(), config.getOverflowPolicy());
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * 记录入队，队列已满时按配置丢弃或限时阻塞；管道已停止时直接丢弃
+     *
+     * @param onWritten 写入成功后执行，可为 null
+     * @return false 表示记录被丢弃，onWritten 不会执行
+     */
+    public boolean enqueue(String cacheName, String key, Object value, long timeoutSeconds, Runnable onWritten) {
+        if (!running) {
+            return drop(key, "stopped");
+        }
+        PendingWrite write = new PendingWrite(cacheName, key, value, timeoutSeconds, onWritten);
+        ExecuteMigration.WriteBehind config = properties.getWriteBehind();
+        boolean queued;
+        if (config.getOverflowPolicy() == OverflowPolicy.BLOCK) {
+            try {
+                // 限时等待，后台线程已退出或写入持续变慢时不会无限阻塞业务线程
+                queued = queue.offer(write, config.getBlockTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(write);
+        }
+        if (!queued) {
+            return drop(key, "full");
+        }
+        if (!running && queue.remove(write)) {
+            return drop(key, "stopped"); // 入队期间管道停止，后台线程可能已不再取出该记录
+        }
+        return true;
+    }
+
+    private boolean drop(String key, String reason) {
+        droppedCounter.increment();
+        log.debug("Write-behind queue is {}, dropped record for key: {}", reason, key);
+        return false;
+    }
+
+    private void drainLoop() {
+        int batchSize = properties.getWriteBehind().getBatchSize();
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in write-behind flusher", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        // 按 cacheName 与过期时间分组，每组一次批量写入
+        Map<String, Map<Long, Map<String, Object>>> groups = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            groups.computeIfAbsent(write.cacheName, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(write.timeoutSeconds, k -> new LinkedHashMap<>())
+                    .put(write.key, write.value);
+        }
+
+        long start = System.nanoTime();
+        boolean success = true;
+        try {
+            for (Map.Entry<String, Map<Long, Map<String, Object>>> byCache : groups.entrySet()) {
+                for (Map.Entry<Long, Map<String, Object>> byTimeout : byCache.getValue().entrySet()) {
+                    cacheService.multiSet(byCache.getKey(), byTimeout.getValue(), byTimeout.getKey(), TimeUnit.SECONDS);
+                }
+            }
+        } catch (RuntimeException e) {
+            success = false;
+            failedCounter.increment(batch.size());
+            log.error("Failed to flush {} write-behind records", batch.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (success) {
+            for (PendingWrite write : batch) {
+                if (write.onWritten != null) {
+                    write.onWritten.run();
+                }
+            }
+        }
+    }
+
+    // 停止接收新记录，并在超时时间内把队列中剩余的记录写完
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.join(properties.getWriteBehind().getShutdownTimeoutMillis());
+        if (flusher.isAlive()) {
+            log.warn("Write-behind flusher did not finish in time, {} records left unflushed", queue.size());
+        }
+    }
+
+    /**
+     * 队列已满时的处理策略
+     */
+    public enum OverflowPolicy {
+        DROP,  // 丢弃并计数
+        BLOCK  // 阻塞业务线程等待空位，超过 blockTimeoutMillis 后丢弃并计数
+    }
+
+    private static final class PendingWrite {
+        private final String cacheName;
+        private final String key;
+        private final Object value;
+        private final long timeoutSeconds;
+        private final Runnable onWritten;
+
+        private PendingWrite(String cacheName, String key, Object value, long timeoutSeconds, Runnable onWritten) {
+            this.cacheName = cacheName;
+            this.key = key;
+            this.value = value;
+            this.timeoutSeconds = timeoutSeconds;
+            this.onWritten = onWritten;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.tplink.shd.tauc.share.prometheus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个被拦截方法在某个切面、某个角色下的全部指标，创建时一次性注册，记录时不再分配对象。
+ */
+public final class MigrationMeters {
+
+    private final Counter match;
+    private final Counter mismatch;
+    private final Counter oneside;
+    private final Timer redisGet;
+    private final Timer redisSet;
+    private final Timer redisCompare;
+    private final Timer slaveWait;
+    private final Timer proceed;
+
+    MigrationMeters(MeterRegistry registry, String aspect, String role, String method) {
+        Tags tags = Tags.of("aspect", aspect, "role", role, "method", method);
+        this.match = compareCounter(registry, tags, "match");
+        this.mismatch = compareCounter(registry, tags, "mismatch");
+        this.oneside = compareCounter(registry, tags, "oneside");
+        this.redisGet = redisTimer(registry, tags, "get");
+        this.redisSet = redisTimer(registry, tags, "set");
+        this.redisCompare = redisTimer(registry, tags, "compare");
+        this.slaveWait = Timer.builder("migration.slave.wait")
+                .description("Time a slave waits for the master record")
+                .tags(tags).register(registry);
+        this.proceed = Timer.builder("migration.proceed")
+                .description("Business method execution time behind the migration aspects")
+                .tags(tags).register(registry);
+    }
+
+    public void match() {
+        match.increment();
+    }
+
+    public void mismatch() {
+        mismatch.increment();
+    }
+
+    public void oneside() {
+        oneside.increment();
+    }
+
+    public void recordRedisGet(long nanos) {
+        redisGet.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRedisSet(long nanos) {
+        redisSet.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRedisCompare(long nanos) {
+        redisCompare.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSlaveWait(long nanos) {
+        slaveWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordProceed(long nanos) {
+        proceed.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Counter compareCounter(MeterRegistry registry, Tags tags, String result) {
+        return Counter.builder("migration.compare")
+                .description("Master/slave comparison outcomes")
+                .tags(tags).tag("result", result)
+                .register(registry);
+    }
+
+    private static Timer redisTimer(MeterRegistry registry, Tags tags, String op) {
+        return Timer.builder("migration.redis")
+                .description("Latency of migration cache operations")
+                .tags(tags).tag("op", op)
+                .register(registry);
+    }
+}
@@ -0,0 +1,37 @@
+package com.tplink.shd.tauc.share.prometheus;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按方法描述缓存某个切面的指标，首次访问时注册
+ */
+final class MigrationMetersCache {
+
+    private final MeterRegistry registry;
+    private final ExecuteMigration properties;
+    private final String aspect;
+    private final ConcurrentHashMap<MigrationMethodDescriptor, MigrationMeters> meters = new ConcurrentHashMap<>();
+
+    MigrationMetersCache(MeterRegistry registry, ExecuteMigration properties, String aspect) {
+        this.registry = registry;
+        this.properties = properties;
+        this.aspect = aspect;
+    }
+
+    MigrationMeters get(MigrationMethodDescriptor descriptor) {
+        MigrationMeters resolved = meters.get(descriptor);
+        if (resolved == null) {
+            resolved = meters.computeIfAbsent(descriptor, d -> create(d.getMethodKey()));
+        }
+        return resolved;
+    }
+
+    MigrationMeters create(String method) {
+        String role = properties.getKafkaRole() == null ? "none" : properties.getKafkaRole().toLowerCase();
+        return new MigrationMeters(registry, aspect, role, method);
+    }
+}
@@ -1,10 +1,34 @@
 package com.tplink.shd.tauc.share.prometheus;
 
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+@Component
 public class PrometheusMetricMigrationCheckHandler {
+
+    private final MigrationMetersCache checkMeters;
+    private final MigrationMeters unknown; // 未提供方法描述时使用
+
+    public PrometheusMetricMigrationCheckHandler(ObjectProvider<MeterRegistry> meterRegistry, ExecuteMigration properties) {
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.checkMeters = new MigrationMetersCache(registry, properties, "execute_check");
+        this.unknown = checkMeters.create("unknown");
+    }
+
+    // ExecuteCheck 方法的指标
+    public MigrationMeters meters(MigrationMethodDescriptor descriptor) {
+        return checkMeters.get(descriptor);
+    }
+
     public void migrationMismatch() {
+        unknown.mismatch();
     }
 
     public void migrationOneside() {
-
+        unknown.oneside();
     }
 }
@@ -1,12 +1,45 @@
 package com.tplink.shd.tauc.share.prometheus;
 
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+@Component
 public class PrometheusMetricMigrationSaveHandler {
+
+    private final MigrationMetersCache saveMeters;
+    private final MigrationMetersCache kafkaMeters;
+    private final MigrationMeters unknown; // 未提供方法描述时使用
+
+    public PrometheusMetricMigrationSaveHandler(ObjectProvider<MeterRegistry> meterRegistry, ExecuteMigration properties) {
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.saveMeters = new MigrationMetersCache(registry, properties, "execute_save");
+        this.kafkaMeters = new MigrationMetersCache(registry, properties, "execute_kafka");
+        this.unknown = saveMeters.create("unknown");
+    }
+
+    // ExecuteSave 方法的指标
+    public MigrationMeters meters(MigrationMethodDescriptor descriptor) {
+        return saveMeters.get(descriptor);
+    }
+
+    // ExecuteKafka 方法的指标
+    public MigrationMeters kafkaMeters(MigrationMethodDescriptor descriptor) {
+        return kafkaMeters.get(descriptor);
+    }
+
     public void migrationMismatch() {
+        unknown.mismatch();
     }
 
+    public void migrationOneside() {
+        unknown.oneside();
+    }
 
     public void match() {
-        // 处理匹配的逻辑
-        System.out.println("Prometheus: Match detected.");
+        unknown.match();
     }
 }
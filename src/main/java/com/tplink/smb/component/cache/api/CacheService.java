@@ -1,8 +1,30 @@
 package com.tplink.smb.component.cache.api;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 
 public interface CacheService {
     void set(String cacheName, String key, Object value, long timeout, TimeUnit unit);
     <T> T get(String cacheName, String key, Class<T> clazz);
+
+    // 批量写入，默认逐条写入，支持 pipeline 的实现应覆盖为一次往返
+    default void multiSet(String cacheName, Map<String, ?> entries, long timeout, TimeUnit unit) {
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            set(cacheName, entry.getKey(), entry.getValue(), timeout, unit);
+        }
+    }
+
+    // 批量读取，返回结果只包含存在的 key，默认逐条读取，支持 pipeline 的实现应覆盖为一次往返
+    default <T> Map<String, T> multiGet(String cacheName, Collection<String> keys, Class<T> clazz) {
+        Map<String, T> values = new HashMap<>();
+        for (String key : keys) {
+            T value = get(cacheName, key, clazz);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
 }
@@ -0,0 +1,25 @@
+-- KEYS[1] 对端输入key, KEYS[2] 本端输入key
+-- ARGV[1] 参数摘要, ARGV[2] 过期时间(秒), ARGV[3] 是否检查本端已有记录(1/0)
+-- 返回 {返回码, 已有摘要}，返回码与 CompareVerdict 顺序一致，本端记录新写入时只返回 {0}
+local peer = redis.call('GET', KEYS[1])
+if peer then
+    if peer == ARGV[1] then
+        return {1, peer}
+    end
+    return {2, peer}
+end
+if ARGV[3] == '1' then
+    local own = redis.call('GET', KEYS[2])
+    if own then
+        if own == ARGV[1] then
+            return {3, own}
+        end
+        return {4, own}
+    end
+end
+if tonumber(ARGV[2]) > 0 then
+    redis.call('SET', KEYS[2], ARGV[1], 'EX', ARGV[2])
+else
+    redis.call('SET', KEYS[2], ARGV[1])
+end
+return {0}
@@ -0,0 +1,13 @@
+-- KEYS[1] 本端账本hash, KEYS[2] 本端完成标记, KEYS[3] 对端账本hash
+-- ARGV[1] 过期时间(秒), ARGV[2..] 依次为 field 与摘要
+-- 写入本端账本与完成标记，返回对端账本的全部内容，对端尚未写入时为空
+for i = 2, #ARGV, 2 do
+    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+if tonumber(ARGV[1]) > 0 then
+    redis.call('EXPIRE', KEYS[1], ARGV[1])
+    redis.call('SET', KEYS[2], '1', 'EX', ARGV[1])
+else
+    redis.call('SET', KEYS[2], '1')
+end
+return redis.call('HGETALL', KEYS[3])
@@ -0,0 +1,41 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallerResolverTest {
+
+    @Test
+    void proxyClassesAreSkipped() {
+        Object jdkProxy = Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Runnable.class}, (proxy, method, args) -> null);
+        assertTrue(CallerResolver.isSkipped(jdkProxy.getClass()));
+
+        ProxyFactory factory = new ProxyFactory(new Service());
+        factory.setProxyTargetClass(true);
+        assertTrue(CallerResolver.isSkipped(factory.getProxy().getClass()));
+    }
+
+    @Test
+    void lambdaClassesAreCallers() {
+        Runnable lambda = () -> {
+        };
+        assertFalse(CallerResolver.isSkipped(lambda.getClass()));
+        assertFalse(CallerResolver.isSkipped(Service.class));
+    }
+
+    @Test
+    void resolvesBusinessCaller() {
+        Supplier<String> caller = CallerResolver::resolve;
+        assertEquals(CallerResolverTest.class.getName() + ":resolvesBusinessCaller", caller.get());
+    }
+
+    public static class Service {
+    }
+}
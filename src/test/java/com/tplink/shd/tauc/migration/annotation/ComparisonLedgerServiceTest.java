@@ -0,0 +1,75 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.migration.store.MigrationRecordStore;
+import com.tplink.shd.tauc.migration.store.OnesideCheckWheel;
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ComparisonLedgerServiceTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final MigrationRecordStore recordStore = mock(MigrationRecordStore.class);
+    private final OnesideCheckWheel onesideCheckWheel = mock(OnesideCheckWheel.class);
+    private final ComparisonLedgerService ledgerService = new ComparisonLedgerService();
+
+    @BeforeEach
+    void setUp() {
+        properties.getLedger().setEnabled(true);
+        properties.setKafkaRole("slave");
+        properties.setCacheName("cache");
+        properties.setWaitTime(1000);
+        ReflectionTestUtils.setField(ledgerService, "properties", properties);
+        ReflectionTestUtils.setField(ledgerService, "recordStore", recordStore);
+        ReflectionTestUtils.setField(ledgerService, "onesideCheckWheel", onesideCheckWheel);
+        ReflectionTestUtils.setField(ledgerService, "meterRegistry", new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    void clusterWithoutCompactKeysFailsAtStartup() {
+        when(recordStore.isCluster()).thenReturn(true);
+        assertThrows(IllegalStateException.class, ledgerService::validate);
+
+        properties.setCompactKeys(true);
+        assertDoesNotThrow(ledgerService::validate);
+
+        properties.setCompactKeys(false);
+        when(recordStore.isCluster()).thenReturn(false);
+        assertDoesNotThrow(ledgerService::validate);
+    }
+
+    @Test
+    void slaveFirstChecksMasterMarkerThroughRedisTemplate() {
+        properties.setCompactKeys(true);
+        when(recordStore.flushLedger(anyString(), anyString(), anyString(), anyString(), anyMap())).thenReturn(new HashMap<>());
+        MigrationMeters meters = mock(MigrationMeters.class);
+        MigrationMethodDescriptor.KeyTemplates templates = mock(MigrationMethodDescriptor.KeyTemplates.class);
+        when(templates.ledgerField(anyString(), eq(true))).thenReturn("1:digest");
+
+        try (MigrationContext.Scope scope = MigrationContext.open("uuid-1", null)) {
+            MigrationContext context = scope.getContext();
+            ledgerService.append(context, templates, meters, "digest", "detailed");
+            ledgerService.flush(context);
+        }
+
+        ArgumentCaptor<Runnable> onMissing = ArgumentCaptor.forClass(Runnable.class);
+        verify(onesideCheckWheel).schedule(eq("cache"), eq("{uuid-1}lm:done"), eq(true), eq(1000L), onMissing.capture());
+        onMissing.getValue().run();
+        verify(meters).oneside();
+    }
+}
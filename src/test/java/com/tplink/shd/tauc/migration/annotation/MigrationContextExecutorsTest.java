@@ -0,0 +1,114 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MigrationContextExecutorsTest {
+
+    @Test
+    void contextIsAttachedInTaskAndRestoredAfterwards() throws Exception {
+        ExecutorService executor = MigrationContextExecutors.wrap(Executors.newSingleThreadExecutor());
+        try (MigrationContext.Scope ignored = MigrationContext.open("uuid-1", null)) {
+            MigrationContext.current().setAttribute("key", "value");
+            Future<String> seen = executor.submit(() -> MigrationContext.currentUuid() + ":" + MigrationContext.current().getAttribute("key"));
+            assertEquals("uuid-1:value", seen.get());
+        }
+        assertNull(executor.submit(MigrationContext::currentUuid).get());
+        executor.shutdown();
+    }
+
+    @Test
+    void parallelBranchesNumberSequencesBySubmissionOrder() throws Exception {
+        ExecutorService executor = MigrationContextExecutors.wrap(Executors.newFixedThreadPool(2));
+        CountDownLatch firstMayRun = new CountDownLatch(1);
+        try (MigrationContext.Scope ignored = MigrationContext.open("uuid-2", null)) {
+            MigrationContext root = MigrationContext.current();
+            assertEquals("1", root.nextSequence());
+            Future<List<String>> first = executor.submit(() -> {
+                firstMayRun.await(); // 第二个分支先执行，编号仍按提交顺序
+                return sequences(2);
+            });
+            Future<List<String>> second = executor.submit(() -> sequences(2));
+            assertEquals(List.of("2.1", "2.2"), second.get());
+            firstMayRun.countDown();
+            assertEquals(List.of("1.1", "1.2"), first.get());
+            assertEquals("2", root.nextSequence());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void nestedBranchesExtendTheParentPrefix() {
+        try (MigrationContext.Scope ignored = MigrationContext.open("uuid-3", null)) {
+            String nested = MigrationContextExecutors.supplyAsync(() ->
+                    MigrationContextExecutors.supplyAsync(() -> MigrationContext.current().nextSequence()).join()).join();
+            assertEquals("1.1.1", nested);
+        }
+    }
+
+    @Test
+    void scheduledExecutorKeepsSchedulingInterface() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService wrapped = MigrationContextExecutors.wrap((ExecutorService) scheduler);
+        assertInstanceOf(ScheduledExecutorService.class, wrapped);
+        try (MigrationContext.Scope ignored = MigrationContext.open("uuid-4", null)) {
+            assertEquals("uuid-4", ((ScheduledExecutorService) wrapped)
+                    .schedule(MigrationContext::currentUuid, 1, TimeUnit.MILLISECONDS).get());
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    void existingTaskDecoratorIsComposed() throws Exception {
+        ExecuteMigration properties = new ExecuteMigration();
+        properties.getContextPropagation().getExecutorBeanNames().add("asyncExecutor");
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("properties", properties);
+        BeanPostProcessor postProcessor = MigrationContextConfiguration.migrationContextExecutorPostProcessor(
+                beanFactory.getBeanProvider(ExecuteMigration.class));
+
+        List<String> decorated = new ArrayList<>();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setTaskDecorator(task -> {
+            decorated.add("app");
+            return task;
+        });
+        Object processed = postProcessor.postProcessBeforeInitialization(executor, "asyncExecutor");
+        executor.initialize();
+        assertSame(executor, postProcessor.postProcessAfterInitialization(processed, "asyncExecutor"));
+
+        AtomicReference<String> seen = new AtomicReference<>();
+        try (MigrationContext.Scope ignored = MigrationContext.open("uuid-5", null)) {
+            CompletableFuture.runAsync(() -> seen.set(MigrationContext.currentUuid()), executor).get();
+        }
+        assertEquals("uuid-5", seen.get());
+        assertEquals(List.of("app"), decorated);
+        executor.shutdown();
+    }
+
+    private static List<String> sequences(int count) {
+        List<String> sequences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sequences.add(MigrationContext.current().nextSequence());
+        }
+        return sequences;
+    }
+}
@@ -0,0 +1,52 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationMethodDescriptorTest {
+
+    private final ExecuteSaveAspect aspect = new ExecuteSaveAspect();
+
+    @Test
+    void taggedTemplatesMatchLegacyKeys() throws NoSuchMethodException {
+        MigrationMethodDescriptor descriptor = MigrationMethodDescriptor.of(DeviceService.class.getMethod("tagged", String.class));
+        assertFalse(descriptor.isCallerScoped());
+        MigrationMethodDescriptor.KeyTemplates templates = descriptor.getTagTemplates();
+
+        assertEquals(aspect.generateKey("uuid-1", "master", "device-save", "0a1b"), templates.masterKey("uuid-1", "0a1b"));
+        assertEquals(aspect.generateKey("uuid-1", "slave", "device-save", "0a1b"), templates.slaveKey("uuid-1", "0a1b"));
+        assertEquals("uuid-1:master:device-save:0a1b", templates.masterKey("uuid-1", "0a1b"));
+    }
+
+    @Test
+    void callerTemplatesMatchLegacyKeys() throws NoSuchMethodException {
+        MigrationMethodDescriptor descriptor = MigrationMethodDescriptor.of(DeviceService.class.getMethod("untagged", String.class));
+        assertTrue(descriptor.isCallerScoped());
+        assertEquals("DeviceService:untagged", descriptor.getMethodKey());
+        MigrationMethodDescriptor.KeyTemplates templates = descriptor.callerTemplates("DeviceController:save");
+        assertSame(templates, descriptor.callerTemplates("DeviceController:save"));
+
+        // 旧实现的 keyPart 为 当前方法信息:调用者方法信息
+        String keyPart = "DeviceService:untagged:DeviceController:save";
+        for (String uuid : new String[]{"uuid-1", "a:b}c%", ""}) {
+            assertEquals(aspect.generateKey(uuid, "master", keyPart, "ff"), templates.masterKey(uuid, "ff"));
+            assertEquals(aspect.generateKey(uuid, "slave", keyPart, "ff"), templates.slaveKey(uuid, "ff"));
+        }
+        assertEquals("uuid-1:slave:DeviceService:untagged:UnknownCaller:ff",
+                descriptor.callerTemplates("UnknownCaller").slaveKey("uuid-1", "ff"));
+    }
+
+    static class DeviceService {
+        @ExecuteSave(tag = "device-save")
+        public void tagged(String id) {
+        }
+
+        @ExecuteSave
+        public void untagged(String id) {
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MigrationSamplerTest {
+
+    @Test
+    void contextAndUuidSamplingAgree() {
+        ExecuteMigration properties = new ExecuteMigration();
+        MigrationSampler sampler = new MigrationSampler();
+        ReflectionTestUtils.setField(sampler, "properties", properties);
+        MigrationMethodDescriptor descriptor = mock(MigrationMethodDescriptor.class);
+        when(descriptor.getTag()).thenReturn("");
+        when(descriptor.getMethodKey()).thenReturn("Service:find");
+
+        for (int i = 0; i < 200; i++) {
+            String uuid = "uuid-" + i;
+            try (MigrationContext.Scope scope = MigrationContext.open(uuid, null)) {
+                MigrationContext context = scope.getContext();
+                assertEquals(MigrationSampler.samplingPoint(uuid), context.samplingPoint());
+                assertEquals(MigrationSampler.samplingPoint(uuid), context.fork().samplingPoint());
+                for (double rate : new double[]{0.0, 0.1, 0.5, 1.0}) {
+                    properties.getSampling().setRate(rate);
+                    assertEquals(sampler.isSampled(uuid, descriptor), sampler.isSampled(context, descriptor));
+                }
+            }
+        }
+    }
+
+    @Test
+    void samplingPointIsStableAndInUnitInterval() {
+        double point = MigrationSampler.samplingPoint("uuid-1");
+        assertEquals(point, MigrationSampler.samplingPoint(new String("uuid-1")));
+        assertTrue(point >= 0.0 && point < 1.0);
+        assertFalse(new MigrationSampler().isSampled("uuid-1", 0.0));
+        assertTrue(new MigrationSampler().isSampled("uuid-1", 1.0));
+    }
+}
@@ -0,0 +1,74 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import com.tplink.shd.tauc.share.prometheus.MigrationMeters;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReactiveSupportTest {
+
+    private final ReactiveAdapter adapter = ReactiveAdapterRegistry.getSharedInstance().getAdapter(Flux.class);
+
+    @Test
+    void proceedRestoresContextAndMdcOnSubscribingThread() throws Throwable {
+        AtomicReference<MigrationContext> seenContext = new AtomicReference<>();
+        AtomicReference<String> seenMdc = new AtomicReference<>();
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.proceed()).thenAnswer(invocation -> {
+            seenContext.set(MigrationContext.current());
+            seenMdc.set(MDC.get("traceId"));
+            return Flux.just("a");
+        });
+
+        Flux<Object> output;
+        MigrationContext context;
+        MDC.put("traceId", "trace-1");
+        try (MigrationContext.Scope scope = MigrationContext.open("uuid-1", "uuid")) {
+            context = scope.getContext();
+            output = ReactiveSupport.proceed(joinPoint, adapter, mock(MigrationMeters.class));
+        } finally {
+            MDC.remove("traceId");
+        }
+
+        AtomicReference<String> after = new AtomicReference<>();
+        List<Object> values = output.subscribeOn(Schedulers.boundedElastic())
+                .doOnComplete(() -> after.set(MDC.get("traceId")))
+                .collectList().block();
+
+        assertEquals(List.of("a"), values);
+        assertSame(context, seenContext.get());
+        assertEquals("trace-1", seenMdc.get());
+        assertNull(after.get()); // 执行原方法后恢复订阅线程原有的 MDC
+    }
+
+    @Test
+    void recordedElementsAreCappedWithMarker() {
+        RecordedElements elements = new RecordedElements(2);
+        Flux.just(1, 2, 3).subscribe(elements);
+        List<Object> recorded = elements.toList();
+
+        assertEquals(Arrays.asList(1, 2, RecordedElements.TRUNCATED), recorded);
+        assertTrue(RecordedElements.isTruncated(recorded));
+
+        RecordedElements complete = new RecordedElements(3);
+        Flux.just(1, 2, 3).subscribe(complete);
+        assertEquals(List.of(1, 2, 3), complete.toList());
+        assertFalse(RecordedElements.isTruncated(complete.toList()));
+    }
+}
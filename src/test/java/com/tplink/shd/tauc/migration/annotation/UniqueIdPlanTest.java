@@ -0,0 +1,75 @@
+package com.tplink.shd.tauc.migration.annotation;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UniqueIdPlanTest {
+
+    @Test
+    void defaultPathsToleratesMissingParameters() throws Throwable {
+        Method method = method("single");
+        assertEquals("device-1-", UniqueIdPlan.compile(method, method.getAnnotation(InsertUniqueId.class)).generate(new Object[]{"device-1"}));
+        assertEquals("device-1-", UniqueIdPlan.defaultPlan(method).generate(new Object[]{"device-1"}));
+    }
+
+    @Test
+    void configuredIndexBeyondParametersFailsAtCompileTime() throws NoSuchMethodException {
+        Method method = method("outOfRange");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> UniqueIdPlan.compile(method, method.getAnnotation(InsertUniqueId.class)));
+        assertTrue(e.getMessage().contains("'2'"));
+    }
+
+    @Test
+    void propertyPathsAreNullSafe() throws Throwable {
+        Method method = method("nested");
+        UniqueIdPlan plan = UniqueIdPlan.compile(method, method.getAnnotation(InsertUniqueId.class));
+        assertEquals("device-1-7", plan.generate(new Object[]{new Device("device-1", new Owner(7)), 1}));
+        assertEquals("device-1-", plan.generate(new Object[]{new Device("device-1", null), 1}));
+    }
+
+    @Test
+    void unknownPropertyFailsAtCompileTime() throws NoSuchMethodException {
+        Method method = method("unknownProperty");
+        assertThrows(IllegalArgumentException.class, () -> UniqueIdPlan.compile(method, method.getAnnotation(InsertUniqueId.class)));
+    }
+
+    private static Method method(String name) throws NoSuchMethodException {
+        for (Method method : Fixtures.class.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Fixtures {
+        @InsertUniqueId
+        void single(String id) {
+        }
+
+        @InsertUniqueId({"0", "2"})
+        void outOfRange(String id, int port) {
+        }
+
+        @InsertUniqueId({"0.id", "0.owner.id"})
+        void nested(Device device, int port) {
+        }
+
+        @InsertUniqueId({"0.serial"})
+        void unknownProperty(Device device) {
+        }
+    }
+
+    record Device(String id, Owner owner) {
+    }
+
+    record Owner(int id) {
+    }
+}
@@ -0,0 +1,87 @@
+package com.tplink.shd.tauc.migration.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryMigrationCodecTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final BinaryMigrationCodec codec =
+            new BinaryMigrationCodec(new DefaultListableBeanFactory().getBeanProvider(ObjectMapper.class), properties);
+
+    @Test
+    void builtInTypesRoundTrip() {
+        Object value = List.of("a", 1, 2L, true, 1.5, Map.of("k", Set.of("v")));
+        assertEquals(value, codec.decode(codec.encode(value)));
+    }
+
+    @Test
+    void jdkValueTypesRoundTripWithDefaultPackages() {
+        Object value = List.of(1.5f, (short) 3, (byte) 4, 'c', UUID.randomUUID(), new Date(-1234L),
+                Optional.of("x"), Optional.empty(), Map.of("at", new Date(1700000000000L)));
+        assertEquals(value, codec.decode(codec.encode(value)));
+    }
+
+    @Test
+    void arraysKeepComponentType() {
+        String[] strings = {"a", null, "b"};
+        Object decoded = codec.decode(codec.encode(strings));
+        assertEquals(String[].class, decoded.getClass());
+        assertArrayEquals(strings, (String[]) decoded);
+
+        Integer[][] matrix = {{1, 2}, {}, null};
+        decoded = codec.decode(codec.encode(matrix));
+        assertEquals(Integer[][].class, decoded.getClass());
+        assertArrayEquals(matrix, (Integer[][]) decoded);
+
+        Object[] mixed = {"a", 1L, List.of(UUID.randomUUID())};
+        assertArrayEquals(mixed, (Object[]) codec.decode(codec.encode(mixed)));
+    }
+
+    @Test
+    void jsonFallbackLoadsAllowedPackagesOnly() {
+        assertEquals(new BigDecimal("1.25"), codec.decode(codec.encode(new BigDecimal("1.25"))));
+
+        byte[] encoded = codec.encode(new Device("device-1")); // 测试类在默认的 com.tplink. 之内，先收紧允许列表
+        properties.setCodecJsonPackages(Set.of("java."));
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> codec.decode(encoded));
+        assertTrue(e.getMessage().contains(Device.class.getName()));
+
+        properties.setCodecJsonPackages(Set.of("com.tplink.shd.tauc.migration.codec."));
+        assertEquals("device-1", ((Device) codec.decode(encoded)).getId());
+    }
+
+    public static class Device {
+        private String id;
+
+        public Device() {
+        }
+
+        Device(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.tplink.shd.tauc.migration.diff;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutputDiffPoolTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final OutputDiffPool pool = new OutputDiffPool();
+    private final MigrationMethodDescriptor descriptor = mock(MigrationMethodDescriptor.class);
+
+    @BeforeEach
+    void setUp() {
+        properties.getOutputDiff().setThreads(1);
+        properties.getOutputDiff().setQueueCapacity(1);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        ReflectionTestUtils.setField(pool, "properties", properties);
+        ReflectionTestUtils.setField(pool, "objectMapper", beanFactory.getBeanProvider(ObjectMapper.class));
+        ReflectionTestUtils.setField(pool, "meterRegistry", beanFactory.getBeanProvider(MeterRegistry.class));
+        when(descriptor.getMethodKey()).thenReturn("Service:find");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pool.shutdown();
+    }
+
+    @Test
+    void reservationsAreBoundedAndReturned() {
+        OutputDiffPool.Reservation first = pool.reserve(descriptor);
+        OutputDiffPool.Reservation second = pool.reserve(descriptor);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(pool.reserve(descriptor)); // 一个线程加一个队列位置
+
+        first.release();
+        first.fail(); // 重复归还不生效
+        assertNotNull(pool.reserve(descriptor));
+        assertNull(pool.reserve(descriptor));
+    }
+}
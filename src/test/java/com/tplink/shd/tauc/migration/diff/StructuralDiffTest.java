@@ -0,0 +1,63 @@
+package com.tplink.shd.tauc.migration.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StructuralDiffTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void reportsChangedAndMissingFields() throws Exception {
+        List<Difference> differences = StructuralDiff.compile(Set.of(), 20)
+                .diff(tree("{\"a\":1,\"b\":{\"c\":\"x\"},\"d\":[1,2]}"), tree("{\"a\":1.0,\"b\":{\"c\":\"y\"},\"d\":[1],\"e\":true}"));
+
+        assertEquals(3, differences.size());
+        assertEquals("/b/c", differences.get(0).getPath());
+        assertEquals(Difference.Kind.CHANGED, differences.get(0).getKind());
+        assertEquals("/d/1", differences.get(1).getPath());
+        assertEquals(Difference.Kind.MISSING_IN_SLAVE, differences.get(1).getKind());
+        assertEquals("/e", differences.get(2).getPath());
+        assertEquals(Difference.Kind.MISSING_IN_MASTER, differences.get(2).getKind());
+    }
+
+    @Test
+    void ignoresExactAndWildcardPaths() throws Exception {
+        StructuralDiff differ = StructuralDiff.compile(List.of("/updateTime", "/items/*/id", "/a~1b"), 20);
+        assertTrue(differ.diff(tree("{\"updateTime\":1,\"items\":[{\"id\":1,\"n\":\"x\"}],\"a/b\":1}"),
+                tree("{\"updateTime\":2,\"items\":[{\"id\":2,\"n\":\"x\"}],\"a/b\":2}")).isEmpty());
+        assertTrue(StructuralDiff.compile(List.of("/"), 20).diff(tree("{\"a\":1}"), tree("{\"a\":2}")).isEmpty());
+    }
+
+    @Test
+    void trailingSlashDoesNotAddEmptySegment() throws Exception {
+        StructuralDiff differ = StructuralDiff.compile(List.of("/items/"), 20);
+        assertTrue(differ.diff(tree("{\"items\":[1],\"n\":1}"), tree("{\"items\":[2],\"n\":1}")).isEmpty());
+    }
+
+    @Test
+    void nonFiniteNumbersDoNotThrow() {
+        StructuralDiff differ = StructuralDiff.compile(Set.of(), 20);
+        assertTrue(differ.diff(DoubleNode.valueOf(Double.NaN), DoubleNode.valueOf(Double.NaN)).isEmpty());
+        assertEquals(1, differ.diff(DoubleNode.valueOf(Double.NaN), IntNode.valueOf(1)).size());
+        assertEquals(1, differ.diff(DoubleNode.valueOf(Double.POSITIVE_INFINITY), DoubleNode.valueOf(Double.NEGATIVE_INFINITY)).size());
+    }
+
+    @Test
+    void stopsAtMaxDifferences() throws Exception {
+        assertEquals(2, StructuralDiff.compile(Set.of(), 2).diff(tree("[1,2,3,4]"), tree("[5,6,7,8]")).size());
+    }
+
+    private JsonNode tree(String json) throws Exception {
+        return mapper.readTree(json);
+    }
+}
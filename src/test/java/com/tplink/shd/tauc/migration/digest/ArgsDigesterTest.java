@@ -0,0 +1,136 @@
+package com.tplink.shd.tauc.migration.digest;
+
+import com.tplink.shd.tauc.migration.annotation.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ArgsDigesterTest {
+
+    private static final Object[] ARGS = {"device-1", 42, null};
+
+    @Test
+    void detailedDigestJoinsArgsWithColon() {
+        assertEquals("device-1:42:null", ArgsDigester.digest(ARGS, DigestAlgorithm.MURMUR3_128).getDetailed());
+        assertEquals("device-1:42:null", ArgsDigester.detailed(ARGS));
+    }
+
+    @Test
+    void md5DigestMatchesLegacyCommaJoinedHash() {
+        String legacy = HashUtils.generateSimpleHash("device-1,42,null");
+        assertEquals("c01dec694c78e267ba92a0cbd64c0e3f", legacy);
+        assertEquals(legacy, ArgsDigester.digest(ARGS, DigestAlgorithm.MD5).getSimple());
+    }
+
+    @Test
+    void murmurDigestMatchesReferenceVector() {
+        // 对摘要文本的 UTF-16LE 字节计算 MurmurHash3 x64 128（种子 0），h1、h2 各按大端序输出十六进制；
+        // 参考值由独立的按字节实现计算。Guava hashUnencodedChars 的哈希值相同，但 HashCode.toString 按小端序输出，
+        // 即 29e5a7388da5e16e08b0dedbca128de1
+        assertEquals("6ee1a58d38a7e529e18d12cadbdeb008", ArgsDigester.digest(ARGS, DigestAlgorithm.MURMUR3_128).getSimple());
+        assertEquals("96a698500b4e98bdb278c9bfc754677d", // 只有尾部
+                ArgsDigester.digest(new Object[]{"a"}, DigestAlgorithm.MURMUR3_128).getSimple());
+        assertEquals("31305954f68d483fe85e7f8f4b32641e", // 一个完整块加超过 4 个字符的尾部
+                ArgsDigester.digest(new Object[]{"abcdefgh12345"}, DigestAlgorithm.MURMUR3_128).getSimple());
+    }
+
+    @Test
+    void reentrantToStringDoesNotCorruptBuffer() {
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                return ArgsDigester.detailed(new Object[]{"inner", 1});
+            }
+        };
+        assertEquals("outer:inner:1", ArgsDigester.detailed(new Object[]{"outer", nested}));
+    }
+
+    @Test
+    void objectsWithoutToStringAreDigestedByFields() {
+        Device device = new Device("device-1", 42);
+        assertEquals("Device(id=device-1, port=42)", ArgsDigester.detailed(new Object[]{device}));
+        assertEquals(ArgsDigester.detailed(new Object[]{device}), ArgsDigester.detailed(new Object[]{new Device("device-1", 42)}));
+    }
+
+    @Test
+    void setsAndMapsAreOrderIndependent() {
+        Set<String> forward = new LinkedHashSet<>(List.of("b", "a", "c"));
+        Set<String> backward = new LinkedHashSet<>(List.of("c", "a", "b"));
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("y", 2);
+        map.put("x", 1);
+        assertEquals("[a, b, c]:{x=1, y=2}", ArgsDigester.detailed(new Object[]{forward, map}));
+        assertEquals(ArgsDigester.detailed(new Object[]{forward}), ArgsDigester.detailed(new Object[]{backward}));
+        assertEquals("[b, a, c]", ArgsDigester.detailed(new Object[]{List.of("b", "a", "c")}));
+    }
+
+    @Test
+    void cyclicObjectsAreDigestedOnce() {
+        Node parent = new Node("root");
+        Node child = new Node("leaf");
+        child.parent = parent;
+        parent.children.add(child);
+        parent.children.add(child); // 兄弟位置上的同一对象不是循环，照常展开
+        assertEquals("Node(children=[Node(children=[], name=leaf, parent=<cycle:Node>), "
+                        + "Node(children=[], name=leaf, parent=<cycle:Node>)], name=root, parent=null)",
+                ArgsDigester.detailed(new Object[]{parent}));
+    }
+
+    @Test
+    void customCollectionToStringAndPrimitiveArrays() {
+        assertEquals("Range(1..3):[1, 2]:[a, b]:[true]:[1.5]",
+                ArgsDigester.detailed(new Object[]{new Range(3), new int[]{1, 2}, new char[]{'a', 'b'},
+                        new boolean[]{true}, new double[]{1.5}}));
+    }
+
+    private static final class Node {
+        private final String name;
+        private final List<Node> children = new ArrayList<>();
+        private Node parent;
+
+        private Node(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Range extends AbstractList<Integer> {
+        private final int size;
+
+        private Range(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return index + 1;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "Range(1.." + size + ")";
+        }
+    }
+
+    private static final class Device {
+        private final String id;
+        private final int port;
+
+        private Device(String id, int port) {
+            this.id = id;
+            this.port = port;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.tplink.shd.tauc.migration.kafka;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.ExecuteSaveAspect;
+import com.tplink.shd.tauc.migration.store.CompareRequest;
+import com.tplink.shd.tauc.migration.store.CompareResult;
+import com.tplink.shd.tauc.migration.store.MigrationRecordStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaShadowBatcherTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final MigrationRecordStore recordStore = mock(MigrationRecordStore.class);
+    private final ExecuteSaveAspect executeSaveAspect = mock(ExecuteSaveAspect.class);
+    private final List<List<CompareRequest>> batches = Collections.synchronizedList(new ArrayList<>());
+    private final KafkaShadowBatcher batcher = new KafkaShadowBatcher();
+
+    @BeforeEach
+    void setUp() {
+        when(recordStore.compareAndRecordAll(eq("cache"), anyList())).thenAnswer(invocation -> {
+            List<CompareRequest> requests = invocation.getArgument(1);
+            batches.add(new ArrayList<>(requests));
+            return Collections.nCopies(requests.size(), CompareResult.firstWriter());
+        });
+        ReflectionTestUtils.setField(batcher, "properties", properties);
+        ReflectionTestUtils.setField(batcher, "recordStore", recordStore);
+        ReflectionTestUtils.setField(batcher, "executeSaveAspect", executeSaveAspect);
+        ReflectionTestUtils.setField(batcher, "meterRegistry", new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        batcher.shutdown();
+    }
+
+    @Test
+    void fullBatchIsFlushedBeforeTheWindowEnds() {
+        properties.getKafkaBatch().setMaxBatchSize(3);
+        properties.getKafkaBatch().setWindowMillis(60_000);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(enqueue("topic", i));
+        }
+        // 比对结果在批量读取返回后才记录，等到结果记录完成再检查批次，调用 compareAndRecordAll 时批次可能尚未加入
+        verify(executeSaveAspect, timeout(1000).times(3)).recordVerdict(eq(true), eq(CompareResult.firstWriter()), any(), eq("cache"),
+                any(), any(), any());
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.get(0).size());
+    }
+
+    @Test
+    void partialBatchIsFlushedWhenTheWindowEnds() {
+        properties.getKafkaBatch().setMaxBatchSize(100);
+        properties.getKafkaBatch().setWindowMillis(300);
+        assertTrue(enqueue("topic", 1));
+        assertTrue(enqueue("topic", 2));
+        verify(recordStore, after(100).never()).compareAndRecordAll(eq("cache"), anyList());
+        verify(executeSaveAspect, timeout(1000).times(2)).recordVerdict(eq(true), eq(CompareResult.firstWriter()), any(), eq("cache"),
+                any(), any(), any());
+        assertEquals(2, batches.get(0).size());
+    }
+
+    @Test
+    void remainingMessagesAreFlushedOnShutdownAndLaterOnesRejected() throws InterruptedException {
+        properties.getKafkaBatch().setMaxBatchSize(100);
+        properties.getKafkaBatch().setWindowMillis(60_000);
+        assertTrue(enqueue("topic", 1));
+        batcher.shutdown();
+        assertEquals(1, batches.size());
+        assertFalse(enqueue("topic", 2));
+        verify(recordStore, times(1)).compareAndRecordAll(eq("cache"), anyList());
+        verify(executeSaveAspect, never()).recordVerdict(eq(true), eq(CompareResult.firstWriter()), any(), eq("cache"),
+                eq("master:2"), any(), any());
+    }
+
+    private boolean enqueue(String topic, int id) {
+        return batcher.enqueue(topic, true, null, "cache", "master:" + id, "slave:" + id, "digest-" + id);
+    }
+}
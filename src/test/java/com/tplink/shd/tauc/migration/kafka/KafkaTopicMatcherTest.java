@@ -0,0 +1,69 @@
+package com.tplink.shd.tauc.migration.kafka;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KafkaTopicMatcherTest {
+
+    private final KafkaTopicMatcher matcher = KafkaTopicMatcher.compile(
+            "tauc.device.event, tauc.device.*, tauc.site.*.report, tauc.*", null);
+
+    @Test
+    void exactTopicWinsOverPatterns() {
+        assertEquals("tauc.device.event", matcher.match("tauc.device.event").getPattern());
+    }
+
+    @Test
+    void trailingStarMatchesAnySuffix() {
+        assertEquals("tauc.device.*", matcher.match("tauc.device.status").getPattern());
+        assertEquals("tauc.device.*", matcher.match("tauc.device.status.v2").getPattern());
+        assertEquals("tauc.*", matcher.match("tauc.other").getPattern());
+    }
+
+    @Test
+    void innerStarMatchesOneDottedSegment() {
+        assertEquals("tauc.site.*.report", matcher.match("tauc.site.eu-west.report").getPattern());
+        // 中间的 * 不跨越 .，退回到更短的 tauc.* 模式
+        assertEquals("tauc.*", matcher.match("tauc.site.eu.west.report").getPattern());
+        assertEquals("tauc.*", matcher.match("tauc.site..report").getPattern());
+    }
+
+    @Test
+    void unmatchedTopicReturnsNull() {
+        assertNull(matcher.match("other.device.event"));
+        assertNull(matcher.match("tauc"));
+        assertNull(KafkaTopicMatcher.compile(" , ", null).match("tauc.device.event"));
+    }
+
+    @Test
+    void settingsKeysTakePartInMatching() {
+        ExecuteMigration.KafkaTopic batch = new ExecuteMigration.KafkaTopic();
+        batch.setBatch(true);
+        Map<String, ExecuteMigration.KafkaTopic> settings = new LinkedHashMap<>();
+        settings.put("tauc.batch.*", batch);
+        KafkaTopicSettings matched = KafkaTopicMatcher.compile("tauc.device.event", settings).match("tauc.batch.report");
+        assertTrue(matched.isBatch());
+    }
+
+    @Test
+    void propertiesRecompileAfterEachChange() {
+        ExecuteMigration properties = new ExecuteMigration();
+        properties.setKafkaTopics("tauc.device.event");
+        KafkaTopicMatcher first = properties.kafkaTopicMatcher();
+        assertSame(first, properties.kafkaTopicMatcher());
+        assertNull(first.match("tauc.site.report"));
+
+        properties.setKafkaTopics("tauc.site.*");
+        assertEquals("tauc.site.*", properties.kafkaTopicMatcher().match("tauc.site.report").getPattern());
+        properties.setKafkaTopicSettings(new LinkedHashMap<>(Map.of("tauc.device.event", new ExecuteMigration.KafkaTopic())));
+        assertEquals("tauc.device.event", properties.kafkaTopicMatcher().match("tauc.device.event").getPattern());
+    }
+}
@@ -0,0 +1,171 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.codec.BinaryMigrationCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordLogReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void payloadRoundTripWithMultiByteLengths() throws IOException {
+        byte[] args = new byte[300]; // 长度需要两个字节的 varint
+        Arrays.fill(args, (byte) 7);
+        byte[] frame = new byte[20000]; // 三个字节的 varint
+        Arrays.fill(frame, (byte) 9);
+        writeSegment("segment-0000000000001-host-1-000001.log",
+                record(RecordLogFormat.payload(42L, "uuid-1", "Service:call", args, frame)),
+                record(RecordLogFormat.payload(43L, "uuid-2", "Service:call", null, new byte[]{1})));
+
+        List<RecordedCall> calls = readAll();
+        assertEquals(2, calls.size());
+        assertEquals(42L, calls.get(0).getTimestampMillis());
+        assertEquals("uuid-1", calls.get(0).getUuid());
+        assertEquals("Service:call", calls.get(0).getMethodKey());
+        assertArrayEquals(args, calls.get(0).getArgs());
+        assertArrayEquals(frame, calls.get(0).getInOutFrame());
+        assertNull(calls.get(1).getArgs()); // 未记录参数
+    }
+
+    @Test
+    void zeroLengthEndsTheSegment() throws IOException {
+        writeSegment("segment-0000000000001-host-1-000001.log",
+                record(RecordLogFormat.payload(1L, "uuid-1", "Service:call", null, new byte[]{1})),
+                new byte[RecordLogFormat.RECORD_HEADER_BYTES],
+                record(RecordLogFormat.payload(2L, "uuid-2", "Service:call", null, new byte[]{1})));
+
+        List<RecordedCall> calls = readAll();
+        assertEquals(1, calls.size());
+        assertEquals("uuid-1", calls.get(0).getUuid());
+    }
+
+    @Test
+    void truncatedRecordWithBadChecksumSkipsTheRestOfTheSegment() throws IOException {
+        byte[] torn = record(RecordLogFormat.payload(2L, "uuid-2", "Service:call", null, new byte[]{1, 2, 3, 4}));
+        Arrays.fill(torn, torn.length - 4, torn.length, (byte) 0); // 崩溃时负载只写了一部分
+        writeSegment("segment-0000000000001-host-1-000001.log",
+                record(RecordLogFormat.payload(1L, "uuid-1", "Service:call", null, new byte[]{1})),
+                torn,
+                record(RecordLogFormat.payload(3L, "uuid-3", "Service:call", null, new byte[]{1})));
+        writeSegment("segment-0000000000002-host-2-000001.log",
+                record(RecordLogFormat.payload(4L, "uuid-4", "Service:call", null, new byte[]{1})));
+        Files.write(directory.resolve("segment-1.log"), new byte[16]); // 不是分段文件名，忽略
+
+        List<String> uuids = new ArrayList<>();
+        for (RecordedCall call : readAll()) {
+            uuids.add(call.getUuid());
+        }
+        assertEquals(List.of("uuid-1", "uuid-4"), uuids);
+    }
+
+    @Test
+    void recordLogRollsSegmentsAndKeepsTheNewest() throws Exception {
+        ExecuteMigration properties = new ExecuteMigration();
+        properties.getRecordLog().setEnabled(true);
+        properties.getRecordLog().setDirectory(directory.toString());
+        properties.getRecordLog().setSegmentSizeMb(1);
+        properties.getRecordLog().setMaxSegments(2);
+        properties.getRecordLog().setRecordArgs(false);
+        MigrationRecordLog recordLog = recordLog(properties);
+        recordLog.init();
+
+        byte[] frame = new byte[300 * 1024]; // 每个 1MB 分段放下 3 条
+        for (int i = 0; i < 12; i++) {
+            recordLog.append(recordLog.begin("uuid-" + (100 + i), "Service:call", new Object[0]), frame);
+            Thread.sleep(20); // 等待后台线程创建下一个分段
+        }
+        recordLog.shutdown();
+
+        List<Path> segments = RecordLogReader.segments(directory);
+        assertEquals(2, segments.size()); // 最多保留两个分段，提前创建但未写入的分段已删除
+        List<String> uuids = new ArrayList<>();
+        RecordLogReader.read(directory, call -> uuids.add(call.getUuid()));
+        assertTrue(uuids.size() >= 4);
+        List<String> sorted = new ArrayList<>(uuids);
+        Collections.sort(sorted);
+        assertEquals(sorted, uuids); // 分段按创建顺序读取
+        assertEquals("uuid-111", uuids.get(uuids.size() - 1));
+        recordLog.append(recordLog.begin("late", "Service:call", new Object[0]), frame); // 关闭后丢弃，不抛出异常
+    }
+
+    @Test
+    void recordLogCreatesMissingDirectoryAtStartup() throws Exception {
+        Path missing = directory.resolve("nested/migration-record");
+        ExecuteMigration properties = new ExecuteMigration();
+        properties.getRecordLog().setEnabled(true);
+        properties.getRecordLog().setDirectory(missing.toString());
+        properties.getRecordLog().setSegmentSizeMb(1);
+        properties.getRecordLog().setRecordArgs(false);
+        MigrationRecordLog recordLog = recordLog(properties);
+
+        recordLog.init(); // 第一个分段在后台创建
+        Future<?> prepared = (Future<?>) ReflectionTestUtils.getField(recordLog, "next");
+        prepared.get(5, TimeUnit.SECONDS);
+        assertEquals(1, RecordLogReader.segments(missing).size());
+        recordLog.append(recordLog.begin("uuid-1", "Service:call", new Object[0]), new byte[]{1});
+        recordLog.shutdown();
+
+        List<String> uuids = new ArrayList<>();
+        RecordLogReader.read(missing, call -> uuids.add(call.getUuid()));
+        assertEquals(List.of("uuid-1"), uuids);
+    }
+
+    private static MigrationRecordLog recordLog(ExecuteMigration properties) {
+        MigrationRecordLog recordLog = new MigrationRecordLog();
+        ReflectionTestUtils.setField(recordLog, "properties", properties);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        ReflectionTestUtils.setField(recordLog, "codec", new BinaryMigrationCodec(beanFactory.getBeanProvider(ObjectMapper.class), properties));
+        ReflectionTestUtils.setField(recordLog, "meterRegistry", beanFactory.getBeanProvider(MeterRegistry.class));
+        return recordLog;
+    }
+
+    private List<RecordedCall> readAll() throws IOException {
+        List<RecordedCall> calls = new ArrayList<>();
+        RecordLogReader.read(directory, calls::add);
+        return calls;
+    }
+
+    private void writeSegment(String name, byte[]... records) throws IOException {
+        int size = RecordLogFormat.SEGMENT_HEADER_BYTES + RecordLogFormat.RECORD_HEADER_BYTES;
+        for (byte[] record : records) {
+            size += record.length;
+        }
+        ByteBuffer segment = ByteBuffer.allocate(size + 64); // 末尾留出未写入的 0
+        segment.putInt(RecordLogFormat.MAGIC).putInt(RecordLogFormat.VERSION);
+        for (byte[] record : records) {
+            segment.put(record);
+        }
+        Files.write(directory.resolve(name), segment.array());
+    }
+
+    private static byte[] record(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return ByteBuffer.allocate(RecordLogFormat.RECORD_HEADER_BYTES + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+    }
+}
@@ -0,0 +1,106 @@
+package com.tplink.shd.tauc.migration.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.codec.BinaryMigrationCodec;
+import com.tplink.shd.tauc.migration.codec.InOutCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReplayEngineTest {
+
+    @TempDir
+    Path directory;
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final ReplayEngine engine = new ReplayEngine();
+    private BinaryMigrationCodec codec;
+    private InOutCodec inOutCodec;
+
+    @BeforeEach
+    void setUp() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        codec = new BinaryMigrationCodec(beanFactory.getBeanProvider(ObjectMapper.class), properties);
+        inOutCodec = new InOutCodec();
+        ReflectionTestUtils.setField(inOutCodec, "properties", properties);
+        ReflectionTestUtils.setField(inOutCodec, "codec", codec);
+        properties.getRecordLog().setReplayThreads(2);
+        ReflectionTestUtils.setField(engine, "properties", properties);
+        ReflectionTestUtils.setField(engine, "inOutCodec", inOutCodec);
+        ReflectionTestUtils.setField(engine, "codec", codec);
+        ReflectionTestUtils.setField(engine, "objectMapper", beanFactory.getBeanProvider(ObjectMapper.class));
+    }
+
+    @Test
+    void reportCountsEachOutcome() throws Exception {
+        writeSegment(call("match", "device-1", "ok"),
+                call("input", "device-2", "ok"),
+                call("output", "device-3", "ok"),
+                call("skip", "device-4", "ok"),
+                call("fail", "device-5", "ok"));
+
+        ReplayReport report = engine.replay(directory, (call, args) -> {
+            assertEquals(List.of(call.getUuid()), List.of(args[0])); // 参数按记录解码
+            switch (call.getUuid()) {
+                case "match":
+                    return ReplayResult.of("digest-device-1", "ok");
+                case "input":
+                    return ReplayResult.of("other", "ok");
+                case "output":
+                    return ReplayResult.of("digest-device-3", "changed");
+                case "skip":
+                    return null;
+                default:
+                    throw new IllegalStateException("boom");
+            }
+        });
+
+        assertEquals(5, report.getReplayed());
+        assertEquals(1, report.getMatched());
+        assertEquals(2, report.getMismatched());
+        assertEquals(1, report.getSkipped());
+        assertEquals(1, report.getFailed());
+        ReplayReport.MethodStats stats = report.getMethods().get("Service:call");
+        assertEquals(1, stats.getInputMismatched());
+        assertEquals(1, stats.getOutputMismatched());
+    }
+
+    @Test
+    void refusesToReplayWhileComparisonIsOn() {
+        properties.setKafka(true);
+        assertThrows(IllegalStateException.class, () -> engine.replay(directory, (call, args) -> null));
+    }
+
+    private byte[] call(String uuid, String device, Object output) {
+        byte[] args = codec.encode(List.of(uuid));
+        byte[] frame = inOutCodec.encode("digest-" + device, output);
+        return RecordLogFormat.payload(System.currentTimeMillis(), uuid, "Service:call", args, frame);
+    }
+
+    private void writeSegment(byte[]... payloads) throws Exception {
+        int size = RecordLogFormat.SEGMENT_HEADER_BYTES + RecordLogFormat.RECORD_HEADER_BYTES;
+        for (byte[] payload : payloads) {
+            size += RecordLogFormat.RECORD_HEADER_BYTES + payload.length;
+        }
+        ByteBuffer segment = ByteBuffer.allocate(size).putInt(RecordLogFormat.MAGIC).putInt(RecordLogFormat.VERSION);
+        CRC32C crc = new CRC32C();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            segment.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        Files.write(directory.resolve("segment-0000000000001-host-1-000001.log"), segment.array());
+    }
+}
@@ -0,0 +1,79 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class InOutNotifierTest {
+
+    private final Sinks.Many<ReactiveSubscription.Message<String, String>> channel = Sinks.many().multicast().directBestEffort();
+    private final InOutNotifier notifier = new InOutNotifier();
+
+    @BeforeEach
+    void setUp() {
+        ReactiveStringRedisTemplate template = mock(ReactiveStringRedisTemplate.class);
+        doReturn(channel.asFlux()).when(template).listenToChannel(anyString());
+        ReflectionTestUtils.setField(notifier, "properties", new ExecuteMigration());
+        ReflectionTestUtils.setField(notifier, "reactiveRedisTemplate", template);
+    }
+
+    @AfterEach
+    void tearDown() {
+        notifier.destroy();
+    }
+
+    @Test
+    void unregisteringOneWaiterKeepsOthersRegistered() {
+        CompletableFuture<Void> first = notifier.register("{uuid-1}o");
+        CompletableFuture<Void> second = notifier.register("{uuid-1}o");
+        assertNotSame(first, second);
+
+        notifier.unregister("{uuid-1}o", first);
+        signal("{uuid-1}o");
+
+        assertFalse(first.isDone());
+        assertTrue(second.isDone());
+    }
+
+    @Test
+    void cancellingOneWaiterDoesNotCancelOthers() {
+        CompletableFuture<Void> first = notifier.register("{uuid-1}o");
+        CompletableFuture<Void> second = notifier.register("{uuid-1}o");
+
+        first.cancel(true); // 响应式等待被取消时会取消自己的信号
+        notifier.unregister("{uuid-1}o", first);
+        signal("{uuid-1}o");
+
+        assertTrue(second.isDone() && !second.isCancelled());
+    }
+
+    @Test
+    void registrantAfterSignalWaitsForNextSignal() {
+        CompletableFuture<Void> first = notifier.register("{uuid-1}o");
+        signal("{uuid-1}o");
+        CompletableFuture<Void> late = notifier.register("{uuid-1}o");
+
+        assertTrue(first.isDone());
+        assertFalse(late.isDone());
+        signal("{uuid-1}o");
+        assertTrue(late.isDone());
+    }
+
+    private void signal(String keyInOut) {
+        channel.tryEmitNext(new ReactiveSubscription.ChannelMessage<>("migration:inout", keyInOut));
+    }
+}
@@ -0,0 +1,192 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class LatencyBudgetExecutorTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final LatencyBudgetExecutor budgetExecutor = new LatencyBudgetExecutor();
+
+    @BeforeEach
+    void setUp() {
+        properties.getLatencyBudget().setEnabled(true);
+        ReflectionTestUtils.setField(budgetExecutor, "properties", properties);
+        ReflectionTestUtils.setField(budgetExecutor, "meterRegistry", new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        budgetExecutor.shutdown();
+    }
+
+    @Test
+    void bucketsDoubleEveryFourSteps() {
+        assertEquals(0, LatencyBudgetExecutor.bucket(TimeUnit.MICROSECONDS.toNanos(5)));
+        assertEquals(0, LatencyBudgetExecutor.bucket(TimeUnit.MICROSECONDS.toNanos(10)));
+        assertEquals(4, LatencyBudgetExecutor.bucket(TimeUnit.MICROSECONDS.toNanos(20)));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(20), LatencyBudgetExecutor.upperBound(4));
+        assertEquals(63, LatencyBudgetExecutor.bucket(TimeUnit.HOURS.toNanos(1))); // 超出范围时落在最后一个桶
+        for (long nanos = TimeUnit.MICROSECONDS.toNanos(11); nanos < TimeUnit.MILLISECONDS.toNanos(500); nanos = nanos * 3 / 2) {
+            int bucket = LatencyBudgetExecutor.bucket(nanos);
+            assertTrue(LatencyBudgetExecutor.upperBound(bucket) >= nanos); // 分位数取桶的上界，不会低估延迟
+            assertTrue(LatencyBudgetExecutor.upperBound(bucket) < nanos * 1.2); // 相邻桶相差约 19%
+        }
+    }
+
+    @Test
+    void hedgeDelayRefreshesOncePerSecondAndDecays() {
+        properties.getLatencyBudget().setHedgePercentile(0.9);
+        properties.getLatencyBudget().setInitialHedgeDelayMillis(7);
+        long fast = TimeUnit.MICROSECONDS.toNanos(100);
+        long slow = TimeUnit.MILLISECONDS.toNanos(2);
+        for (int i = 0; i < 180; i++) {
+            budgetExecutor.recordLatency(fast);
+        }
+        for (int i = 0; i < 20; i++) {
+            budgetExecutor.recordLatency(slow);
+        }
+
+        long delay = budgetExecutor.hedgeDelayNanos();
+        assertEquals(LatencyBudgetExecutor.upperBound(LatencyBudgetExecutor.bucket(fast)), delay); // 第 90 分位落在快的一组
+        AtomicLongArray latencies = (AtomicLongArray) ReflectionTestUtils.getField(budgetExecutor, "latencies");
+        assertEquals(90, latencies.get(LatencyBudgetExecutor.bucket(fast))); // 计算后计数减半
+
+        for (int i = 0; i < 200; i++) {
+            budgetExecutor.recordLatency(slow);
+        }
+        assertEquals(delay, budgetExecutor.hedgeDelayNanos()); // 一秒内不重新计算
+
+        ReflectionTestUtils.setField(budgetExecutor, "nextRefresh", new AtomicLong(System.nanoTime()));
+        assertEquals(LatencyBudgetExecutor.upperBound(LatencyBudgetExecutor.bucket(slow)), budgetExecutor.hedgeDelayNanos());
+
+        for (int i = 0; i < 3; i++) {
+            ReflectionTestUtils.setField(budgetExecutor, "nextRefresh", new AtomicLong(System.nanoTime()));
+            budgetExecutor.hedgeDelayNanos();
+        }
+        // 不再有新样本时计数逐次减半，样本不足后回到初始对冲延迟
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(7), budgetExecutor.hedgeDelayNanos());
+    }
+
+    @Test
+    void firstSuccessFailsWithThePrimaryErrorWhenBothReadsFail() {
+        IllegalStateException primaryError = new IllegalStateException("primary");
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        CompletableFuture<String> result = LatencyBudgetExecutor.firstSuccess(primary, hedge);
+
+        hedge.completeExceptionally(new IllegalStateException("hedge"));
+        assertFalse(result.isDone()); // 主读取仍可能成功
+        primary.completeExceptionally(primaryError);
+
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertSame(primaryError, e.getCause());
+    }
+
+    @Test
+    void firstSuccessReturnsTheHedgeWhenThePrimaryFails() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        CompletableFuture<String> result = LatencyBudgetExecutor.firstSuccess(primary, hedge);
+
+        primary.completeExceptionally(new IllegalStateException("primary"));
+        hedge.complete("replica");
+        assertEquals("replica", result.get());
+    }
+
+    @Test
+    void rejectedOperationIsReportedAsExceeded() throws Exception {
+        properties.getLatencyBudget().setMaxConcurrentOperations(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (LatencyBudget.Scope ignored = LatencyBudget.enter(new LatencyBudget(TimeUnit.SECONDS.toNanos(5)))) {
+                budgetExecutor.call(() -> {
+                    running.countDown();
+                    awaitQuietly(release);
+                    return null;
+                });
+            }
+        });
+        holder.start();
+        assertTrue(running.await(1, TimeUnit.SECONDS)); // 唯一的线程被占用
+
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(new LatencyBudget(TimeUnit.SECONDS.toNanos(5)))) {
+            LatencyBudgetExceededException e = assertThrows(LatencyBudgetExceededException.class, () -> budgetExecutor.call(() -> "value"));
+            assertFalse(e.whenCompleted(() -> {
+            })); // 操作未发起
+        } finally {
+            release.countDown();
+            holder.join(1000);
+        }
+    }
+
+    @Test
+    void whenCompletedRunsAfterTheBackgroundWriteFinishes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        try (LatencyBudget.Scope ignored = LatencyBudget.enter(new LatencyBudget(TimeUnit.MILLISECONDS.toNanos(20)))) {
+            LatencyBudgetExceededException e = assertThrows(LatencyBudgetExceededException.class, () -> budgetExecutor.call(() -> {
+                awaitQuietly(release);
+                return null;
+            }));
+            assertTrue(e.whenCompleted(completed::countDown));
+        }
+        assertEquals(1, completed.getCount()); // 写入尚未完成
+        release.countDown();
+        assertTrue(completed.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void hedgeReplicaIsNotWrapped() {
+        properties.getLatencyBudget().setHedgeCacheService("replicaCacheService");
+        properties.getCircuitBreaker().setEnabled(true);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("executeMigration", properties);
+        beanFactory.registerSingleton("latencyBudgetExecutor", budgetExecutor);
+        beanFactory.registerSingleton("migrationCircuitBreaker", mock(MigrationCircuitBreaker.class));
+        BeanPostProcessor budget = LatencyBudgetConfiguration.latencyBudgetCacheServicePostProcessor(
+                beanFactory.getBeanProvider(ExecuteMigration.class), beanFactory.getBeanProvider(LatencyBudgetExecutor.class), beanFactory);
+        BeanPostProcessor breaker = CircuitBreakerConfiguration.circuitBreakerCacheServicePostProcessor(
+                beanFactory.getBeanProvider(ExecuteMigration.class), beanFactory.getBeanProvider(MigrationCircuitBreaker.class));
+
+        CacheService replica = mock(CacheService.class);
+        assertSame(replica, budget.postProcessAfterInitialization(breaker.postProcessAfterInitialization(replica, "replicaCacheService"),
+                "replicaCacheService"));
+
+        Object primary = budget.postProcessAfterInitialization(
+                breaker.postProcessAfterInitialization(mock(CacheService.class), "cacheService"), "cacheService");
+        assertInstanceOf(LatencyBudgetCacheService.class, primary);
+        assertInstanceOf(CircuitBreakerCacheService.class, ((LatencyBudgetCacheService) primary).getDelegate());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationCircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final MigrationCircuitBreaker breaker = new MigrationCircuitBreaker();
+
+    @BeforeEach
+    void setUp() {
+        ExecuteMigration.CircuitBreaker config = properties.getCircuitBreaker();
+        config.setEnabled(true);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(0.5);
+        config.setLatencyPercentile(0.5);
+        config.setLatencyThresholdMillis(50);
+        config.setOpenMillis(50);
+        config.setHalfOpenProbes(2);
+        ReflectionTestUtils.setField(breaker, "properties", properties);
+        ReflectionTestUtils.setField(breaker, "meterRegistry", new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    void opensOnFailureRateAndClosesAfterSuccessfulProbes() throws InterruptedException {
+        breaker.record(FAST, false);
+        breaker.record(FAST, false);
+        breaker.record(FAST, true);
+        assertEquals(MigrationCircuitBreaker.State.CLOSED, breaker.getState()); // 调用数不足
+        breaker.record(FAST, true);
+        assertEquals(MigrationCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest()); // 半开只放行 halfOpenProbes 个调用
+        assertEquals(MigrationCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.record(FAST, false);
+        breaker.record(FAST, false);
+        assertEquals(MigrationCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void opensOnSlowCallsAndReopensOnSlowProbe() throws InterruptedException {
+        breaker.record(FAST, false);
+        breaker.record(FAST, false);
+        breaker.record(SLOW, false);
+        breaker.record(SLOW, false);
+        assertEquals(MigrationCircuitBreaker.State.CLOSED, breaker.getState()); // 慢调用占比需超过 1 - 分位数
+        breaker.record(SLOW, false);
+        assertEquals(MigrationCircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        breaker.record(SLOW, false);
+        assertEquals(MigrationCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void slowCancellationsAreRecorded() throws InterruptedException {
+        properties.getCircuitBreaker().setMinimumCalls(1);
+        Disposable fast = breaker.execute(Mono.never()).subscribe();
+        fast.dispose(); // 未超过阈值的取消不计入
+        assertEquals(MigrationCircuitBreaker.State.CLOSED, breaker.getState());
+
+        Disposable slow = breaker.execute(Mono.never()).subscribe();
+        Thread.sleep(60);
+        slow.dispose();
+        assertEquals(MigrationCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void successIsRecordedOnce() {
+        properties.getCircuitBreaker().setMinimumCalls(1);
+        assertEquals("ok", breaker.execute(Mono.just("ok")).block());
+        breaker.record(FAST, true); // 成功只计一次时错误率为 0.5，达到阈值
+        assertEquals(MigrationCircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
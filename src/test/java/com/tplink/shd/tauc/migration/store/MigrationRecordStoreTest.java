@@ -0,0 +1,114 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import com.tplink.smb.component.cache.api.CacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MigrationRecordStoreTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final RecordingCacheService cacheService = new RecordingCacheService();
+    private final MigrationRecordStore recordStore = new MigrationRecordStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(recordStore, "properties", properties);
+        ReflectionTestUtils.setField(recordStore, "cacheService", cacheService);
+        cacheService.values.put("{uuid-1}i", "a");
+        cacheService.values.put("{uuid-2}i", "b");
+        cacheService.values.put("{uuid-1}o", "c");
+    }
+
+    @Test
+    void clusterReadsAreGroupedBySlot() {
+        ReflectionTestUtils.setField(recordStore, "cluster", true);
+        List<String> values = recordStore.multiGet("cache", List.of("{uuid-1}i", "{uuid-2}i", "{uuid-1}o", "{uuid-3}i"));
+
+        assertEquals(Arrays.asList("a", "b", "c", null), values);
+        assertEquals(3, cacheService.batches.size()); // uuid-1 的两个 key 位于同一个 slot
+        for (List<String> batch : cacheService.batches) {
+            assertEquals(1, batch.stream().map(key -> ClusterSlotHashUtil.calculateSlot("cache:" + key)).distinct().count());
+        }
+    }
+
+    @Test
+    void standaloneReadsUseOneRoundTrip() {
+        ReflectionTestUtils.setField(recordStore, "cluster", false);
+        assertEquals(Arrays.asList("a", "b"), recordStore.multiGet("cache", List.of("{uuid-1}i", "{uuid-2}i")));
+        assertEquals(1, cacheService.batches.size());
+    }
+
+    @Test
+    void atomicRecordOnClusterRequiresCompactKeys() {
+        ReflectionTestUtils.setField(recordStore, "cluster", true);
+        properties.setAtomicRecord(true);
+        assertThrows(IllegalStateException.class, recordStore::validate);
+
+        properties.setCompactKeys(true);
+        assertDoesNotThrow(recordStore::validate);
+
+        properties.setCompactKeys(false);
+        ReflectionTestUtils.setField(recordStore, "cluster", false);
+        assertDoesNotThrow(recordStore::validate);
+    }
+
+    @Test
+    void mismatchCarriesTheExistingDigest() {
+        CompareResult result = recordStore.compareAndRecord("cache", "{uuid-1}i", "{uuid-1}o", "x", true);
+        assertEquals(CompareVerdict.PEER_MISMATCH, result.getVerdict());
+        assertEquals("a", result.getExisting());
+    }
+
+    @Test
+    void scriptResultCarriesTheExistingDigest() {
+        assertEquals(CompareResult.of(CompareVerdict.SELF_MISMATCH, "a"),
+                CompareResult.ofScript(List.of(4L, "a".getBytes(StandardCharsets.UTF_8)))); // pipeline 中未反序列化的结果
+        assertEquals(CompareResult.of(CompareVerdict.PEER_MATCH, "b"), CompareResult.ofScript(List.of(List.of(1L, "b"))));
+        assertEquals(CompareResult.firstWriter(), CompareResult.ofScript(List.of(0L)));
+    }
+
+    @Test
+    void hashTagEscapesClosingBrace() {
+        assertEquals("uuid-1", MigrationMethodDescriptor.hashTag("uuid-1"));
+        assertEquals("a%7Db%25", MigrationMethodDescriptor.hashTag("a}b%"));
+        assertEquals(ClusterSlotHashUtil.calculateSlot("{a%7Db}i"), ClusterSlotHashUtil.calculateSlot("{a%7Db}lm"));
+    }
+
+    private static final class RecordingCacheService implements CacheService {
+        private final Map<String, Object> values = new HashMap<>();
+        private final List<List<String>> batches = new ArrayList<>();
+
+        @Override
+        public void set(String cacheName, String key, Object value, long timeout, TimeUnit unit) {
+            values.put(key, value);
+        }
+
+        @Override
+        public <T> T get(String cacheName, String key, Class<T> clazz) {
+            return clazz.cast(values.get(key));
+        }
+
+        @Override
+        public <T> Map<String, T> multiGet(String cacheName, Collection<String> keys, Class<T> clazz) {
+            batches.add(new ArrayList<>(keys));
+            return CacheService.super.multiGet(cacheName, keys, clazz);
+        }
+    }
+}
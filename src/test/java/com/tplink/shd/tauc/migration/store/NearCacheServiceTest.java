@@ -0,0 +1,163 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NearCacheServiceTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final CacheService delegate = mock(CacheService.class);
+    private NearCacheService nearCache;
+
+    @BeforeEach
+    void setUp() {
+        properties.getNearCache().setCacheNames(new HashSet<>(Set.of("near")));
+        properties.getNearCache().setPositiveTtlMillis(60_000);
+        properties.getNearCache().setNegativeTtlMillis(50);
+        nearCache = new NearCacheService(delegate, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void hitsAreServedLocally() {
+        when(delegate.get("near", "k", String.class)).thenReturn("v");
+        for (int i = 0; i < 5; i++) {
+            assertEquals("v", nearCache.get("near", "k", String.class));
+        }
+        verify(delegate, times(1)).get("near", "k", String.class);
+        assertEquals(4, nearCache.hitCount("near"));
+        assertEquals(1, nearCache.missCount("near"));
+    }
+
+    @Test
+    void negativeResultsExpireAfterTheirOwnTtl() throws InterruptedException {
+        assertNull(nearCache.get("near", "absent", String.class));
+        assertNull(nearCache.get("near", "absent", String.class));
+        verify(delegate, times(1)).get("near", "absent", String.class);
+
+        Thread.sleep(80); // 负缓存的时间远短于命中结果
+        when(delegate.get("near", "absent", String.class)).thenReturn("v");
+        assertEquals("v", nearCache.get("near", "absent", String.class));
+        verify(delegate, times(2)).get("near", "absent", String.class);
+
+        properties.getNearCache().setNegativeTtlMillis(0); // 0 表示不缓存未命中
+        assertNull(nearCache.get("near", "other", String.class));
+        assertNull(nearCache.get("near", "other", String.class));
+        verify(delegate, times(2)).get("near", "other", String.class);
+    }
+
+    @Test
+    void localWritesInvalidate() {
+        when(delegate.get("near", "a", String.class)).thenReturn("1", "2");
+        when(delegate.get("near", "b", String.class)).thenReturn("1", "2");
+        assertEquals("1", nearCache.get("near", "a", String.class));
+        assertEquals("1", nearCache.get("near", "b", String.class));
+
+        nearCache.set("near", "a", "2", 1, TimeUnit.MINUTES);
+        verify(delegate).set("near", "a", "2", 1, TimeUnit.MINUTES);
+        assertEquals("2", nearCache.get("near", "a", String.class));
+
+        nearCache.multiSet("near", Map.of("b", "2"), 1, TimeUnit.MINUTES);
+        verify(delegate).multiSet("near", Map.of("b", "2"), 1, TimeUnit.MINUTES);
+        assertEquals("2", nearCache.get("near", "b", String.class));
+    }
+
+    @Test
+    void onlyConfiguredCacheNamesAreCached() {
+        when(delegate.get(eq("plain"), eq("k"), eq(String.class))).thenReturn("v");
+        when(delegate.multiGet(eq("plain"), anyCollection(), eq(String.class))).thenReturn(Map.of("k", "v"));
+        assertEquals("v", nearCache.get("plain", "k", String.class));
+        assertEquals("v", nearCache.get("plain", "k", String.class));
+        assertEquals(Map.of("k", "v"), nearCache.multiGet("plain", List.of("k"), String.class));
+        verify(delegate, times(2)).get("plain", "k", String.class);
+        verify(delegate, times(1)).multiGet("plain", List.of("k"), String.class);
+        assertEquals(0, nearCache.missCount("plain"));
+
+        when(delegate.get("near", "k", String.class)).thenReturn("v");
+        nearCache.get("near", "k", String.class);
+        properties.getNearCache().getCacheNames().remove("near"); // 运行中关闭后直接转发
+        nearCache.get("near", "k", String.class);
+        verify(delegate, times(2)).get("near", "k", String.class);
+    }
+
+    @Test
+    void fullCacheAdmitsOnlyMoreFrequentKeys() {
+        properties.getNearCache().setMaximumSize(2);
+        nearCache = new NearCacheService(delegate, properties, new SimpleMeterRegistry());
+        when(delegate.get(eq("near"), eq("hot-1"), eq(String.class))).thenReturn("v");
+        when(delegate.get(eq("near"), eq("hot-2"), eq(String.class))).thenReturn("v");
+        when(delegate.get(eq("near"), eq("cold"), eq(String.class))).thenReturn("v");
+        for (int i = 0; i < 6; i++) {
+            nearCache.get("near", "hot-1", String.class);
+            nearCache.get("near", "hot-2", String.class);
+        }
+
+        nearCache.get("near", "cold", String.class);
+        nearCache.get("near", "cold", String.class);
+        verify(delegate, times(2)).get("near", "cold", String.class); // 只访问过一次的 key 不替换常用的 key
+        verify(delegate, times(1)).get("near", "hot-1", String.class);
+        verify(delegate, times(1)).get("near", "hot-2", String.class);
+
+        boolean admitted = false;
+        for (int i = 0; i < 20 && !admitted; i++) {
+            long loads = coldLoads();
+            nearCache.get("near", "cold", String.class);
+            admitted = coldLoads() == loads;
+        }
+        assertTrue(admitted, "cold key was never admitted"); // 访问次数超过被淘汰者后进入缓存
+    }
+
+    @Test
+    void concurrentReadsStayWithinMaximumSize() throws InterruptedException {
+        properties.getNearCache().setMaximumSize(16);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        nearCache = new NearCacheService(delegate, properties, registry);
+        when(delegate.get(eq("near"), anyString(), eq(String.class))).thenReturn("v");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    if (!"v".equals(nearCache.get("near", "k" + (i * 7919 % 64), String.class))) {
+                        failure.compareAndSet(null, new AssertionError("unexpected value"));
+                    }
+                }
+            });
+            readers[t].setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+            readers[t].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertEquals(80000, nearCache.hitCount("near") + nearCache.missCount("near"));
+        assertTrue(registry.get("migration.near.cache.size").gauge().value() <= 16);
+    }
+
+    private long coldLoads() {
+        return mockingDetails(delegate).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("get") && "cold".equals(invocation.getArgument(1)))
+                .count();
+    }
+}
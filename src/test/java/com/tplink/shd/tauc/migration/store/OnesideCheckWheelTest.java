@@ -0,0 +1,66 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OnesideCheckWheelTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final MigrationRecordStore recordStore = mock(MigrationRecordStore.class);
+    private final OnesideCheckWheel wheel = new OnesideCheckWheel();
+
+    @BeforeEach
+    void setUp() {
+        properties.getOnesideCheck().setTickMillis(1);
+        ReflectionTestUtils.setField(wheel, "properties", properties);
+        ReflectionTestUtils.setField(wheel, "recordStore", recordStore);
+        ReflectionTestUtils.setField(wheel, "meterRegistry", new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        wheel.shutdown();
+    }
+
+    @Test
+    void rawChecksReadThroughRedisTemplate() {
+        when(recordStore.multiGetRaw(eq("cache"), anyList())).thenReturn(Collections.singletonList(null));
+        Runnable onMissing = mock(Runnable.class);
+
+        wheel.schedule("cache", "{uuid-1}lm:done", true, 0, onMissing);
+
+        verify(onMissing, timeout(2000)).run();
+        verify(recordStore).multiGetRaw("cache", List.of("{uuid-1}lm:done"));
+        verify(recordStore, never()).multiGet(any(), any());
+    }
+
+    @Test
+    void presentKeysDoNotTriggerCallback() {
+        when(recordStore.multiGet(eq("cache"), anyList())).thenReturn(Arrays.asList("digest"));
+        Runnable onMissing = mock(Runnable.class);
+
+        wheel.schedule("cache", "{uuid-1}i", 0, onMissing);
+
+        verify(recordStore, timeout(2000)).multiGet("cache", List.of("{uuid-1}i"));
+        verify(onMissing, after(100).never()).run();
+    }
+}
@@ -0,0 +1,158 @@
+package com.tplink.shd.tauc.migration.store;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.smb.component.cache.api.CacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class WriteBehindPipelineTest {
+
+    private final ExecuteMigration properties = new ExecuteMigration();
+    private final CacheService cacheService = mock(CacheService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final WriteBehindPipeline pipeline = new WriteBehindPipeline();
+    private final CountDownLatch flushing = new CountDownLatch(1); // 后台线程已取出第一批
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ExecuteMigration.WriteBehind config = properties.getWriteBehind();
+        config.setEnabled(true);
+        config.setCapacity(4);
+        config.setBatchSize(10);
+        config.setBlockTimeoutMillis(50);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", registry);
+        ReflectionTestUtils.setField(pipeline, "properties", properties);
+        ReflectionTestUtils.setField(pipeline, "cacheService", cacheService);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", beanFactory.getBeanProvider(MeterRegistry.class));
+        // 第一批写入阻塞到 release，之后的记录留在队列中
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(cacheService).multiSet(anyString(), anyMap(), anyLong(), any(TimeUnit.class));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        pipeline.shutdown();
+    }
+
+    @Test
+    void dropPolicyRejectsImmediatelyWhenFull() throws InterruptedException {
+        properties.getWriteBehind().setBlockTimeoutMillis(5000); // 只对 BLOCK 生效
+        pipeline.start();
+        blockFlusher();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pipeline.enqueue("cache", "k" + i, "v", 60, null));
+        }
+        long start = System.nanoTime();
+        assertFalse(pipeline.enqueue("cache", "overflow", "v", 60, null));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1)); // 不等待
+        assertEquals(1, dropped());
+    }
+
+    @Test
+    void blockPolicyWaitsForSpaceUpToTheTimeout() throws Exception {
+        properties.getWriteBehind().setOverflowPolicy(WriteBehindPipeline.OverflowPolicy.BLOCK);
+        pipeline.start();
+        blockFlusher();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pipeline.enqueue("cache", "k" + i, "v", 60, null));
+        }
+        long start = System.nanoTime();
+        assertFalse(pipeline.enqueue("cache", "overflow", "v", 60, null));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50)); // 等到超时后丢弃
+        assertEquals(1, dropped());
+
+        properties.getWriteBehind().setBlockTimeoutMillis(5000);
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> pipeline.enqueue("cache", "late", "v", 60, null));
+        Thread.sleep(50);
+        assertFalse(waiting.isDone()); // 队列仍满
+        release.countDown(); // 后台线程取出下一批后腾出空位
+        assertTrue(waiting.get(1, TimeUnit.SECONDS));
+        assertEquals(1, dropped());
+    }
+
+    @Test
+    void batchesAreGroupedByCacheAndTtl() throws InterruptedException {
+        pipeline.start();
+        blockFlusher();
+        AtomicInteger written = new AtomicInteger();
+        pipeline.enqueue("a", "k1", "v1", 60, written::incrementAndGet);
+        pipeline.enqueue("a", "k2", "v2", 60, written::incrementAndGet);
+        pipeline.enqueue("a", "k3", "v3", 120, written::incrementAndGet);
+        pipeline.enqueue("b", "k4", "v4", 60, written::incrementAndGet);
+        release.countDown();
+
+        verify(cacheService, timeout(1000)).multiSet("a", Map.of("k1", "v1", "k2", "v2"), 60L, TimeUnit.SECONDS);
+        verify(cacheService, timeout(1000)).multiSet("a", Map.of("k3", "v3"), 120L, TimeUnit.SECONDS);
+        verify(cacheService, timeout(1000)).multiSet("b", Map.of("k4", "v4"), 60L, TimeUnit.SECONDS);
+        pipeline.shutdown();
+        assertEquals(4, written.get());
+    }
+
+    @Test
+    void shutdownDrainsQueuedRecordsAndRejectsNewOnes() throws InterruptedException {
+        pipeline.start();
+        blockFlusher();
+        AtomicInteger written = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(pipeline.enqueue("cache", "k" + i, "v", 60, written::incrementAndGet));
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        pipeline.shutdown(); // 等待队列中剩余的记录写完
+
+        assertEquals(3, written.get());
+        verify(cacheService, times(2)).multiSet(eq("cache"), anyMap(), eq(60L), eq(TimeUnit.SECONDS));
+        assertFalse(pipeline.isEnabled());
+        AtomicInteger late = new AtomicInteger();
+        assertFalse(pipeline.enqueue("cache", "late", "v", 60, late::incrementAndGet));
+        assertEquals(0, late.get());
+        assertEquals(1, dropped());
+    }
+
+    // 第一条记录被后台线程取出并阻塞在写入中
+    private void blockFlusher() throws InterruptedException {
+        assertTrue(pipeline.enqueue("cache", "first", "v", 60, null));
+        assertTrue(flushing.await(1, TimeUnit.SECONDS));
+    }
+
+    private double dropped() {
+        return registry.get("migration.write.behind.dropped").counter().count();
+    }
+}
@@ -0,0 +1,73 @@
+package com.tplink.shd.tauc.share.prometheus;
+
+import com.tplink.shd.tauc.migration.annotation.ExecuteMigration;
+import com.tplink.shd.tauc.migration.annotation.MigrationMethodDescriptor;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MigrationMetersCacheTest {
+
+    private static final int METERS_PER_METHOD = 8; // 3 个比对结果计数 + 3 个缓存操作计时 + 等待与业务逻辑计时
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecuteMigration properties = new ExecuteMigration();
+
+    @Test
+    void metersAreRegisteredOncePerDescriptor() throws NoSuchMethodException {
+        properties.setKafkaRole("MASTER");
+        MigrationMetersCache cache = new MigrationMetersCache(registry, properties, "execute_save");
+        MigrationMethodDescriptor save = MigrationMethodDescriptor.of(DeviceService.class.getMethod("save"));
+        MigrationMethodDescriptor load = MigrationMethodDescriptor.of(DeviceService.class.getMethod("load"));
+
+        MigrationMeters meters = cache.get(save);
+        assertSame(meters, cache.get(save));
+        assertEquals(METERS_PER_METHOD, registry.getMeters().size());
+        for (Meter meter : registry.getMeters()) {
+            assertEquals("execute_save", meter.getId().getTag("aspect"));
+            assertEquals("master", meter.getId().getTag("role"));
+            assertEquals("DeviceService:save", meter.getId().getTag("method"));
+        }
+
+        cache.get(load);
+        assertEquals(2 * METERS_PER_METHOD, registry.getMeters().size());
+    }
+
+    @Test
+    void recordingDoesNotRegisterMeters() throws NoSuchMethodException {
+        MigrationMetersCache cache = new MigrationMetersCache(registry, properties, "execute_check");
+        MigrationMeters meters = cache.get(MigrationMethodDescriptor.of(DeviceService.class.getMethod("save")));
+        int registered = registry.getMeters().size();
+
+        meters.match();
+        meters.match();
+        meters.mismatch();
+        meters.oneside();
+        meters.recordRedisGet(TimeUnit.MILLISECONDS.toNanos(1));
+        meters.recordRedisSet(TimeUnit.MILLISECONDS.toNanos(1));
+        meters.recordRedisCompare(TimeUnit.MILLISECONDS.toNanos(1));
+        meters.recordSlaveWait(TimeUnit.MILLISECONDS.toNanos(1));
+        meters.recordProceed(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(registered, registry.getMeters().size());
+        assertEquals(2, registry.get("migration.compare")
+                .tags("aspect", "execute_check", "role", "none", "method", "DeviceService:save", "result", "match")
+                .counter().count());
+        assertEquals(1, registry.get("migration.compare").tag("result", "mismatch").counter().count());
+        assertEquals(1, registry.get("migration.redis").tag("op", "compare").timer().count());
+        assertEquals(1, registry.get("migration.proceed").timer().count());
+    }
+
+    static class DeviceService {
+        public void save() {
+        }
+
+        public void load() {
+        }
+    }
+}